@@ -0,0 +1,169 @@
+package com.socialnetwork.auth.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Проверка access токенов внутри процесса вместо вызова /api/v1/auth/validate.
+ * Подпись и срок проверяются локально {@link JwtVerifier} открытым ключом из {@link KeyProvider}
+ * (JWKS сервиса авторизации); refresh токены не принимаются. Результат действующего токена
+ * кэшируется до его exp (кэш ограничен по размеру, отказы не кэшируются). Отзывы проверяются
+ * при каждом вызове, в том числе для кэшированных токенов, по {@link RevocationState},
+ * который наполняют источники отзывов ({@link RedisRevocationSource}, {@link KafkaRevocationSource}).
+ * Потокобезопасен.
+ */
+public final class AuthClient implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthClient.class);
+
+    private final JwtVerifier verifier;
+    private final RevocationState revocationState;
+    private final Cache<String, AuthPrincipal> cache;
+    private final List<RevocationSource> sources;
+    private final Clock clock;
+
+    private AuthClient(Builder builder) {
+        this.verifier = new JwtVerifier(builder.keyProvider);
+        this.revocationState = new RevocationState(builder.accessTokenLifetime);
+        this.clock = builder.clock;
+        this.cache = builder.cacheMaximumSize > 0
+                ? Caffeine.newBuilder()
+                        .maximumSize(builder.cacheMaximumSize)
+                        .expireAfter(new Expiry<String, AuthPrincipal>() {
+                            @Override
+                            public long expireAfterCreate(String token, AuthPrincipal principal, long currentTime) {
+                                return Math.max(0, Duration.ofMillis(principal.expiresAt() * 1000 - clock.millis()).toNanos());
+                            }
+
+                            @Override
+                            public long expireAfterUpdate(String token, AuthPrincipal principal, long currentTime, long currentDuration) {
+                                return currentDuration;
+                            }
+
+                            @Override
+                            public long expireAfterRead(String token, AuthPrincipal principal, long currentTime, long currentDuration) {
+                                return currentDuration;
+                            }
+                        })
+                        .build()
+                : null;
+        this.sources = List.copyOf(builder.sources);
+        for (RevocationSource source : sources) {
+            source.start(revocationState);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Проверить access токен
+     * @return пользователь токена или пусто, если токен невалиден, истёк или отозван
+     */
+    public Optional<AuthPrincipal> validate(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        long now = clock.millis();
+        AuthPrincipal principal = cache != null ? cache.getIfPresent(token) : null;
+        if (principal == null) {
+            JwtClaims claims = verifier.verify(token, now);
+            if (claims == null || claims.email() == null) {
+                return Optional.empty();
+            }
+            principal = new AuthPrincipal(claims.userId(), claims.email(), claims.tokenId(), claims.issuedAt(),
+                    claims.issuedAtMillis(), claims.expiresAt());
+            if (cache != null) {
+                cache.put(token, principal);
+            }
+        } else if (now > principal.expiresAt() * 1000) {
+            return Optional.empty();
+        }
+        if (revocationState.isRevoked(token, principal)) {
+            return Optional.empty();
+        }
+        return Optional.of(principal);
+    }
+
+    /**
+     * Состояние отзывов: для собственных источников и отзывов, известных вызывающему
+     */
+    public RevocationState revocationState() {
+        return revocationState;
+    }
+
+    @Override
+    public void close() {
+        for (RevocationSource source : sources) {
+            try {
+                source.close();
+            } catch (RuntimeException e) {
+                log.warn("Failed to close revocation source: {}", e.getMessage());
+            }
+        }
+    }
+
+    public static final class Builder {
+        private KeyProvider keyProvider;
+        private long cacheMaximumSize = 10_000;
+        private Duration accessTokenLifetime = Duration.ofMinutes(15);
+        private Clock clock = Clock.systemUTC();
+        private final List<RevocationSource> sources = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Открытые ключи проверки подписи, обычно {@link KeyProvider#jwks}
+         */
+        public Builder keyProvider(KeyProvider keyProvider) {
+            this.keyProvider = keyProvider;
+            return this;
+        }
+
+        /**
+         * Число кэшированных результатов; 0 — без кэша
+         */
+        public Builder cacheMaximumSize(long cacheMaximumSize) {
+            this.cacheMaximumSize = cacheMaximumSize;
+            return this;
+        }
+
+        /**
+         * Срок жизни access токена (jwt.access-token-expiration сервиса): столько хранятся эпохи пользователей
+         */
+        public Builder accessTokenLifetime(Duration accessTokenLifetime) {
+            this.accessTokenLifetime = accessTokenLifetime;
+            return this;
+        }
+
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public Builder revocationSource(RevocationSource source) {
+            this.sources.add(source);
+            return this;
+        }
+
+        /**
+         * Создать клиент; источники отзывов запускаются здесь и загружают снимок до возврата
+         */
+        public AuthClient build() {
+            Objects.requireNonNull(keyProvider, "keyProvider is required");
+            return new AuthClient(this);
+        }
+    }
+}
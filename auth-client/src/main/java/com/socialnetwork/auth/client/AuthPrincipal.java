@@ -0,0 +1,14 @@
+package com.socialnetwork.auth.client;
+
+import java.util.UUID;
+
+/**
+ * Пользователь действующего access токена
+ * @param tokenId claim jti, null у токенов, выпущенных до его появления
+ * @param issuedAt iat в секундах
+ * @param issuedAtMillis момент выпуска в миллисекундах (claim iatMs; у старых токенов — iat * 1000)
+ * @param expiresAt exp в секундах
+ */
+public record AuthPrincipal(UUID userId, String email, String tokenId, long issuedAt, long issuedAtMillis,
+                            long expiresAt) {
+}
@@ -0,0 +1,212 @@
+package com.socialnetwork.auth.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Открытые ключи из JWKS сервиса авторизации.
+ * Набор загружается при создании и перечитывается, когда приходит токен с неизвестным kid
+ * (не чаще minRefreshInterval — поток токенов с выдуманным kid не превращается в поток запросов)
+ * и когда набор старше maxAge — так до клиента доходит снятие ключа. Перечитывает поток запроса,
+ * остальные в это время продолжают со старым набором. Ошибка загрузки оставляет прежний набор.
+ * Принимаются только ключи RSA для подписи RS256, остальные записи JWKS пропускаются.
+ * Потокобезопасен.
+ */
+public final class JwksKeyProvider implements KeyProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(JwksKeyProvider.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final URI uri;
+    private final HttpClient httpClient;
+    private final HttpRequest request;
+    private final long minRefreshIntervalMillis;
+    private final long maxAgeMillis;
+    private final Clock clock;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile Map<String, PublicKey> keys = Map.of();
+    private volatile long loadedAt;
+    private volatile long attemptedAt;
+
+    private JwksKeyProvider(Builder builder) {
+        this.uri = builder.uri;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(builder.timeout).build();
+        this.request = HttpRequest.newBuilder(builder.uri)
+                .timeout(builder.timeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        this.minRefreshIntervalMillis = builder.minRefreshInterval.toMillis();
+        this.maxAgeMillis = builder.maxAge.toMillis();
+        this.clock = builder.clock;
+        refresh();
+    }
+
+    public static Builder builder(URI uri) {
+        return new Builder(uri);
+    }
+
+    @Override
+    public PublicKey publicKey(String keyId) {
+        PublicKey key = keyId != null ? keys.get(keyId) : null;
+        if (refreshDue(key != null) && refreshLock.tryLock()) {
+            try {
+                // Пока ждали блокировку, набор мог обновить другой поток
+                if (refreshDue(key != null)) {
+                    refresh();
+                }
+            } finally {
+                refreshLock.unlock();
+            }
+            key = keyId != null ? keys.get(keyId) : null;
+        }
+        return key;
+    }
+
+    private boolean refreshDue(boolean keyKnown) {
+        long now = clock.millis();
+        if (now - attemptedAt < minRefreshIntervalMillis) {
+            return false;
+        }
+        return !keyKnown || now - loadedAt >= maxAgeMillis;
+    }
+
+    private void refresh() {
+        long now = clock.millis();
+        attemptedAt = now;
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                log.warn("JWKS request to {} failed: HTTP {}", uri, response.statusCode());
+                return;
+            }
+            keys = parse(response.body());
+            loadedAt = now;
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+            log.warn("JWKS request to {} failed: {}", uri, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Разобрать JWKS (RFC 7517)
+     * @return ключи RS256 по kid
+     */
+    static Map<String, PublicKey> parse(byte[] body) throws IOException, GeneralSecurityException {
+        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        Map<String, PublicKey> keys = new HashMap<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("JWKS is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("keys".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readKey(parser, keyFactory, keys);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return Map.copyOf(keys);
+    }
+
+    private static void readKey(JsonParser parser, KeyFactory keyFactory, Map<String, PublicKey> keys)
+            throws IOException, GeneralSecurityException {
+        Map<String, String> fields = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            if (parser.nextToken() == JsonToken.VALUE_STRING) {
+                fields.put(field, parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        String keyId = fields.get("kid");
+        String modulus = fields.get("n");
+        String exponent = fields.get("e");
+        if (!"RSA".equals(fields.get("kty")) || keyId == null || modulus == null || exponent == null
+                || !JwtVerifier.ALGORITHM.equals(fields.getOrDefault("alg", JwtVerifier.ALGORITHM))
+                || !"sig".equals(fields.getOrDefault("use", "sig"))) {
+            return;
+        }
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        keys.put(keyId, keyFactory.generatePublic(new RSAPublicKeySpec(
+                new BigInteger(1, decoder.decode(modulus)), new BigInteger(1, decoder.decode(exponent)))));
+    }
+
+    public static final class Builder {
+        private final URI uri;
+        private Duration timeout = Duration.ofSeconds(2);
+        private Duration minRefreshInterval = Duration.ofSeconds(30);
+        private Duration maxAge = Duration.ofMinutes(10);
+        private Clock clock = Clock.systemUTC();
+
+        private Builder(URI uri) {
+            this.uri = Objects.requireNonNull(uri, "uri is required");
+        }
+
+        /**
+         * Таймаут соединения и ответа JWKS
+         */
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Минимальный интервал между загрузками, в том числе неудачными
+         */
+        public Builder minRefreshInterval(Duration minRefreshInterval) {
+            this.minRefreshInterval = minRefreshInterval;
+            return this;
+        }
+
+        /**
+         * Возраст набора, после которого он перечитывается при следующей проверке
+         */
+        public Builder maxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Создать источник; первая загрузка JWKS выполняется здесь, её ошибка не мешает запуску
+         */
+        public JwksKeyProvider build() {
+            return new JwksKeyProvider(this);
+        }
+    }
+}
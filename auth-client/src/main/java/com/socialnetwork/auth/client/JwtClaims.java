@@ -0,0 +1,16 @@
+package com.socialnetwork.auth.client;
+
+import java.util.UUID;
+
+/**
+ * Claims проверенного токена сервиса авторизации
+ * @param email null у refresh токенов
+ * @param subject claim sub
+ * @param tokenId claim jti, null у токенов, выпущенных до его появления
+ * @param issuedAt iat в секундах
+ * @param issuedAtMillis момент выпуска в миллисекундах (claim iatMs; у старых токенов — iat * 1000)
+ * @param expiresAt exp в секундах
+ */
+public record JwtClaims(UUID userId, String email, String subject, String tokenId, long issuedAt,
+                        long issuedAtMillis, long expiresAt) {
+}
@@ -0,0 +1,235 @@
+package com.socialnetwork.auth.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Проверка JWT сервиса авторизации: подпись RS256 открытым ключом, выбранным по kid заголовка
+ * из {@link KeyProvider}, claims userId/email/sub/jti/iat/iatMs/exp. Одна реализация для сервиса
+ * авторизации и его клиентов.
+ * Подпись проверяется переиспользуемым на поток Signature, заголовок и payload разбираются потоковым
+ * парсером без дерева и Map. Неизвестные параметры заголовка и claims пропускаются, чтобы новые поля
+ * сервера не ломали старые версии клиента; заголовок с crit не принимается.
+ * Любой отказ возвращает null без исключений. Потокобезопасен.
+ */
+public final class JwtVerifier {
+
+    /**
+     * Единственный принимаемый алгоритм: токен с другим alg не проверяется ни одним ключом
+     */
+    public static final String ALGORITHM = "RS256";
+
+    private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+    private static final int MAX_TOKEN_LENGTH = 8192;
+    private static final int MAX_HEADER_LENGTH = 512;
+    // Подпись ключом RSA до 8192 бит
+    private static final int MAX_SIGNATURE_BYTES = 1024;
+
+    private static final byte[] BASE64URL_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE64URL_VALUES, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64URL_VALUES[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final KeyProvider keyProvider;
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    public JwtVerifier(KeyProvider keyProvider) {
+        this.keyProvider = keyProvider;
+    }
+
+    /**
+     * @return claims действующего токена (access или refresh) или null
+     */
+    public JwtClaims verify(String token, long nowMillis) {
+        if (token == null || token.length() > MAX_TOKEN_LENGTH) {
+            return null;
+        }
+        int headerEnd = token.indexOf('.');
+        int payloadEnd = headerEnd < 0 ? -1 : token.indexOf('.', headerEnd + 1);
+        if (payloadEnd < 0 || token.indexOf('.', payloadEnd + 1) >= 0) {
+            return null;
+        }
+
+        Buffers local = buffers.get();
+        int headerLength = decode(token, 0, headerEnd, local.header);
+        if (headerLength < 0) {
+            return null;
+        }
+        String keyId = parseHeader(local.header, headerLength);
+        PublicKey key = keyId != null ? keyProvider.publicKey(keyId) : null;
+        if (key == null || !signatureMatches(token, payloadEnd, key, local)) {
+            return null;
+        }
+
+        int payloadLength = decode(token, headerEnd + 1, payloadEnd, local.payload);
+        if (payloadLength < 0) {
+            return null;
+        }
+        return parseClaims(local.payload, payloadLength, nowMillis);
+    }
+
+    /**
+     * @return kid токена RS256 или null
+     */
+    private String parseHeader(byte[] header, int length) {
+        String algorithm = null;
+        String keyId = null;
+        try (JsonParser parser = jsonFactory.createParser(header, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "alg" -> algorithm = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "kid" -> keyId = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "crit" -> {
+                        // Расширения, которые получатель обязан понимать (RFC 7515, 4.1.11), не поддерживаются
+                        return null;
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return ALGORITHM.equals(algorithm) ? keyId : null;
+    }
+
+    private static boolean signatureMatches(String token, int signingInputEnd, PublicKey key, Buffers local) {
+        byte[] input = local.input;
+        for (int i = 0; i < signingInputEnd; i++) {
+            char c = token.charAt(i);
+            if (c >= 128) {
+                return false;
+            }
+            input[i] = (byte) c;
+        }
+        int signatureLength = decode(token, signingInputEnd + 1, token.length(), local.signatureBytes);
+        if (signatureLength <= 0) {
+            return false;
+        }
+        try {
+            local.signature.initVerify(key);
+            local.signature.update(input, 0, signingInputEnd);
+            return local.signature.verify(local.signatureBytes, 0, signatureLength);
+        } catch (InvalidKeyException | SignatureException e) {
+            return false;
+        }
+    }
+
+    private JwtClaims parseClaims(byte[] payload, int length, long nowMillis) {
+        String userId = null;
+        String email = null;
+        String subject = null;
+        String tokenId = null;
+        long issuedAt = -1;
+        long issuedAtMillis = -1;
+        long expiration = -1;
+
+        try (JsonParser parser = jsonFactory.createParser(payload, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "userId" -> userId = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "email" -> email = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "sub" -> subject = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "jti" -> tokenId = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "iat" -> issuedAt = value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : -1;
+                    case "iatMs" -> issuedAtMillis = value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : -1;
+                    case "exp" -> expiration = value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : -1;
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        if (userId == null || expiration < 0 || issuedAt < 0) {
+            return null;
+        }
+        // Без допуска на рассинхрон часов: истёк, если сейчас позже exp
+        if (nowMillis > expiration * 1000) {
+            return null;
+        }
+        try {
+            // Токены, выпущенные до появления iatMs, — с точностью до секунды
+            return new JwtClaims(UUID.fromString(userId), email, subject, tokenId, issuedAt,
+                    issuedAtMillis >= 0 ? issuedAtMillis : issuedAt * 1000, expiration);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Декодировать base64url без паддинга в буфер
+     * @return число байт или -1 при недопустимом символе/переполнении
+     */
+    private static int decode(String source, int from, int to, byte[] target) {
+        int length = to - from;
+        if (length % 4 == 1 || (length / 4) * 3 + 2 > target.length) {
+            return -1;
+        }
+        int out = 0;
+        int accumulator = 0;
+        int bits = 0;
+        for (int i = from; i < to; i++) {
+            char c = source.charAt(i);
+            int value = c < 128 ? BASE64URL_VALUES[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            accumulator = (accumulator << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                target[out++] = (byte) (accumulator >> bits);
+            }
+        }
+        // Неканоничная запись: лишние младшие биты последнего символа не нулевые
+        if ((accumulator & ((1 << bits) - 1)) != 0) {
+            return -1;
+        }
+        return out;
+    }
+
+    /**
+     * Буферы и Signature одного потока: после прогрева проверка не выделяет под них память
+     */
+    private static final class Buffers {
+        private final Signature signature;
+        private final byte[] header = new byte[MAX_HEADER_LENGTH];
+        private final byte[] input = new byte[MAX_TOKEN_LENGTH];
+        private final byte[] payload = new byte[MAX_TOKEN_LENGTH];
+        private final byte[] signatureBytes = new byte[MAX_SIGNATURE_BYTES + 2];
+
+        private Buffers() {
+            try {
+                signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("SHA256withRSA is not available", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.socialnetwork.auth.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Эпохи отзыва пользователей из сжатого топика AUTH_REVOCATIONS
+ * (ключ — userId, значение {"userId", "revokedAt" — миллисекунды epoch, "reason"}).
+ * При старте все разделы читаются с начала до конечных смещений — состояние восстанавливается
+ * без запросов к сервису авторизации; дальше новые события читает фоновый поток.
+ * Группа потребителей не используется: каждый экземпляр читает все разделы, смещения не фиксируются.
+ * Отзывы отдельных токенов в топик не попадают — для них нужен {@link RedisRevocationSource}.
+ */
+public class KafkaRevocationSource implements RevocationSource {
+
+    // Совпадает с KafkaProducerService сервиса
+    static final String TOPIC = "AUTH_REVOCATIONS";
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Logger log = LoggerFactory.getLogger(KafkaRevocationSource.class);
+
+    private final Supplier<Consumer<String, String>> consumerFactory;
+    private final Duration replayTimeout;
+    private Consumer<String, String> consumer;
+    private Thread pollThread;
+    private volatile boolean running;
+
+    /**
+     * @param consumerConfig настройки потребителя Kafka (как минимум bootstrap.servers)
+     * @param replayTimeout сколько ждать восстановления состояния при старте
+     */
+    public KafkaRevocationSource(Map<String, Object> consumerConfig, Duration replayTimeout) {
+        this(() -> {
+            Map<String, Object> config = new HashMap<>(consumerConfig);
+            config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+            return new KafkaConsumer<>(config, new StringDeserializer(), new StringDeserializer());
+        }, replayTimeout);
+    }
+
+    KafkaRevocationSource(Supplier<Consumer<String, String>> consumerFactory, Duration replayTimeout) {
+        this.consumerFactory = consumerFactory;
+        this.replayTimeout = replayTimeout;
+    }
+
+    @Override
+    public void start(RevocationState state) {
+        consumer = consumerFactory.get();
+        try {
+            replay(state);
+        } catch (RuntimeException e) {
+            consumer.close();
+            throw e;
+        }
+
+        // Потребитель не потокобезопасен: дальше с ним работает только фоновый поток
+        running = true;
+        pollThread = new Thread(() -> poll(state), "auth-client-revocation-kafka");
+        pollThread.setDaemon(true);
+        pollThread.start();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (pollThread == null) {
+            return;
+        }
+        consumer.wakeup();
+        try {
+            pollThread.join(POLL_TIMEOUT.multipliedBy(4).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void replay(RevocationState state) {
+        List<PartitionInfo> partitionInfos = consumer.partitionsFor(TOPIC);
+        if (partitionInfos == null || partitionInfos.isEmpty()) {
+            throw new IllegalStateException("Topic " + TOPIC + " not found");
+        }
+        List<TopicPartition> partitions = partitionInfos.stream()
+                .map(partition -> new TopicPartition(TOPIC, partition.partition()))
+                .toList();
+        consumer.assign(partitions);
+        consumer.seekToBeginning(partitions);
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+        long deadline = System.nanoTime() + replayTimeout.toNanos();
+        int replayed = 0;
+        while (!caughtUp(endOffsets)) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Revocation topic was not replayed within " + replayTimeout);
+            }
+            for (ConsumerRecord<String, String> record : consumer.poll(POLL_TIMEOUT)) {
+                apply(state, record.value());
+                replayed++;
+            }
+        }
+        log.info("Replayed {} revocation events from {}", replayed, TOPIC);
+    }
+
+    private boolean caughtUp(Map<TopicPartition, Long> endOffsets) {
+        for (Map.Entry<TopicPartition, Long> end : endOffsets.entrySet()) {
+            if (consumer.position(end.getKey()) < end.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void poll(RevocationState state) {
+        try {
+            while (running) {
+                try {
+                    for (ConsumerRecord<String, String> record : consumer.poll(POLL_TIMEOUT)) {
+                        apply(state, record.value());
+                    }
+                } catch (WakeupException e) {
+                    // close()
+                } catch (RuntimeException e) {
+                    log.warn("Polling {} failed: {}", TOPIC, e.getMessage());
+                }
+            }
+        } finally {
+            consumer.close();
+        }
+    }
+
+    /**
+     * Применить событие топика; tombstone и повреждённые события пропускаются
+     */
+    static void apply(RevocationState state, String value) {
+        if (value == null) {
+            return;
+        }
+        String userId = null;
+        long revokedAt = -1;
+        try (JsonParser parser = JSON_FACTORY.createParser(value)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "userId" -> userId = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "revokedAt" -> revokedAt = token == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : -1;
+                    default -> parser.skipChildren();
+                }
+            }
+            if (userId != null && revokedAt >= 0) {
+                state.revokeUser(UUID.fromString(userId), revokedAt);
+                return;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // ниже
+        }
+        log.warn("Ignoring malformed revocation event on {}", TOPIC);
+    }
+}
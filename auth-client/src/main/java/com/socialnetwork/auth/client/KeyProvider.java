@@ -0,0 +1,36 @@
+package com.socialnetwork.auth.client;
+
+import java.net.URI;
+import java.security.PublicKey;
+import java.util.Map;
+
+/**
+ * Источник открытых ключей проверки подписи.
+ * Сервис авторизации подписывает токены RS256 закрытым ключом, который есть только у него, и публикует
+ * открытые ключи в JWKS (GET /api/v1/auth/.well-known/jwks.json). Ключ выбирается по kid заголовка токена,
+ * поэтому после смены ключа токены, подписанные прежним, проверяются, пока он опубликован.
+ */
+@FunctionalInterface
+public interface KeyProvider {
+
+    /**
+     * @param keyId kid из заголовка токена
+     * @return открытый ключ или null, если ключ неизвестен
+     */
+    PublicKey publicKey(String keyId);
+
+    /**
+     * Ключи из JWKS сервиса авторизации с параметрами обновления по умолчанию, см. {@link JwksKeyProvider}
+     */
+    static KeyProvider jwks(URI uri) {
+        return JwksKeyProvider.builder(uri).build();
+    }
+
+    /**
+     * Фиксированный набор ключей по kid
+     */
+    static KeyProvider of(Map<String, ? extends PublicKey> keys) {
+        Map<String, PublicKey> copy = Map.copyOf(keys);
+        return keyId -> keyId != null ? copy.get(keyId) : null;
+    }
+}
@@ -0,0 +1,125 @@
+package com.socialnetwork.auth.client;
+
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.ScoredValue;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отзывы из Redis сервиса авторизации.
+ * Подписка на каналы token-revocation ("<expiresAtMillis>|<token>") и user-revocation
+ * ("<revokedAtMillis>|<userId>") даёт свежесть порядка задержки pub/sub. Сообщения, пропущенные
+ * при переподключении, дочитываются периодическим снимком ZSET blacklist:recent и revocation:users
+ * (score — момент отзыва), которые сервис хранит срок жизни access токена.
+ * Клиент Redis принадлежит вызывающему и здесь не закрывается.
+ */
+public class RedisRevocationSource implements RevocationSource {
+
+    // Совпадают с LocalRevocationStore и RedisKeys сервиса
+    static final String TOKEN_CHANNEL = "token-revocation";
+    static final String USER_CHANNEL = "user-revocation";
+    static final String TOKEN_SNAPSHOT_KEY = "blacklist:recent";
+    static final String USER_SNAPSHOT_KEY = "revocation:users";
+
+    // Перекрытие окон снимка на случай расхождения часов
+    private static final long SNAPSHOT_OVERLAP_MS = 5000;
+
+    private static final Logger log = LoggerFactory.getLogger(RedisRevocationSource.class);
+
+    private final RedisClient redisClient;
+    private final Duration snapshotInterval;
+    private StatefulRedisPubSubConnection<String, String> pubSubConnection;
+    private StatefulRedisConnection<String, String> connection;
+    private ScheduledExecutorService scheduler;
+    private RevocationState state;
+    private long lastSnapshotMillis;
+
+    public RedisRevocationSource(RedisClient redisClient, Duration snapshotInterval) {
+        this.redisClient = redisClient;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    @Override
+    public void start(RevocationState state) {
+        this.state = state;
+        // Сначала подписка, потом снимок: отзыв между ними не теряется
+        pubSubConnection = redisClient.connectPubSub();
+        pubSubConnection.addListener(new RedisPubSubAdapter<>() {
+            @Override
+            public void message(String channel, String message) {
+                apply(state, channel, message);
+            }
+        });
+        pubSubConnection.sync().subscribe(TOKEN_CHANNEL, USER_CHANNEL);
+        connection = redisClient.connect();
+        loadSnapshot();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "auth-client-revocation-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = snapshotInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                loadSnapshot();
+            } catch (RuntimeException e) {
+                log.warn("Revocation snapshot from Redis failed: {}", e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (pubSubConnection != null) {
+            pubSubConnection.close();
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    private void loadSnapshot() {
+        long now = System.currentTimeMillis();
+        long from = lastSnapshotMillis > 0 ? lastSnapshotMillis - SNAPSHOT_OVERLAP_MS : 0;
+        Range<Long> range = Range.from(Range.Boundary.including(from), Range.Boundary.unbounded());
+        for (ScoredValue<String> entry : connection.sync().zrangebyscoreWithScores(TOKEN_SNAPSHOT_KEY, range)) {
+            apply(state, TOKEN_CHANNEL, entry.getValue());
+        }
+        for (ScoredValue<String> entry : connection.sync().zrangebyscoreWithScores(USER_SNAPSHOT_KEY, range)) {
+            state.revokeUser(UUID.fromString(entry.getValue()), (long) entry.getScore());
+        }
+        lastSnapshotMillis = now;
+    }
+
+    /**
+     * Применить сообщение канала отзывов; повреждённые сообщения пропускаются
+     */
+    static void apply(RevocationState state, String channel, String message) {
+        int separator = message.indexOf('|');
+        try {
+            long millis = Long.parseLong(message.substring(0, separator));
+            String value = message.substring(separator + 1);
+            if (USER_CHANNEL.equals(channel)) {
+                state.revokeUser(UUID.fromString(value), millis);
+            } else if (TOKEN_CHANNEL.equals(channel)) {
+                state.revokeToken(value, millis);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed revocation message on {}", channel);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.socialnetwork.auth.client;
+
+/**
+ * Поток событий отзыва, наполняющий {@link RevocationState}
+ */
+public interface RevocationSource extends AutoCloseable {
+
+    /**
+     * Подписаться на отзывы и загрузить текущее состояние.
+     * Возвращает управление, когда снимок загружен: до этого клиент мог бы принять отозванный токен.
+     */
+    void start(RevocationState state);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,81 @@
+package com.socialnetwork.auth.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Локальная копия отзывов: отдельные токены (до их истечения) и эпохи пользователей
+ * (момент отзыва всех токенов при logout, смене пароля или email; живёт срок жизни access токена).
+ * Проверка — два обращения к хэш-таблицам без сети. Потокобезопасен.
+ * <p>
+ * Размер не ограничен, записи удаляются только по времени: другого источника отзывов у клиента нет,
+ * и вытеснение по размеру снова сделало бы отозванные токены действительными. Память растёт
+ * с числом отзывов за срок жизни access токена.
+ */
+public class RevocationState {
+
+    // Токен -> момент истечения в миллисекундах
+    private final Cache<String, Long> tokens;
+    // userId -> момент отзыва в миллисекундах
+    private final Cache<UUID, Long> userEpochs;
+
+    public RevocationState(Duration accessTokenLifetime) {
+        this.tokens = Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, Long>() {
+                    @Override
+                    public long expireAfterCreate(String token, Long expiresAt, long currentTime) {
+                        return remainingNanos(expiresAt);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, Long expiresAt, long currentTime, long currentDuration) {
+                        return remainingNanos(expiresAt);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, Long expiresAt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        this.userEpochs = Caffeine.newBuilder()
+                .expireAfterWrite(accessTokenLifetime)
+                .build();
+    }
+
+    /**
+     * @param expiresAtMillis момент истечения отозванного токена
+     */
+    public void revokeToken(String token, long expiresAtMillis) {
+        if (expiresAtMillis > System.currentTimeMillis()) {
+            tokens.asMap().merge(token, expiresAtMillis, Math::max);
+        }
+    }
+
+    /**
+     * @param revokedAtMillis момент отзыва всех токенов пользователя
+     */
+    public void revokeUser(UUID userId, long revokedAtMillis) {
+        userEpochs.asMap().merge(userId, revokedAtMillis, Math::max);
+    }
+
+    /**
+     * Отозван ли токен. Эпоха сравнивается с моментом выпуска в миллисекундах (iatMs):
+     * токен, полученный в ту же секунду после logout, остаётся действительным.
+     */
+    public boolean isRevoked(String token, AuthPrincipal principal) {
+        Long revokedAt = userEpochs.getIfPresent(principal.userId());
+        if (revokedAt != null && principal.issuedAtMillis() <= revokedAt) {
+            return true;
+        }
+        return tokens.getIfPresent(token) != null;
+    }
+
+    private static long remainingNanos(long expiresAtMillis) {
+        return Math.max(0, Duration.ofMillis(expiresAtMillis - System.currentTimeMillis()).toNanos());
+    }
+}
@@ -0,0 +1,75 @@
+package com.socialnetwork.auth.client;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность AuthClient.validate на одном ядре (один поток):
+ * повторная проверка токена из кэша и полная проверка подписи без кэша.
+ * В состоянии отзывов 1000 токенов и 1000 эпох пользователей.
+ * Не запускается surefire. Запуск после mvn -f auth-client/pom.xml test-compile:
+ * mvn -f auth-client/pom.xml dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp auth-client/target/test-classes:auth-client/target/classes:$(cat auth-client/cp.txt) org.openjdk.jmh.Main AuthClientBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseParallelGC")
+public class AuthClientBenchmark {
+
+    private AuthClient cachedClient;
+    private AuthClient uncachedClient;
+    private String token;
+    private String tamperedToken;
+
+    @Setup
+    public void setUp() {
+        cachedClient = AuthClient.builder()
+                .keyProvider(TestTokens.keyProvider())
+                .build();
+        uncachedClient = AuthClient.builder()
+                .keyProvider(TestTokens.keyProvider())
+                .cacheMaximumSize(0)
+                .build();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            cachedClient.revocationState().revokeToken("revoked-" + i, now + 600_000);
+            cachedClient.revocationState().revokeUser(UUID.randomUUID(), now);
+            uncachedClient.revocationState().revokeToken("revoked-" + i, now + 600_000);
+            uncachedClient.revocationState().revokeUser(UUID.randomUUID(), now);
+        }
+
+        // В реальном запросе токен приходит новой строкой с невычисленным hashCode,
+        // поэтому каждый вызов проверяет копию
+        token = TestTokens.accessToken(UUID.randomUUID().toString(), "bench@example.com",
+                UUID.randomUUID().toString(), now / 1000, now / 1000 + 900);
+        int at = token.length() - 10;
+        tamperedToken = token.substring(0, at) + (token.charAt(at) == 'A' ? 'B' : 'A') + token.substring(at + 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        cachedClient.close();
+        uncachedClient.close();
+    }
+
+    @Benchmark
+    public Object cached() {
+        return cachedClient.validate(new String(token));
+    }
+
+    @Benchmark
+    public Object uncached() {
+        return uncachedClient.validate(new String(token));
+    }
+
+    @Benchmark
+    public Object uncachedInvalid() {
+        return uncachedClient.validate(new String(tamperedToken));
+    }
+}
@@ -0,0 +1,225 @@
+package com.socialnetwork.auth.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthClientTest {
+
+    private final UUID userId = UUID.randomUUID();
+    private final long now = System.currentTimeMillis() / 1000;
+
+    private AuthClient authClient;
+
+    @BeforeEach
+    void setUp() {
+        authClient = AuthClient.builder()
+                .keyProvider(TestTokens.keyProvider())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        authClient.close();
+    }
+
+    @Test
+    void testValidate_validToken_shouldReturnPrincipal() {
+        // Given
+        String token = TestTokens.accessToken(userId.toString(), "user@example.com", "jti-1", now, now + 900);
+
+        // When
+        AuthPrincipal principal = authClient.validate(token).orElseThrow();
+
+        // Then
+        assertEquals(userId, principal.userId());
+        assertEquals("user@example.com", principal.email());
+        assertEquals("jti-1", principal.tokenId());
+        assertEquals(now + 900, principal.expiresAt());
+    }
+
+    @Test
+    void testValidate_invalidTokens_shouldBeRejected() {
+        // Given
+        String valid = TestTokens.accessToken(userId.toString(), "user@example.com", "jti-1", now, now + 900);
+        int at = valid.length() - 10;
+        String tampered = valid.substring(0, at) + (valid.charAt(at) == 'A' ? 'B' : 'A') + valid.substring(at + 1);
+        String expired = TestTokens.accessToken(userId.toString(), "user@example.com", "jti-2", now - 1000, now - 100);
+        String refresh = TestTokens.sign(TestTokens.HEADER,
+                "{\"userId\":\"" + userId + "\",\"sub\":\"" + userId + "\",\"iat\":" + now + ",\"exp\":" + (now + 900) + "}");
+        String claims = "{\"userId\":\"" + userId + "\",\"email\":\"user@example.com\",\"iat\":" + now
+                + ",\"exp\":" + (now + 900) + "}";
+        String otherKey = TestTokens.sign(TestTokens.generateKeyPair().getPrivate(), TestTokens.HEADER, claims);
+        String unknownKeyId = TestTokens.sign("{\"alg\":\"RS256\",\"kid\":\"other\"}", claims);
+        String withoutKeyId = TestTokens.sign("{\"alg\":\"RS256\"}", claims);
+        String critical = TestTokens.sign("{\"alg\":\"RS256\",\"kid\":\"test-key\",\"crit\":[\"exp\"]}", claims);
+        String unsigned = TestTokens.signingInput("{\"alg\":\"none\",\"kid\":\"test-key\"}", claims) + ".";
+        // Подмена алгоритма: HMAC с открытым ключом в качестве секрета
+        String hmacWithPublicKey = hmac("{\"alg\":\"HS256\",\"kid\":\"test-key\"}", claims);
+
+        // When & Then
+        assertTrue(authClient.validate(tampered).isEmpty());
+        assertTrue(authClient.validate(expired).isEmpty());
+        assertTrue(authClient.validate(refresh).isEmpty());
+        assertTrue(authClient.validate(otherKey).isEmpty());
+        assertTrue(authClient.validate(unknownKeyId).isEmpty());
+        assertTrue(authClient.validate(withoutKeyId).isEmpty());
+        assertTrue(authClient.validate(critical).isEmpty());
+        assertTrue(authClient.validate(unsigned).isEmpty());
+        assertTrue(authClient.validate(hmacWithPublicKey).isEmpty());
+        assertTrue(authClient.validate("not-a-token").isEmpty());
+        assertTrue(authClient.validate(null).isEmpty());
+    }
+
+    @Test
+    void testValidate_unknownClaims_shouldBeIgnored() {
+        // Given
+        String token = TestTokens.sign("{\"typ\":\"JWT\",\"alg\":\"RS256\",\"kid\":\"test-key\"}", "{\"userId\":\"" + userId
+                + "\",\"email\":\"user@example.com\",\"roles\":[\"admin\"],\"meta\":{\"a\":1},\"iat\":" + now
+                + ",\"exp\":" + (now + 900) + "}");
+
+        // When & Then
+        assertTrue(authClient.validate(token).isPresent());
+    }
+
+    @Test
+    void testValidate_cachedToken_shouldExpireAndHonourRevocations() {
+        // Given
+        String token = TestTokens.accessToken(userId.toString(), "user@example.com", "jti-1", now, now + 900);
+        String other = TestTokens.accessToken(userId.toString(), "user@example.com", "jti-2", now, now + 900);
+        assertTrue(authClient.validate(token).isPresent());
+        assertTrue(authClient.validate(other).isPresent());
+
+        // When — отзыв токена приходит после того, как результат уже в кэше
+        RedisRevocationSource.apply(authClient.revocationState(), RedisRevocationSource.TOKEN_CHANNEL,
+                (System.currentTimeMillis() + 60000) + "|" + token);
+
+        // Then
+        assertTrue(authClient.validate(token).isEmpty());
+        assertTrue(authClient.validate(other).isPresent());
+
+        // When — logout: отозваны все токены пользователя, выпущенные до этого момента
+        RedisRevocationSource.apply(authClient.revocationState(), RedisRevocationSource.USER_CHANNEL,
+                System.currentTimeMillis() + "|" + userId);
+
+        // Then
+        assertTrue(authClient.validate(other).isEmpty());
+        String issuedLater = TestTokens.accessToken(userId.toString(), "user@example.com", "jti-3", now + 2, now + 900);
+        assertTrue(authClient.validate(issuedLater).isPresent());
+    }
+
+    @Test
+    void testValidate_loginInSameSecondAsLogout_shouldStayValid() {
+        // Given — logout и новый вход в одну секунду, с разницей в миллисекунды
+        long revokedAt = now * 1000 + 300;
+        String before = TestTokens.accessToken(userId.toString(), "user@example.com", "jti-1", now, revokedAt - 5, now + 900);
+        String after = TestTokens.accessToken(userId.toString(), "user@example.com", "jti-2", now, revokedAt + 5, now + 900);
+
+        // When
+        authClient.revocationState().revokeUser(userId, revokedAt);
+
+        // Then
+        assertTrue(authClient.validate(before).isEmpty());
+        assertTrue(authClient.validate(after).isPresent());
+    }
+
+    @Test
+    void testValidate_cachedTokenPastExp_shouldBeRejected() {
+        // Given
+        MutableClock clock = new MutableClock();
+        String token = TestTokens.accessToken(userId.toString(), "user@example.com", "jti-1", now, now + 60);
+        try (AuthClient client = AuthClient.builder()
+                .keyProvider(TestTokens.keyProvider())
+                .clock(clock)
+                .build()) {
+            assertTrue(client.validate(token).isPresent());
+
+            // When
+            clock.advance(Duration.ofSeconds(120));
+
+            // Then
+            assertTrue(client.validate(token).isEmpty());
+        }
+    }
+
+    @Test
+    void testRevocationState_manyRevocations_shouldNotBeEvicted() {
+        // Given
+        RevocationState state = new RevocationState(Duration.ofMinutes(15));
+        long revokedAt = System.currentTimeMillis();
+
+        // When
+        for (int i = 0; i < 200_000; i++) {
+            state.revokeUser(new UUID(0, i), revokedAt);
+        }
+
+        // Then
+        for (int i = 0; i < 200_000; i++) {
+            assertTrue(state.isRevoked("token", new AuthPrincipal(new UUID(0, i), "user@example.com", null,
+                    now, revokedAt - 1, now + 900)));
+        }
+    }
+
+    @Test
+    void testApply_malformedMessage_shouldBeIgnored() {
+        // Given
+        RevocationState state = new RevocationState(Duration.ofMinutes(15));
+        AuthPrincipal principal = new AuthPrincipal(userId, "user@example.com", null, now, now * 1000, now + 900);
+
+        // When
+        RedisRevocationSource.apply(state, RedisRevocationSource.USER_CHANNEL, "garbage");
+        RedisRevocationSource.apply(state, RedisRevocationSource.USER_CHANNEL, "123|not-a-uuid");
+
+        // Then
+        assertFalse(state.isRevoked("token", principal));
+    }
+
+    private static String hmac(String header, String claims) {
+        String signingInput = TestTokens.signingInput(header, claims);
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(TestTokens.KEY_PAIR.getPublic().getEncoded(), "HmacSHA256"));
+            return signingInput + "." + Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static final class MutableClock extends Clock {
+        private Instant instant = Instant.now();
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
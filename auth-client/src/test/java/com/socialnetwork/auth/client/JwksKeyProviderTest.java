@@ -0,0 +1,132 @@
+package com.socialnetwork.auth.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwksKeyProviderTest {
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AuthClientTest.MutableClock clock = new AuthClientTest.MutableClock();
+
+    private HttpServer server;
+    private volatile int status = 200;
+    private volatile String body;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        body = jwks(TestTokens.jwk(TestTokens.KEY_ID, (RSAPublicKey) TestTokens.KEY_PAIR.getPublic()));
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/jwks", exchange -> {
+            requests.incrementAndGet();
+            byte[] response = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testJwks_shouldVerifyTokensWithPublishedKey() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        long now = System.currentTimeMillis() / 1000;
+        String token = TestTokens.accessToken(userId.toString(), "user@example.com", "jti-1", now, now + 900);
+
+        // When
+        try (AuthClient client = AuthClient.builder().keyProvider(KeyProvider.jwks(uri())).build()) {
+
+            // Then
+            assertEquals(userId, client.validate(token).orElseThrow().userId());
+        }
+    }
+
+    @Test
+    void testParse_shouldSkipKeysNotForRs256Signatures() throws Exception {
+        // Given
+        RSAPublicKey key = (RSAPublicKey) TestTokens.KEY_PAIR.getPublic();
+        String encryption = TestTokens.jwk("enc", key).replace("\"use\":\"sig\"", "\"use\":\"enc\"");
+        String otherAlgorithm = TestTokens.jwk("ps", key).replace("RS256", "PS256");
+        String elliptic = "{\"kty\":\"EC\",\"kid\":\"ec\",\"crv\":\"P-256\",\"x\":\"AA\",\"y\":\"AA\"}";
+
+        // When
+        var keys = JwksKeyProvider.parse(jwks(TestTokens.jwk("sig", key), encryption, otherAlgorithm, elliptic)
+                .getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        assertEquals(1, keys.size());
+        assertEquals(key, keys.get("sig"));
+    }
+
+    @Test
+    void testPublicKey_unknownKid_shouldRefetchAtMostOncePerInterval() {
+        // Given
+        JwksKeyProvider provider = JwksKeyProvider.builder(uri()).clock(clock).build();
+        KeyPair next = TestTokens.generateKeyPair();
+        body = jwks(TestTokens.jwk(TestTokens.KEY_ID, (RSAPublicKey) TestTokens.KEY_PAIR.getPublic()),
+                TestTokens.jwk("next", (RSAPublicKey) next.getPublic()));
+
+        // When & Then: сразу после загрузки неизвестный kid не вызывает запрос
+        assertNull(provider.publicKey("next"));
+        assertNull(provider.publicKey("next"));
+        assertEquals(1, requests.get());
+
+        clock.advance(Duration.ofSeconds(31));
+        assertEquals(next.getPublic(), provider.publicKey("next"));
+        assertNotNull(provider.publicKey(TestTokens.KEY_ID));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void testPublicKey_staleSet_shouldDropRemovedKeyAndKeepSetOnFailure() {
+        // Given
+        JwksKeyProvider provider = JwksKeyProvider.builder(uri()).clock(clock).build();
+        assertNotNull(provider.publicKey(TestTokens.KEY_ID));
+
+        // When: JWKS недоступен — остаётся прежний набор
+        status = 500;
+        clock.advance(Duration.ofMinutes(11));
+
+        // Then
+        assertNotNull(provider.publicKey(TestTokens.KEY_ID));
+        assertEquals(2, requests.get());
+
+        // When: ключ снят с публикации
+        status = 200;
+        body = jwks();
+        clock.advance(Duration.ofMinutes(11));
+
+        // Then
+        assertNull(provider.publicKey(TestTokens.KEY_ID));
+        assertEquals(3, requests.get());
+    }
+
+    private URI uri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/jwks");
+    }
+
+    private static String jwks(String... keys) {
+        return "{\"keys\":[" + String.join(",", keys) + "]}";
+    }
+}
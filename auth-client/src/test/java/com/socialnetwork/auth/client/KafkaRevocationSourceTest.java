@@ -0,0 +1,87 @@
+package com.socialnetwork.auth.client;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KafkaRevocationSourceTest {
+
+    private final long now = System.currentTimeMillis();
+
+    @Test
+    void testStart_shouldReplayTopicBeforeReturning() {
+        // Given — в сжатом топике по событию на пользователя и tombstone
+        UUID revoked = UUID.randomUUID();
+        UUID untouched = UUID.randomUUID();
+        UUID deleted = UUID.randomUUID();
+        MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        TopicPartition first = new TopicPartition(KafkaRevocationSource.TOPIC, 0);
+        TopicPartition second = new TopicPartition(KafkaRevocationSource.TOPIC, 1);
+        consumer.updatePartitions(KafkaRevocationSource.TOPIC, List.of(
+                new PartitionInfo(KafkaRevocationSource.TOPIC, 0, null, null, null),
+                new PartitionInfo(KafkaRevocationSource.TOPIC, 1, null, null, null)));
+        consumer.updateBeginningOffsets(Map.of(first, 0L, second, 0L));
+        consumer.updateEndOffsets(Map.of(first, 1L, second, 2L));
+        consumer.schedulePollTask(() -> {
+            consumer.addRecord(new ConsumerRecord<>(KafkaRevocationSource.TOPIC, 0, 0, revoked.toString(), event(revoked, now)));
+            consumer.addRecord(new ConsumerRecord<>(KafkaRevocationSource.TOPIC, 1, 0, deleted.toString(), "garbage"));
+            consumer.addRecord(new ConsumerRecord<>(KafkaRevocationSource.TOPIC, 1, 1, deleted.toString(), null));
+        });
+        RevocationState state = new RevocationState(Duration.ofMinutes(15));
+        KafkaRevocationSource source = new KafkaRevocationSource(() -> consumer, Duration.ofSeconds(5));
+
+        // When
+        source.start(state);
+        source.close();
+
+        // Then
+        assertTrue(state.isRevoked("token", principal(revoked, now / 1000 - 1)));
+        assertFalse(state.isRevoked("token", principal(revoked, now / 1000 + 1)));
+        assertFalse(state.isRevoked("token", principal(untouched, now / 1000 - 1)));
+        assertFalse(state.isRevoked("token", principal(deleted, now / 1000 - 1)));
+    }
+
+    @Test
+    void testStart_missingTopic_shouldFail() {
+        // Given
+        MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        KafkaRevocationSource source = new KafkaRevocationSource(() -> consumer, Duration.ofSeconds(5));
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> source.start(new RevocationState(Duration.ofMinutes(15))));
+        assertTrue(consumer.closed());
+    }
+
+    @Test
+    void testApply_shouldIgnoreUnknownFieldsAndKeepLatestEpoch() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        RevocationState state = new RevocationState(Duration.ofMinutes(15));
+
+        // When — события могли прийти не по порядку
+        KafkaRevocationSource.apply(state, event(userId, now));
+        KafkaRevocationSource.apply(state, "{\"userId\":\"" + userId + "\",\"revokedAt\":" + (now - 60000)
+                + ",\"reason\":\"LOGOUT\",\"extra\":{\"a\":[1]}}");
+
+        // Then
+        assertTrue(state.isRevoked("token", principal(userId, now / 1000 - 30)));
+    }
+
+    private static String event(UUID userId, long revokedAt) {
+        return "{\"userId\":\"" + userId + "\",\"revokedAt\":" + revokedAt + ",\"reason\":\"PASSWORD_CHANGE\"}";
+    }
+
+    private static AuthPrincipal principal(UUID userId, long issuedAt) {
+        return new AuthPrincipal(userId, "user@example.com", null, issuedAt, issuedAt * 1000, issuedAt + 900);
+    }
+}
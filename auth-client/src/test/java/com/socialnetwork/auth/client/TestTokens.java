@@ -0,0 +1,86 @@
+package com.socialnetwork.auth.client;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Подписывает токены так же, как сервис авторизации
+ */
+final class TestTokens {
+
+    static final String KEY_ID = "test-key";
+    static final KeyPair KEY_PAIR = generateKeyPair();
+    static final String HEADER = "{\"alg\":\"RS256\",\"kid\":\"" + KEY_ID + "\"}";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private TestTokens() {
+    }
+
+    static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static KeyProvider keyProvider() {
+        return KeyProvider.of(Map.of(KEY_ID, KEY_PAIR.getPublic()));
+    }
+
+    static String sign(String header, String claims) {
+        return sign(KEY_PAIR.getPrivate(), header, claims);
+    }
+
+    static String sign(PrivateKey key, String header, String claims) {
+        String signingInput = signingInput(header, claims);
+        try {
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(key);
+            signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return signingInput + "." + ENCODER.encodeToString(signature.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String signingInput(String header, String claims) {
+        return ENCODER.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + "."
+                + ENCODER.encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String accessToken(String userId, String email, String tokenId, long issuedAt, long expiresAt) {
+        return accessToken(userId, email, tokenId, issuedAt, issuedAt * 1000, expiresAt);
+    }
+
+    static String accessToken(String userId, String email, String tokenId, long issuedAt, long issuedAtMillis, long expiresAt) {
+        return sign(HEADER, "{\"userId\":\"" + userId + "\",\"email\":\"" + email + "\",\"sub\":\""
+                + email + "\",\"jti\":\"" + tokenId + "\",\"iat\":" + issuedAt + ",\"iatMs\":" + issuedAtMillis
+                + ",\"exp\":" + expiresAt + "}");
+    }
+
+    /**
+     * Запись JWKS, как её публикует сервис авторизации
+     */
+    static String jwk(String keyId, RSAPublicKey key) {
+        return "{\"kty\":\"RSA\",\"use\":\"sig\",\"alg\":\"RS256\",\"kid\":\"" + keyId + "\",\"n\":\""
+                + unsigned(key.getModulus()) + "\",\"e\":\"" + unsigned(key.getPublicExponent()) + "\"}";
+    }
+
+    private static String unsigned(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        return ENCODER.encodeToString(bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes);
+    }
+}
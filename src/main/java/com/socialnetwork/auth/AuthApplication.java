@@ -3,12 +3,16 @@ package com.socialnetwork.auth;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableDiscoveryClient
+@EnableScheduling
 public class AuthApplication {
 
 	public static void main(String[] args) {
+		// Капча рисуется через AWT: без дисплея нужен headless режим, независимо от флагов запуска
+		System.setProperty("java.awt.headless", "true");
 		SpringApplication.run(AuthApplication.class, args);
 	}
 
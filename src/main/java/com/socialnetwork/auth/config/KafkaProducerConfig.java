@@ -1,10 +1,14 @@
 package com.socialnetwork.auth.config;
 
+import com.socialnetwork.auth.service.KafkaProducerService;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.config.TopicConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
@@ -51,4 +55,24 @@ public class KafkaProducerConfig {
         return new KafkaTemplate<>(producerFactory());
     }
 
+    /**
+     * Топик отзывов: сжатие по ключу userId оставляет последнюю эпоху пользователя,
+     * а удаление по сроку убирает эпохи старше срока жизни access токена —
+     * потребитель восстанавливает состояние, прочитав топик с начала
+     */
+    @Bean
+    public NewTopic revocationsTopic(@Value("${revocation-topic.partitions:3}") int partitions,
+                                     @Value("${revocation-topic.replication-factor:1}") short replicationFactor,
+                                     @Value("${revocation-topic.retention-ms:86400000}") long retentionMs,
+                                     @Value("${revocation-topic.segment-ms:3600000}") long segmentMs) {
+        return TopicBuilder.name(KafkaProducerService.REVOCATIONS_TOPIC)
+                .partitions(partitions)
+                .replicas(replicationFactor)
+                .config(TopicConfig.CLEANUP_POLICY_CONFIG,
+                        TopicConfig.CLEANUP_POLICY_COMPACT + "," + TopicConfig.CLEANUP_POLICY_DELETE)
+                .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(retentionMs))
+                .config(TopicConfig.SEGMENT_MS_CONFIG, String.valueOf(segmentMs))
+                .build();
+    }
+
 }
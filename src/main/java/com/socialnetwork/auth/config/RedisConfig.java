@@ -1,14 +1,44 @@
 package com.socialnetwork.auth.config;
 
+import com.socialnetwork.auth.service.LocalRevocationStore;
+import com.socialnetwork.auth.service.OpaqueTokenService;
+import com.socialnetwork.auth.service.UserAuthCache;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.time.Duration;
+
+/**
+ * Redis клиент — Lettuce: одно мультиплексированное соединение на экземпляр, пул не нужен,
+ * команды из разных потоков идут по нему конвейером. Таймаут команды — spring.data.redis.timeout,
+ * задержки команд Lettuce экспортируются в Prometheus (lettuce.command.completion).
+ * Если задан spring.data.redis.cluster.nodes, клиент работает с Redis Cluster; раскладка ключей —
+ * {@link com.socialnetwork.auth.util.RedisKeys}.
+ */
 @Configuration
 public class RedisConfig {
 
+    public static final String CIRCUIT_BREAKER_NAME = "redis";
+
     @Bean
     public RedisTemplate<String, String> redisTemplate(RedisConnectionFactory connectionFactory) {
         RedisTemplate<String, String> template = new RedisTemplate<>();
@@ -17,4 +47,89 @@ public class RedisConfig {
         template.setValueSerializer(new StringRedisSerializer());
         return template;
     }
+
+    /**
+     * Инвалидация near-cache проекций пользователей: без неё кеш живёт до TTL, поэтому её можно выключить
+     */
+    @Bean
+    @ConditionalOnProperty(name = "user-auth-cache.pubsub.enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       UserAuthCache userAuthCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(userAuthCache, new ChannelTopic(UserAuthCache.INVALIDATION_CHANNEL));
+        return container;
+    }
+
+    /**
+     * Отзывы токенов между репликами. Отдельный контейнер со своим флагом: выключение
+     * инвалидации кеша пользователей не должно отключать доставку отзывов
+     */
+    @Bean
+    @ConditionalOnProperty(name = "revocation.pubsub.enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer revocationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                     OpaqueTokenService opaqueTokenService,
+                                                                     LocalRevocationStore localRevocationStore) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(opaqueTokenService, new ChannelTopic(OpaqueTokenService.REVOCATION_CHANNEL));
+        container.addMessageListener(localRevocationStore, new ChannelTopic(LocalRevocationStore.REVOCATION_CHANNEL));
+        container.addMessageListener(localRevocationStore, new ChannelTopic(LocalRevocationStore.USER_REVOCATION_CHANNEL));
+        return container;
+    }
+
+    /**
+     * При обрыве соединения команды сразу отклоняются, а не копятся в буфере до таймаута.
+     * В кластере топология обновляется по MOVED/ASK и раз в cluster-refresh-period,
+     * чтобы после failover или решардинга команды быстро находили новый узел.
+     */
+    @Bean
+    public LettuceClientConfigurationBuilderCustomizer lettuceClientOptionsCustomizer(
+            @Value("${spring.data.redis.connect-timeout:1s}") Duration connectTimeout,
+            @Value("${spring.data.redis.cluster.nodes:}") String clusterNodes,
+            @Value("${redis-cluster.topology-refresh-period:30s}") Duration topologyRefreshPeriod) {
+        ClientOptions options = ClientOptions.builder()
+                .autoReconnect(true)
+                .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                .timeoutOptions(TimeoutOptions.enabled())
+                .socketOptions(SocketOptions.builder().connectTimeout(connectTimeout).build())
+                .build();
+        if (!clusterNodes.isBlank()) {
+            options = ClusterClientOptions.builder(options)
+                    .topologyRefreshOptions(ClusterTopologyRefreshOptions.builder()
+                            .enableAllAdaptiveRefreshTriggers()
+                            .enablePeriodicRefresh(topologyRefreshPeriod)
+                            .build())
+                    .build();
+        }
+        ClientOptions clientOptions = options;
+        return builder -> builder.clientOptions(clientOptions);
+    }
+
+    /**
+     * Размыкатель для проверок в Redis на горячем пути. Ошибки и медленные ответы Redis
+     * размыкают его, и вызовы сразу уходят в локальный fallback. Состояние —
+     * метрики resilience4j.circuitbreaker.* с тегом name=redis.
+     */
+    @Bean
+    public CircuitBreaker redisCircuitBreaker(MeterRegistry meterRegistry,
+                                              @Value("${redis-circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+                                              @Value("${redis-circuit-breaker.slow-call-duration-ms:250}") long slowCallDurationMs,
+                                              @Value("${redis-circuit-breaker.sliding-window-size:50}") int slidingWindowSize,
+                                              @Value("${redis-circuit-breaker.minimum-calls:20}") int minimumCalls,
+                                              @Value("${redis-circuit-breaker.open-state-ms:5000}") long openStateMs) {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(Duration.ofMillis(slowCallDurationMs))
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .waitDurationInOpenState(Duration.ofMillis(openStateMs))
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .recordExceptions(DataAccessException.class)
+                .build();
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(config);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        return registry.circuitBreaker(CIRCUIT_BREAKER_NAME);
+    }
 }
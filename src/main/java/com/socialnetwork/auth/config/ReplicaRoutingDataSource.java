@@ -0,0 +1,23 @@
+package com.socialnetwork.auth.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Маршрутизация соединений: транзакции readOnly идут на реплику, остальное — на primary.
+ * Решение принимается в момент получения соединения, поэтому источник должен быть
+ * обёрнут в LazyConnectionDataSourceProxy: иначе соединение берётся раньше,
+ * чем транзакция помечена как readOnly.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? Route.REPLICA : Route.PRIMARY;
+    }
+}
@@ -3,26 +3,41 @@ package com.socialnetwork.auth.controller;
 import com.socialnetwork.auth.dto.request.*;
 import com.socialnetwork.auth.dto.response.CaptchaDto;
 import com.socialnetwork.auth.dto.response.ErrorResponse;
+import com.socialnetwork.auth.dto.response.IntrospectionResponse;
+import com.socialnetwork.auth.dto.response.JwksResponse;
+import com.socialnetwork.auth.dto.response.OpaqueTokenResponse;
+import com.socialnetwork.auth.dto.response.SessionDto;
 import com.socialnetwork.auth.dto.response.TokenResponse;
 import com.socialnetwork.auth.dto.response.ValidationResponse;
+import com.socialnetwork.auth.exception.InvalidRequestException;
+import com.socialnetwork.auth.exception.InvalidTokenException;
 import com.socialnetwork.auth.service.AuthService;
 import com.socialnetwork.auth.service.CaptchaService;
+import com.socialnetwork.auth.service.IntrospectionClientAuthenticator;
 import com.socialnetwork.auth.service.JwtService;
-import io.jsonwebtoken.Claims;
+import com.socialnetwork.auth.service.RateLimiterService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("api/v1/auth")
@@ -34,6 +49,15 @@ public class AuthController {
     private final AuthService authService;
     private final JwtService jwtService;
     private final CaptchaService captchaService;
+    private final RateLimiterService rateLimiterService;
+    private final IntrospectionClientAuthenticator introspectionClientAuthenticator;
+
+    // Верхняя граница кеширования интроспекции: за это время отзыв токена доходит до кеширующих шлюзов
+    @Value("${introspection.max-cache-seconds:60}")
+    private long introspectionMaxCacheSeconds;
+
+    @Value("${jwt.jwks-max-cache-seconds:300}")
+    private long jwksMaxCacheSeconds;
 
     /**
      * POST /api/v1/auth/register - Регистрация пользователя
@@ -58,13 +82,21 @@ public class AuthController {
                     responseCode = "409",
                     description = "Пользователь с таким email уже существует",
                     content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Слишком много запросов, см. заголовок Retry-After",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
             )
     })
     @PostMapping("/register")
     public String register(
             @Parameter(description = "Данные для регистрации пользователя", required = true)
-            @Valid @RequestBody RegistrationDto dto) {
+            @Valid @RequestBody RegistrationDto dto,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
         log.info("Register endpoint called for email: {}", dto.getEmail());
+        checkLimits("register", httpRequest, httpResponse, dto.getEmail());
         return authService.register(dto);
     }
 
@@ -88,16 +120,24 @@ public class AuthController {
             ),
             @ApiResponse(
                     responseCode = "401",
-                    description = "Неверный email или пароль",
+                    description = "Неверный email или пароль, либо требуется капча (CAPTCHA_REQUIRED)",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Слишком много запросов, см. заголовок Retry-After",
                     content = @Content(schema = @Schema(implementation = ErrorResponse.class))
             )
     })
     @PostMapping("/login")
     public TokenResponse login(
             @Parameter(description = "Учетные данные пользователя", required = true)
-            @Valid @RequestBody AuthenticateRq dto) {
+            @Valid @RequestBody AuthenticateRq dto,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
         log.info("Login endpoint called for email: {}", dto.getEmail());
-        return authService.login(dto);
+        checkLimits("login", httpRequest, httpResponse, dto.getEmail());
+        return authService.login(dto, httpRequest.getRemoteAddr(), httpRequest.getHeader("User-Agent"));
     }
 
     /**
@@ -131,6 +171,87 @@ public class AuthController {
         return response.isValid();
     }
 
+    /**
+     * GET /api/v1/auth/.well-known/jwks.json - Открытые ключи проверки подписи
+     */
+    @Operation(
+            summary = "Открытые ключи проверки подписи (JWKS)",
+            description = "Возвращает открытые ключи RSA, которыми сервисы проверяют подпись RS256 токенов локально. " +
+                    "Ключ выбирается по kid из заголовка токена"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Набор ключей",
+                    content = @Content(schema = @Schema(implementation = JwksResponse.class))
+            )
+    })
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<JwksResponse> jwks() {
+        log.debug("JWKS endpoint called");
+        // Клиенты перечитывают набор сами при неизвестном kid, поэтому короткое кеширование безопасно
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(jwksMaxCacheSeconds, TimeUnit.SECONDS).cachePublic())
+                .body(jwtService.jwks());
+    }
+
+    /**
+     * POST /api/v1/auth/introspect - Интроспекция токена
+     */
+    @Operation(
+            summary = "Интроспекция токена (RFC 7662)",
+            description = "Проверяет JWT или непрозрачный токен так же, как /validate, и возвращает active, userId, email, exp и jti. " +
+                    "Вызывающий сервис аутентифицируется заголовком HTTP Basic (client_id и секрет из introspection.clients). " +
+                    "Токен передаётся параметром token только в form-urlencoded теле, не в URL. " +
+                    "Ответ для активного токена кешируется: Cache-Control max-age равен оставшемуся сроку токена, " +
+                    "но не больше introspection.max-cache-seconds. Неактивный — no-store."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Результат интроспекции",
+                    content = @Content(schema = @Schema(implementation = IntrospectionResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Нет параметра token или параметры переданы в URL",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Вызывающий сервис не аутентифицирован (INVALID_CLIENT)",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @PostMapping(value = "/introspect", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public ResponseEntity<IntrospectionResponse> introspect(
+            @Parameter(description = "HTTP Basic: client_id и секрет вызывающего сервиса", required = true)
+            @RequestHeader(value = "Authorization", required = false) String authorization,
+            @Parameter(description = "JWT или непрозрачный токен", required = true, example = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...")
+            @RequestParam(value = "token", required = false) String token,
+            HttpServletRequest httpRequest) {
+        String clientId = introspectionClientAuthenticator.authenticate(authorization);
+        // @RequestParam читает и query, поэтому токен в URL (логи прокси, история) отклоняется явно
+        if (httpRequest.getQueryString() != null) {
+            throw new InvalidRequestException("Parameters must be sent in the request body");
+        }
+        if (token == null || token.isEmpty()) {
+            throw new InvalidRequestException("Parameter token is required");
+        }
+        log.debug("Introspect endpoint called by {}", clientId);
+        IntrospectionResponse response = authService.introspect(token);
+        if (!response.isActive()) {
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .body(response);
+        }
+        long remainingSeconds = response.getExp() - System.currentTimeMillis() / 1000;
+        long maxAge = Math.max(0, Math.min(remainingSeconds, introspectionMaxCacheSeconds));
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(maxAge, TimeUnit.SECONDS))
+                .body(response);
+    }
+
     /**
      * POST /api/v1/auth/refresh - Обновление токена
      */
@@ -163,6 +284,36 @@ public class AuthController {
         return authService.refreshAccessToken(dto);
     }
 
+    /**
+     * POST /api/v1/auth/opaque-token - Обмен JWT на непрозрачный токен
+     */
+    @Operation(
+            summary = "Обмен JWT на непрозрачный access токен",
+            description = "Для межсервисных вызовов: по действующему JWT access токену выдаёт короткий непрозрачный токен " +
+                    "того же пользователя. Он проверяется тем же /validate без разбора JWT и отзывается при logout."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Непрозрачный токен выдан",
+                    content = @Content(schema = @Schema(implementation = OpaqueTokenResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "JWT access токен невалиден, истёк или отозван",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @PostMapping("/opaque-token")
+    public OpaqueTokenResponse issueOpaqueToken(
+            @Parameter(description = "JWT access токен в формате Bearer", required = true,
+                    example = "Bearer eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...")
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        log.info("Opaque token endpoint called");
+        String accessToken = authHeader != null && authHeader.startsWith("Bearer ") ? authHeader.substring(7) : null;
+        return authService.issueOpaqueToken(accessToken);
+    }
+
     /**
      * POST /api/v1/auth/logout - Выход из системы
      */
@@ -197,6 +348,72 @@ public class AuthController {
         return authService.logout(userId, accessToken);
     }
 
+    /**
+     * GET /api/v1/auth/sessions - Активные сессии пользователя
+     */
+    @Operation(
+            summary = "Список активных сессий",
+            description = "Возвращает сессии (входы с устройств) пользователя из access токена, новые первыми: " +
+                    "IP, User-Agent, время входа и истечения refresh токена."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Список сессий",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = SessionDto.class)))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Access токен невалиден или отсутствует",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/sessions")
+    public List<SessionDto> listSessions(
+            @Parameter(description = "JWT access токен в формате Bearer", required = true,
+                    example = "Bearer eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...")
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        log.info("List sessions endpoint called");
+        return authService.listSessions(accessTokenUserId(authHeader));
+    }
+
+    /**
+     * DELETE /api/v1/auth/sessions/{sessionId} - Завершение одной сессии
+     */
+    @Operation(
+            summary = "Завершение сессии",
+            description = "Отзывает refresh токен одной сессии пользователя, остальные сессии продолжают работать. " +
+                    "Access токен завершённой сессии действует до истечения (15 минут)."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Сессия завершена",
+                    content = @Content(schema = @Schema(implementation = String.class, example = "Session revoked"))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Access токен невалиден или отсутствует",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "У пользователя нет такой сессии",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @DeleteMapping("/sessions/{sessionId}")
+    public String revokeSession(
+            @Parameter(description = "JWT access токен в формате Bearer", required = true,
+                    example = "Bearer eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...")
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @Parameter(description = "Идентификатор сессии из GET /sessions", required = true)
+            @PathVariable("sessionId") String sessionId) {
+        UUID userId = accessTokenUserId(authHeader);
+        log.info("Revoke session endpoint called for user: {}", userId);
+        return authService.revokeSession(userId, sessionId);
+    }
+
     /**
      * GET /api/v1/auth/captcha - Генерация капчи
      */
@@ -209,11 +426,17 @@ public class AuthController {
                     responseCode = "200",
                     description = "Капча успешно сгенерирована",
                     content = @Content(schema = @Schema(implementation = CaptchaDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Слишком много запросов, см. заголовок Retry-After",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
             )
     })
     @GetMapping("/captcha")
-    public CaptchaDto generateCaptcha() {
+    public CaptchaDto generateCaptcha(HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
         log.debug("Captcha generation endpoint called");
+        checkLimits("captcha", httpRequest, httpResponse, null);
         return captchaService.generateCaptcha();
     }
 
@@ -234,13 +457,21 @@ public class AuthController {
                     responseCode = "400",
                     description = "Ошибка валидации email",
                     content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Слишком много запросов, см. заголовок Retry-After",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
             )
     })
     @PostMapping("/password/recovery/")
     public String recoverPassword(
             @Parameter(description = "Email для восстановления пароля", required = true)
-            @Valid @RequestBody RecoveryPasswordLinkRq request) {
+            @Valid @RequestBody RecoveryPasswordLinkRq request,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
         log.info("Password recovery endpoint called for email: {}", request.getEmail());
+        checkLimits("password-recovery", httpRequest, httpResponse, request.getEmail());
         return authService.sendPasswordRecoveryLink(request);
     }
 
@@ -340,20 +571,40 @@ public class AuthController {
         return authService.confirmEmailChange(request);
     }
 
+    /**
+     * Проверить лимиты и отдать состояние корзины в заголовках X-RateLimit-*, как у ответа 429
+     */
+    private void checkLimits(String endpoint, HttpServletRequest httpRequest, HttpServletResponse httpResponse, String email) {
+        rateLimiterService.checkLimits(endpoint, httpRequest.getRemoteAddr(), email).ifPresent(status -> {
+            httpResponse.setHeader("X-RateLimit-Limit", String.valueOf(status.limit()));
+            httpResponse.setHeader("X-RateLimit-Remaining", String.valueOf(status.remaining()));
+        });
+    }
+
     private UUID claimsUserId(String authHeader) {
         UUID userId = null;
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String accessToken = authHeader.substring(7);
 
-            try {
-                Claims claims = jwtService.validateAndExtractClaims(accessToken);
-                userId = UUID.fromString(claims.get("userId", String.class));
+            JwtService.TokenClaims claims = jwtService.verify(accessToken);
+            if (claims != null) {
+                userId = claims.userId();
                 log.info("userId exctracted from token: {}", userId);
-            } catch (Exception e) {
-                log.error("Failed to validate user id from token: {}", accessToken);
+            } else {
+                log.error("Failed to validate user id from token");
             }
         }
         return userId;
     }
+
+    /**
+     * Пользователь действующего access токена: черный список, эпоха пользователя, только access токены
+     */
+    private UUID accessTokenUserId(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new InvalidTokenException("Invalid access token");
+        }
+        return authService.authenticate(authHeader.substring(7));
+    }
 }
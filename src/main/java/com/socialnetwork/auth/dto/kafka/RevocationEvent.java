@@ -0,0 +1,28 @@
+package com.socialnetwork.auth.dto.kafka;
+
+import lombok.*;
+
+import java.util.UUID;
+
+/**
+ * Отзыв всех токенов пользователя, выпущенных не позже revokedAt.
+ * Ключ сообщения — userId: в сжатом топике остаётся последняя эпоха пользователя.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class RevocationEvent {
+
+    private UUID userId;
+    // Момент отзыва в миллисекундах epoch — та же эпоха, что в Redis
+    private long revokedAt;
+    private Reason reason;
+
+    public enum Reason {
+        LOGOUT,
+        PASSWORD_CHANGE,
+        EMAIL_CHANGE
+    }
+}
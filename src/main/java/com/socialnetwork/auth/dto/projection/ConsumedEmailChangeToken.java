@@ -0,0 +1,15 @@
+package com.socialnetwork.auth.dto.projection;
+
+import java.util.UUID;
+
+/**
+ * Результат атомарного погашения токена смены email
+ */
+public interface ConsumedEmailChangeToken {
+
+    UUID getUserId();
+
+    String getCurrentEmail();
+
+    String getNewEmail();
+}
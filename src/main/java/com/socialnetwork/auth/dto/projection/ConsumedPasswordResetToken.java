@@ -0,0 +1,13 @@
+package com.socialnetwork.auth.dto.projection;
+
+import java.util.UUID;
+
+/**
+ * Результат атомарного погашения токена восстановления пароля
+ */
+public interface ConsumedPasswordResetToken {
+
+    UUID getUserId();
+
+    String getEmail();
+}
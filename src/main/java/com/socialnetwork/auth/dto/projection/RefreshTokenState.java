@@ -0,0 +1,10 @@
+package com.socialnetwork.auth.dto.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Состояние refresh токена без загрузки сущности и пользователя
+ */
+public record RefreshTokenState(UUID id, UUID userId, LocalDateTime expiresAt, Boolean isRevoked) {
+}
@@ -0,0 +1,16 @@
+package com.socialnetwork.auth.dto.projection;
+
+import java.util.UUID;
+
+/**
+ * Неизменяемая проекция пользователя для кеша аутентификации: без хеша пароля
+ */
+public record UserAuthView(UUID id, String email, boolean isDeleted) {
+
+    /**
+     * Конструктор для JPQL-выражения {@code select new ...}
+     */
+    public UserAuthView(UUID id, String email, Boolean isDeleted) {
+        this(id, email, Boolean.TRUE.equals(isDeleted));
+    }
+}
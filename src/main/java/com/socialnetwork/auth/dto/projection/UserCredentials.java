@@ -0,0 +1,10 @@
+package com.socialnetwork.auth.dto.projection;
+
+import java.util.UUID;
+
+/**
+ * Учётные данные для входа. Все поля есть в частичном покрывающем индексе
+ * users_active_email_idx, поэтому запрос обслуживается index-only scan.
+ */
+public record UserCredentials(UUID id, String email, String password) {
+}
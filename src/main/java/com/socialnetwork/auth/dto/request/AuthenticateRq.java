@@ -26,4 +26,16 @@ public class AuthenticateRq {
     )
     @NotBlank(message = "Пароль обязателен")
     private String password;
+
+    @Schema(
+            description = "Идентификатор капчи (secret из /captcha). Обязателен, если сервер ответил CAPTCHA_REQUIRED",
+            example = "3f1c2a9e-5b7d-4e21-9c0a-8d6f4b2e1a73"
+    )
+    private String captchaSecret;
+
+    @Schema(
+            description = "Код с изображения капчи. Обязателен, если сервер ответил CAPTCHA_REQUIRED",
+            example = "A7K9M2"
+    )
+    private String captchaCode;
 }
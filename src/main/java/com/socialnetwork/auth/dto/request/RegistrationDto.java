@@ -51,7 +51,14 @@ public class RegistrationDto {
     private String password2;
 
     @Schema(
-            description = "Код капчи, полученный из /captcha эндпоинта",
+            description = "Идентификатор капчи (поле secret из ответа /captcha эндпоинта)",
+            example = "a1b2c3d4-e5f6-7890-abcd-ef1234567890"
+    )
+    @NotBlank(message = "Идентификатор капчи обязателен")
+    private String captchaSecret;
+
+    @Schema(
+            description = "Код с изображения капчи, полученной из /captcha эндпоинта",
             example = "ABC123"
     )
     @NotBlank(message = "Код капчи обязательно")
@@ -12,10 +12,10 @@ import lombok.*;
 public class CaptchaDto {
 
     @Schema(
-            description = "Секретный код капчи, который сохраняется на сервере",
+            description = "Идентификатор капчи, который нужно передать при регистрации вместе с кодом",
             example = "a1b2c3d4-e5f6-7890-abcd-ef1234567890"
     )
-    private String secret; //Секретный код, который нужно ввести
+    private String secret; //Идентификатор капчи, ответ хранится на сервере
 
     @Schema(
             description = "Изображение капчи в формате Base64",
@@ -0,0 +1,32 @@
+package com.socialnetwork.auth.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.UUID;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Результат интроспекции токена в духе RFC 7662; у неактивного токена только active=false")
+public class IntrospectionResponse {
+    @Schema(description = "Токен действителен: подпись, срок, не отозван", example = "true")
+    private boolean active;
+
+    @Schema(description = "ID пользователя", example = "550e8400-e29b-41d4-a716-446655440000")
+    private UUID userId;
+
+    @Schema(description = "Email пользователя (есть только в access токене)", example = "user@example.com")
+    private String email;
+
+    @Schema(description = "Время истечения токена (секунды Unix)", example = "1700422800")
+    private Long exp;
+
+    @Schema(description = "Идентификатор токена (у непрозрачных токенов отсутствует)",
+            example = "9b2f4c7e-1a3d-4e5f-8a6b-7c8d9e0f1a2b")
+    private String jti;
+}
@@ -0,0 +1,33 @@
+package com.socialnetwork.auth.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Открытый ключ проверки подписи токенов (JWK, RFC 7517)")
+public class JwkDto {
+    @Schema(description = "Тип ключа", example = "RSA")
+    private String kty;
+
+    @Schema(description = "Назначение ключа: подпись", example = "sig")
+    private String use;
+
+    @Schema(description = "Алгоритм подписи", example = "RS256")
+    private String alg;
+
+    @Schema(
+            description = "Идентификатор ключа, совпадает с kid в заголовке токена",
+            example = "NzbLsXh8uDCcd-6MNwXF4W_7noWXFZAfHkxZsRGC9Xs"
+    )
+    private String kid;
+
+    @Schema(description = "Модуль RSA, base64url")
+    private String n;
+
+    @Schema(description = "Открытая экспонента RSA, base64url", example = "AQAB")
+    private String e;
+}
@@ -0,0 +1,17 @@
+package com.socialnetwork.auth.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Набор открытых ключей проверки подписи токенов (JWKS)")
+public class JwksResponse {
+    @Schema(description = "Ключи: текущий и принимаемые при смене ключа")
+    private List<JwkDto> keys;
+}
@@ -0,0 +1,24 @@
+package com.socialnetwork.auth.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Непрозрачный access токен для межсервисных вызовов")
+public class OpaqueTokenResponse {
+    @Schema(
+            description = "Непрозрачный access токен (128 бит, base64url), проверяется через /validate",
+            example = "q7Xj0pX2b9yV3kLmN4oPqA"
+    )
+    private String accessToken;
+
+    @Schema(
+            description = "Срок действия токена в секундах",
+            example = "900"
+    )
+    private long expiresIn;
+}
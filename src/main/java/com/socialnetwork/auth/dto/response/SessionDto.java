@@ -0,0 +1,32 @@
+package com.socialnetwork.auth.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Schema(description = "Активная сессия (устройство) пользователя")
+public class SessionDto {
+    @Schema(
+            description = "Идентификатор сессии для DELETE /sessions/{sessionId}",
+            example = "3f2b8c1e-7d4a-4e8b-9c1f-2a6d5e4b3c21"
+    )
+    private String sessionId;
+
+    @Schema(description = "IP адрес, с которого выполнен вход", example = "203.0.113.7")
+    private String ipAddress;
+
+    @Schema(description = "User-Agent клиента при входе", example = "Mozilla/5.0 (iPhone; CPU iPhone OS 17_0 like Mac OS X)")
+    private String userAgent;
+
+    @Schema(description = "Время входа", example = "2024-05-01T10:15:30")
+    private LocalDateTime createdAt;
+
+    @Schema(description = "Время истечения refresh токена сессии", example = "2024-05-31T10:15:30")
+    private LocalDateTime expiresAt;
+}
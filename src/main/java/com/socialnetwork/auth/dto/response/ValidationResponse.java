@@ -29,4 +29,16 @@ public class ValidationResponse {
             example = "user@example.com"
     )
     private String email;
+
+    @Schema(
+            description = "Время истечения токена (секунды Unix), если токен валиден",
+            example = "1700422800"
+    )
+    private Long expiresAt;
+
+    @Schema(
+            description = "Идентификатор токена (jti), если он есть в токене",
+            example = "9b2f4c7e-1a3d-4e5f-8a6b-7c8d9e0f1a2b"
+    )
+    private String tokenId;
 }
@@ -21,7 +21,8 @@ public class RefreshToken {
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
-    @Column(nullable = false, unique = true)
+    // Подпись RS256 ключом до 4096 бит
+    @Column(nullable = false, unique = true, length = 2048)
     private String token;
 
     @ManyToOne(fetch = FetchType.LAZY)
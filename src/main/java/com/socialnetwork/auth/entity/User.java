@@ -1,5 +1,6 @@
 package com.socialnetwork.auth.entity;
 
+import com.socialnetwork.auth.util.EmailUtils;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -22,7 +23,7 @@ public class User {
     private UUID id;
 
     @Column(nullable = false, unique = true)
-    private String email;
+    private String email; // Всегда в канонической форме, см. EmailUtils
 
     @Column(name = "first_name", nullable = false)
     private String firstName;
@@ -45,6 +46,7 @@ public class User {
 
     @PrePersist
     private void onCreate() {
+        email = EmailUtils.normalize(email);
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
         if (isDeleted == null) {
@@ -54,6 +56,7 @@ public class User {
 
     @PreUpdate
     private void onUpdate() {
+        email = EmailUtils.normalize(email);
         updatedAt = LocalDateTime.now();
     }
 
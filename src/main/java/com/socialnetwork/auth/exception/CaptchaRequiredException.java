@@ -0,0 +1,7 @@
+package com.socialnetwork.auth.exception;
+
+public class CaptchaRequiredException extends RuntimeException {
+    public CaptchaRequiredException(String message) {
+        super(message);
+    }
+}
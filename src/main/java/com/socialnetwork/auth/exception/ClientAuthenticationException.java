@@ -0,0 +1,7 @@
+package com.socialnetwork.auth.exception;
+
+public class ClientAuthenticationException extends RuntimeException {
+    public ClientAuthenticationException(String message) {
+        super(message);
+    }
+}
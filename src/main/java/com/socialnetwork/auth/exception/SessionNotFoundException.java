@@ -0,0 +1,7 @@
+package com.socialnetwork.auth.exception;
+
+public class SessionNotFoundException extends RuntimeException {
+    public SessionNotFoundException(String message) {
+        super(message);
+    }
+}
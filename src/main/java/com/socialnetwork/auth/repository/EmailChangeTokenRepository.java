@@ -1,13 +1,26 @@
 package com.socialnetwork.auth.repository;
 
+import com.socialnetwork.auth.dto.projection.ConsumedEmailChangeToken;
 import com.socialnetwork.auth.entity.EmailChangeToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface EmailChangeTokenRepository extends JpaRepository<EmailChangeToken, UUID> {
     Optional<EmailChangeToken> findByToken(String token);
+
+    /**
+     * Погасить токен одним запросом (см. PasswordResetTokenRepository#consume)
+     */
+    @Query(value = "update email_change_tokens t set is_used = true from users u " +
+            "where t.token = :token and t.is_used = false and t.expires_at > :now and u.id = t.user_id " +
+            "returning t.user_id as \"userId\", u.email as \"currentEmail\", t.new_email as \"newEmail\"",
+            nativeQuery = true)
+    Optional<ConsumedEmailChangeToken> consume(@Param("token") String token, @Param("now") LocalDateTime now);
 }
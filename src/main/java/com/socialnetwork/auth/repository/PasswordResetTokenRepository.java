@@ -1,11 +1,14 @@
 package com.socialnetwork.auth.repository;
 
+import com.socialnetwork.auth.dto.projection.ConsumedPasswordResetToken;
 import com.socialnetwork.auth.entity.PasswordResetToken;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -14,6 +17,18 @@ public interface PasswordResetTokenRepository extends JpaRepository<PasswordRese
 
    Optional<PasswordResetToken> findByToken(String token);
 
+   /**
+    * Погасить токен одним запросом: строка меняется, только если токен не использован
+    * и не истёк, поэтому из двух параллельных запросов токен получит ровно один.
+    * Без @Modifying: UPDATE ... RETURNING возвращает строки как SELECT.
+    * Алиасы в кавычках, иначе Postgres приведёт их к нижнему регистру и проекция не найдёт поля.
+    */
+   @Query(value = "update password_reset_tokens t set is_used = true from users u " +
+           "where t.token = :token and t.is_used = false and t.expires_at > :now and u.id = t.user_id " +
+           "returning t.user_id as \"userId\", u.email as \"email\"",
+           nativeQuery = true)
+   Optional<ConsumedPasswordResetToken> consume(@Param("token") String token, @Param("now") LocalDateTime now);
+
    @Modifying
    @Query("delete from PasswordResetToken prt where prt.expiresAt < CURRENT_TIMESTAMP or prt.isUsed = true")
    void deleteExpiredAndUsedTokens();
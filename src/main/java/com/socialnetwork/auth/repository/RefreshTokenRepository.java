@@ -1,12 +1,15 @@
 package com.socialnetwork.auth.repository;
 
+import com.socialnetwork.auth.dto.projection.RefreshTokenState;
 import com.socialnetwork.auth.entity.RefreshToken;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -15,6 +18,11 @@ import java.util.UUID;
 public interface RefreshTokenRepository extends CrudRepository<RefreshToken, UUID> {
     Optional<RefreshToken> findByToken(String token);
 
+    @Query("select new com.socialnetwork.auth.dto.projection.RefreshTokenState(rt.id, rt.user.id, rt.expiresAt, rt.isRevoked) " +
+            "from RefreshToken rt where rt.token = :token")
+    @Transactional(readOnly = true)
+    Optional<RefreshTokenState> findStateByToken(@Param("token") String token);
+
     @Query("select rt from RefreshToken rt where rt.user.id = :userId and rt.isRevoked = false")
     List<RefreshToken> findActiveTokensByUserId(@Param("userId") UUID userId);
 
@@ -22,6 +30,10 @@ public interface RefreshTokenRepository extends CrudRepository<RefreshToken, UUI
     @Query("update RefreshToken rt set rt.isRevoked = true where rt.user.id = :userId")
     void revokeAllUserTokens(@Param("userId") UUID userId);
 
+    @Modifying
+    @Query("update RefreshToken rt set rt.isRevoked = true where rt.token in :tokens")
+    void revokeTokens(@Param("tokens") Collection<String> tokens);
+
     @Modifying
     @Query("delete from RefreshToken rt where rt.expiresAt < CURRENT_TIMESTAMP")
     void deleteExpiredTokens();
@@ -1,19 +1,68 @@
 package com.socialnetwork.auth.repository;
 
+import com.socialnetwork.auth.dto.projection.UserAuthView;
+import com.socialnetwork.auth.dto.projection.UserCredentials;
 import com.socialnetwork.auth.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, UUID> {
+    // readOnly: при настроенной реплике такие чтения идут на неё (см. ReplicaRoutingDataSource)
+    @Transactional(readOnly = true)
     boolean existsByEmail(String email);
     Optional<User> findByEmail(String email);
 
     @Query("select u from User u where u.email = :email and u.isDeleted = false")
     Optional<User> findActiveUserByEmail(@Param("email") String email);
+
+    @Query("select new com.socialnetwork.auth.dto.projection.UserAuthView(u.id, u.email, u.isDeleted) " +
+            "from User u where u.id = :id")
+    Optional<UserAuthView> findAuthViewById(@Param("id") UUID id);
+
+    @Query("select new com.socialnetwork.auth.dto.projection.UserAuthView(u.id, u.email, u.isDeleted) " +
+            "from User u where u.email = :email and u.isDeleted = false")
+    @Transactional(readOnly = true)
+    Optional<UserAuthView> findActiveAuthViewByEmail(@Param("email") String email);
+
+    @Query("select new com.socialnetwork.auth.dto.projection.UserCredentials(u.id, u.email, u.password) " +
+            "from User u where u.email = :email and u.isDeleted = false")
+    @Transactional(readOnly = true)
+    Optional<UserCredentials> findActiveCredentialsByEmail(@Param("email") String email);
+
+    /**
+     * Вставить пользователя, если email свободен. Конфликт по любому уникальному индексу
+     * (email, lower(email)) не бросает исключение, а даёт 0 вставленных строк.
+     * Собственная транзакция: регистрация не держит соединение во время BCrypt.
+     * @return 1 если пользователь создан, 0 если email уже занят
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into users (id, email, first_name, last_name, password, is_deleted, created_at, updated_at) " +
+            "values (:id, :email, :firstName, :lastName, :password, false, :createdAt, :createdAt) " +
+            "on conflict do nothing",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id,
+                       @Param("email") String email,
+                       @Param("firstName") String firstName,
+                       @Param("lastName") String lastName,
+                       @Param("password") String password,
+                       @Param("createdAt") LocalDateTime createdAt);
+
+    // Массовый UPDATE обходит @PreUpdate, поэтому updatedAt передаётся явно
+    @Modifying
+    @Query("update User u set u.password = :password, u.updatedAt = :updatedAt where u.id = :id")
+    int updatePassword(@Param("id") UUID id, @Param("password") String password, @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Query("update User u set u.email = :email, u.updatedAt = :updatedAt where u.id = :id")
+    int updateEmail(@Param("id") UUID id, @Param("email") String email, @Param("updatedAt") LocalDateTime updatedAt);
 }
@@ -1,32 +1,47 @@
 package com.socialnetwork.auth.service;
 
 import com.socialnetwork.auth.dto.kafka.AccountChangedEvent;
+import com.socialnetwork.auth.dto.kafka.RevocationEvent;
 import com.socialnetwork.auth.dto.kafka.UserRegisteredEvent;
+import com.socialnetwork.auth.dto.projection.ConsumedEmailChangeToken;
+import com.socialnetwork.auth.dto.projection.ConsumedPasswordResetToken;
+import com.socialnetwork.auth.dto.projection.RefreshTokenState;
+import com.socialnetwork.auth.dto.projection.UserAuthView;
+import com.socialnetwork.auth.dto.projection.UserCredentials;
 import com.socialnetwork.auth.dto.request.*;
+import com.socialnetwork.auth.dto.response.IntrospectionResponse;
+import com.socialnetwork.auth.dto.response.OpaqueTokenResponse;
+import com.socialnetwork.auth.dto.response.SessionDto;
 import com.socialnetwork.auth.dto.response.TokenResponse;
 import com.socialnetwork.auth.dto.response.ValidationResponse;
 import com.socialnetwork.auth.entity.EmailChangeToken;
-import com.socialnetwork.auth.entity.PasswordResetToken;
 import com.socialnetwork.auth.entity.RefreshToken;
-import com.socialnetwork.auth.entity.User;
+import com.socialnetwork.auth.exception.CaptchaRequiredException;
 import com.socialnetwork.auth.exception.CaptchaValidationException;
 import com.socialnetwork.auth.exception.InvalidCredentialsException;
 import com.socialnetwork.auth.exception.InvalidTokenException;
+import com.socialnetwork.auth.exception.SessionNotFoundException;
 import com.socialnetwork.auth.exception.UserAlreadyExistsExcpetion;
 import com.socialnetwork.auth.repository.EmailChangeTokenRepository;
 import com.socialnetwork.auth.repository.PasswordResetTokenRepository;
 import com.socialnetwork.auth.repository.RefreshTokenRepository;
 import com.socialnetwork.auth.repository.UserRepository;
+import com.socialnetwork.auth.util.EmailUtils;
 import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
+/**
+ * Сценарии аутентификации.
+ * Методы не транзакционны целиком: BCrypt, подпись JWT, Kafka и SMTP выполняются
+ * без соединения с БД, а в transactionTemplate обёрнуты только сами записи.
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
@@ -34,7 +49,7 @@ public class AuthService {
 
     private final UserRepository userRepository;
     private final RefreshTokenRepository refreshTokenRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final JwtService jwtService;
     private final CaptchaService captchaService;
     private final KafkaProducerService kafkaProducerService;
@@ -42,15 +57,24 @@ public class AuthService {
     private final EmailService emailService;
     private final EmailChangeTokenRepository emailChangeTokenRepository;
     private final TokenBlacklistService tokenBlacklistService;
-
+    private final UnknownEmailCache unknownEmailCache;
+    private final CredentialStuffingDetector credentialStuffingDetector;
+    private final UserAuthCache userAuthCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadYourWritesGuard readYourWritesGuard;
+    private final RefreshTokenWriteBehind refreshTokenWriteBehind;
+    private final OpaqueTokenService opaqueTokenService;
+    private final SessionRegistry sessionRegistry;
+    private final PasswordRecoveryService passwordRecoveryService;
 
     /**
-     * Регистрация пользователя
+     * Регистрация пользователя.
+     * Без транзакции на весь метод: хеш считается до обращения к БД,
+     * а вставка — один INSERT ... ON CONFLICT DO NOTHING в собственной транзакции.
      */
-    @Transactional
     public String register(RegistrationDto dto) {
         // 1. Проверка капчи
-        if (!captchaService.validate(dto.getCaptchaCode())) {
+        if (!captchaService.validate(dto.getCaptchaSecret(), dto.getCaptchaCode())) {
             throw new CaptchaValidationException("Invalid captcha code");
         }
 
@@ -59,30 +83,30 @@ public class AuthService {
             throw new InvalidCredentialsException("Passwords do not match");
         }
 
-        // 3. Проверка уникальности email
-        if (userRepository.existsByEmail(dto.getEmail())) {
+        // 3. Хеширование пароля до открытия транзакции
+        String passwordHash = passwordHashingService.encode(dto.getPassword1());
+
+        // 4. Создание пользователя; занятый email (в канонической форме) даёт 0 строк вместо исключения
+        UUID userId = UUID.randomUUID();
+        String email = EmailUtils.normalize(dto.getEmail());
+        LocalDateTime registeredAt = LocalDateTime.now();
+        int inserted = userRepository.insertIfAbsent(
+                userId, email, dto.getFirstName(), dto.getLastName(), passwordHash, registeredAt);
+        if (inserted == 0) {
             throw new UserAlreadyExistsExcpetion("Email is already registered");
         }
 
-        // 4. Создание и сохранение пользователя
-        User user = User.builder()
-                .firstName(dto.getFirstName())
-                .lastName(dto.getLastName())
-                .email(dto.getEmail())
-                .password(passwordEncoder.encode(dto.getPassword1()))
-                .isDeleted(false)
-                .build();
-
-        User savedUser = userRepository.save(user);
-        log.info("User {} registered successfully", savedUser.getId());
+        unknownEmailCache.evict(email);
+        readYourWritesGuard.pin(email);
+        log.info("User {} registered successfully", userId);
 
         // 5. Публикация события в Kafka для MC-ACCOUNT
         UserRegisteredEvent event = UserRegisteredEvent.builder()
-                .userId(savedUser.getId())
-                .email(savedUser.getEmail())
+                .userId(userId)
+                .email(email)
                 .firstName(dto.getFirstName())
                 .lastName(dto.getLastName())
-                .registeredAt(savedUser.getCreatedAt())
+                .registeredAt(registeredAt)
                 .build();
 
         kafkaProducerService.sendUserRegisteredEvent(event);
@@ -93,33 +117,62 @@ public class AuthService {
     /**
      * Аутентификация пользователя и генерация токенов
      */
-    @Transactional
-    public TokenResponse login(AuthenticateRq dto) {
+    public TokenResponse login(AuthenticateRq dto, String clientIp, String userAgent) {
         log.info("Attempting to authenticate user with email: {}", dto.getEmail());
+        String email = EmailUtils.normalize(dto.getEmail());
 
-        // 1. Поиск пользователя по email
-        User user = userRepository.findActiveUserByEmail(dto.getEmail())
-                .orElseThrow(() -> new InvalidCredentialsException("Invalid email or password"));
+        // 0. При подозрении на подбор паролей вход возможен только с капчей
+        if (credentialStuffingDetector.isCaptchaRequired(clientIp, email)
+                && !captchaService.validate(dto.getCaptchaSecret(), dto.getCaptchaCode())) {
+            credentialStuffingDetector.recordAttempt(clientIp, email, false);
+            throw new CaptchaRequiredException("Captcha is required");
+        }
+
+        // 1. Поиск пользователя по email (известные несуществующие email не доходят до БД)
+        boolean knownAbsent = unknownEmailCache.isKnownAbsent(email);
+        UserCredentials user = knownAbsent
+                ? null
+                : readYourWritesGuard.read(email, () -> userRepository.findActiveCredentialsByEmail(email)).orElse(null);
+
+        if (user == null) {
+            if (!knownAbsent) {
+                unknownEmailCache.markAbsent(email);
+            }
+            // Тратим столько же времени, сколько на проверку пароля существующего пользователя
+            passwordHashingService.matchDummy(dto.getPassword());
+            credentialStuffingDetector.recordAttempt(clientIp, email, false);
+            throw new InvalidCredentialsException("Invalid email or password");
+        }
 
         // 2. Проверка пароля
-        if (!passwordEncoder.matches(dto.getPassword(), user.getPassword())) {
+        if (!passwordHashingService.matches(dto.getPassword(), user.password())) {
+            credentialStuffingDetector.recordAttempt(clientIp, email, false);
             throw new InvalidCredentialsException("Invalid email or password");
         }
+        credentialStuffingDetector.recordAttempt(clientIp, email, true);
 
         // 3. Генерация токенов
-        String accessToken = jwtService.generateAccessToken(user);
-        String refreshToken = jwtService.generateRefreshToken(user);
-
-        // 4. Сохранение refresh токена в БД
-        RefreshToken refreshTokenEntity = RefreshToken.builder()
-                .token(refreshToken)
-                .user(user)
-                .expiresAt(LocalDateTime.now().plusDays(30))
-                .isRevoked(false)
-                .build();
+        String accessToken = jwtService.generateAccessToken(user.id(), user.email());
+        String refreshToken = jwtService.generateRefreshToken(user.id(), user.email());
+
+        // 4. Сохранение refresh токена: в режиме write-behind через Redis и пакетную запись,
+        // иначе сразу в БД — единственная запись, только она в транзакции
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(30);
+        if (!refreshTokenWriteBehind.enqueue(user.id(), refreshToken, expiresAt)) {
+            transactionTemplate.executeWithoutResult(status -> refreshTokenRepository.save(RefreshToken.builder()
+                    .token(refreshToken)
+                    .user(userRepository.getReferenceById(user.id()))
+                    .expiresAt(expiresAt)
+                    .isRevoked(false)
+                    .build()));
+        }
 
-        refreshTokenRepository.save(refreshTokenEntity);
-        log.info("User {} authenticated successfully", user.getEmail());
+        // 5. Регистрация сессии; самые старые сессии сверх лимита вытесняются вместе с их refresh токенами
+        List<String> evicted = sessionRegistry.register(user.id(), refreshToken, expiresAt, clientIp, userAgent);
+        if (!evicted.isEmpty()) {
+            revokeRefreshTokens(user.id(), evicted);
+        }
+        log.info("User {} authenticated successfully", user.email());
 
         return TokenResponse.builder()
                 .accessToken(accessToken)
@@ -131,58 +184,143 @@ public class AuthService {
      * Проверка валидности токена (для Gateway и других сервисов)
      */
     public ValidationResponse validateToken(ValidateTokenRequest request) {
-        try {
-            // Проверить, не находится ли токен в черном списке
-            if (tokenBlacklistService.isTokenBlacklisted(request.getToken())) {
-                log.warn("Token is blacklisted");
-                return ValidationResponse.builder()
-                        .valid(false)
-                        .build();
-            }
-
-            Claims claims = jwtService.validateAndExtractClaims(request.getToken());
+        // Непрозрачный токен: поиск в near-cache/Redis, без HMAC и разбора JSON.
+        // Эпоха пользователя — как у JWT: отзыв действует, даже если revokeAll не дошёл до Redis
+        if (OpaqueTokenService.isOpaque(request.getToken())) {
+            return opaqueTokenService.resolve(request.getToken())
+                    .filter(state -> !tokenBlacklistService.isUserRevoked(state.userId(), state.issuedAtMillis()))
+                    .map(state -> ValidationResponse.builder()
+                            .valid(true)
+                            .userId(state.userId())
+                            .email(state.email())
+                            .expiresAt(state.expiresAtMillis() / 1000)
+                            .build())
+                    .orElseGet(() -> ValidationResponse.builder()
+                            .valid(false)
+                            .build());
+        }
 
+        // Сначала подпись и срок (без исключений и похода в Redis), потом черный список.
+        // Refresh токены (без email) access токеном не считаются
+        JwtService.TokenClaims claims = jwtService.verify(request.getToken());
+        if (claims == null || claims.userId() == null || claims.email() == null) {
+            log.debug("Invalid token provided");
             return ValidationResponse.builder()
-                    .valid(true)
-                    .userId(UUID.fromString(claims.get("userId", String.class)))
-                    .email(claims.get("email", String.class))
+                    .valid(false)
                     .build();
-        } catch (Exception e) {
-            log.error("Invalid token provided: {}", request.getToken());
+        }
+
+        // Эпоха пользователя проверяется в памяти — раньше похода в Redis за черным списком
+        if (tokenBlacklistService.isUserRevoked(claims.userId(), claims.issuedAtMillis())
+                || tokenBlacklistService.isTokenBlacklisted(request.getToken())) {
+            log.warn("Token is blacklisted");
             return ValidationResponse.builder()
                     .valid(false)
                     .build();
         }
+
+        return ValidationResponse.builder()
+                .valid(true)
+                .userId(claims.userId())
+                .email(claims.email())
+                .expiresAt(claims.expiresAt())
+                .tokenId(claims.tokenId())
+                .build();
+    }
+
+    /**
+     * Пользователь действующего access токена — те же проверки, что validateToken
+     * @throws InvalidTokenException если токен невалиден, истёк, отозван или это refresh токен
+     */
+    public UUID authenticate(String accessToken) {
+        ValidationResponse validation = validateToken(ValidateTokenRequest.builder()
+                .token(accessToken)
+                .build());
+        if (!validation.isValid()) {
+            throw new InvalidTokenException("Invalid access token");
+        }
+        return validation.getUserId();
+    }
+
+    /**
+     * Интроспекция токена (RFC 7662): та же проверка, что validateToken, плюс exp и jti,
+     * чтобы вызывающему не нужно было разбирать JWT повторно
+     */
+    public IntrospectionResponse introspect(String token) {
+        ValidationResponse validation = validateToken(ValidateTokenRequest.builder()
+                .token(token)
+                .build());
+        if (!validation.isValid()) {
+            return IntrospectionResponse.builder()
+                    .active(false)
+                    .build();
+        }
+        return IntrospectionResponse.builder()
+                .active(true)
+                .userId(validation.getUserId())
+                .email(validation.getEmail())
+                .exp(validation.getExpiresAt())
+                .jti(validation.getTokenId())
+                .build();
+    }
+
+    /**
+     * Обмен JWT access токена на непрозрачный для межсервисных вызовов
+     */
+    public OpaqueTokenResponse issueOpaqueToken(String accessToken) {
+        if (accessToken == null || accessToken.isEmpty() || tokenBlacklistService.isTokenBlacklisted(accessToken)) {
+            throw new InvalidTokenException("Invalid access token");
+        }
+        // В refresh токене нет claim email — обменять можно только access токен
+        JwtService.TokenClaims claims = jwtService.verify(accessToken);
+        if (claims == null || claims.userId() == null || claims.email() == null
+                || tokenBlacklistService.isUserRevoked(claims.userId(), claims.issuedAtMillis())) {
+            throw new InvalidTokenException("Invalid access token");
+        }
+
+        OpaqueTokenService.IssuedToken issued = opaqueTokenService.issue(
+                claims.userId(), claims.email(), claims.issuedAtMillis(), claims.expiresAt() * 1000);
+        return OpaqueTokenResponse.builder()
+                .accessToken(issued.token())
+                .expiresIn(issued.expiresIn())
+                .build();
     }
 
     /**
      * Обновление access токена с помощью refresh токена
      */
-    @Transactional
     public TokenResponse refreshAccessToken(RefreshTokenRequest request) {
 
-        // 1. Найти refresh токен в БД
-        RefreshToken refreshToken = refreshTokenRepository.findByToken(request.getRefreshToken())
+        // 1. Найти refresh токен в БД (только состояние токена и id пользователя)
+        // Только что выданного токена на реплике может ещё не быть — тогда перечитываем с primary
+        RefreshTokenState refreshToken = readYourWritesGuard.readOrRecheck(
+                        () -> refreshTokenRepository.findStateByToken(request.getRefreshToken()),
+                        RefreshTokenState::userId)
+                .or(() -> refreshTokenWriteBehind.findPending(request.getRefreshToken()))
                 .orElseThrow(() -> new InvalidTokenException("Invalid refresh token"));
 
         // 2. Проверить, не отозван ли токен
-        if (Boolean.TRUE.equals(refreshToken.getIsRevoked())) {
+        if (Boolean.TRUE.equals(refreshToken.isRevoked())) {
             throw new InvalidCredentialsException("Refresh token is revoked");
         }
 
         // 3. Проверить не истёк ли токен
-        if (refreshToken.getExpiresAt().isBefore(LocalDateTime.now())) {
+        if (refreshToken.expiresAt().isBefore(LocalDateTime.now())) {
             throw new InvalidTokenException("Refresh token is expired");
         }
 
         // 4. Проверить JWT подпись
-        jwtService.validateAndExtractClaims(request.getRefreshToken());
+        if (jwtService.verify(request.getRefreshToken()) == null) {
+            throw new InvalidTokenException("Invalid JWT token");
+        }
 
-        // 4. Генерация нового access токена
-        User user = refreshToken.getUser();
-        String newAccessToken = jwtService.generateAccessToken(user);
+        // 5. Генерация нового access токена (email — из кеша пользователей)
+        UserAuthView user = userAuthCache.get(refreshToken.userId())
+                .filter(view -> !view.isDeleted())
+                .orElseThrow(() -> new InvalidTokenException("User not found"));
+        String newAccessToken = jwtService.generateAccessToken(user.id(), user.email());
 
-        log.info("User {} refreshed successfully", user.getEmail());
+        log.info("User {} refreshed successfully", user.email());
 
         return TokenResponse.builder()
                 .accessToken(newAccessToken)
@@ -190,13 +328,49 @@ public class AuthService {
                 .build();
     }
 
+    /**
+     * Активные сессии пользователя, новые первыми
+     */
+    public List<SessionDto> listSessions(UUID userId) {
+        if (userId == null) {
+            throw new InvalidTokenException("Invalid access token");
+        }
+        return sessionRegistry.list(userId).stream()
+                .map(session -> SessionDto.builder()
+                        .sessionId(session.sessionId())
+                        .ipAddress(session.ipAddress())
+                        .userAgent(session.userAgent())
+                        .createdAt(session.createdAt())
+                        .expiresAt(session.expiresAt())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Завершение одной сессии: отзыв её refresh токена, остальные сессии продолжают работать
+     */
+    public String revokeSession(UUID userId, String sessionId) {
+        if (userId == null) {
+            throw new InvalidTokenException("Invalid access token");
+        }
+        SessionRegistry.SessionInfo session = sessionRegistry.remove(userId, sessionId)
+                .orElseThrow(() -> new SessionNotFoundException("Session not found"));
+        revokeRefreshTokens(userId, List.of(session.refreshToken()));
+        log.info("Session {} of user {} revoked", sessionId, userId);
+        return "Session revoked";
+    }
+
     /**
      * Выход пользователя - отзыв всех refresh токенов и добавление access токена в blacklist
      */
-    @Transactional
     public String logout(UUID userId, String accessToken) {
         // Отзыв всех refresh токенов пользователя
-        refreshTokenRepository.revokeAllUserTokens(userId);
+        refreshTokenWriteBehind.markRevoked(userId);
+        transactionTemplate.executeWithoutResult(status -> refreshTokenRepository.revokeAllUserTokens(userId));
+        readYourWritesGuard.pin(userId);
+        opaqueTokenService.revokeAll(userId);
+        sessionRegistry.removeAll(userId);
+        revokeAccessTokens(userId, RevocationEvent.Reason.LOGOUT);
         
         // Добавить access токен в черный список, если он предоставлен
         if (accessToken != null && !accessToken.isEmpty()) {
@@ -222,100 +396,75 @@ public class AuthService {
     }
 
     /**
-     * Отправка ссылки для восстановления пароля
+     * Отправка ссылки для восстановления пароля.
+     * Ответ одинаков для любого email: поиск пользователя и отправка письма идут в фоне
      */
-    @Transactional
     public String sendPasswordRecoveryLink(RecoveryPasswordLinkRq request) {
         log.info("Password recovery requested for email: {}", request.getEmail());
-
-        User user = userRepository.findActiveUserByEmail(request.getEmail())
-                .orElseThrow(() -> new InvalidCredentialsException("Email not found"));
-
-        //Генерация токена для сброса пароля
-        String token = UUID.randomUUID().toString();
-
-        PasswordResetToken resetToken = PasswordResetToken.builder()
-                .token(token)
-                .user(user)
-                .expiresAt(LocalDateTime.now().plusHours(1))
-                .isUsed(false)
-                .build();
-
-        passwordResetTokenRepository.save(resetToken);
-
-        // Отправка email с ссылкой для сброса пароля
-        emailService.sendPasswordResetEmail(user.getEmail(), token);
-
-        log.info("Password recovery link sent to email: {}", request.getEmail());
+        passwordRecoveryService.requestLink(EmailUtils.normalize(request.getEmail()));
         return "Password recovery link sent";
     }
 
     /**
      * Смена пароля по токену восстановления
      */
-    @Transactional
     public String changePassword(ChangePasswordRequest request) {
         log.info("Attempting to change password with token: {}", request.getToken());
 
-        //Найти токен восстановления
-        PasswordResetToken resetToken =
-                passwordResetTokenRepository.findByToken(request.getToken())
-                        .orElseThrow(() -> new InvalidTokenException("Invalid token"));
-
-        //Проверки
-        if (Boolean.TRUE.equals(resetToken.getIsUsed())) {
-            throw new InvalidTokenException("Token is already used");
-        }
-        if (resetToken.getExpiresAt().isBefore(LocalDateTime.now())) {
-            throw new InvalidTokenException("Token is expired");
-        }
-
-        //Изменить пароль
-        User user = resetToken.getUser();
-        user.setPassword(passwordEncoder.encode(request.getNewPassword()));
-        userRepository.save(user);
-
-        //Отметить токен как использованный
-        resetToken.setIsUsed(true);
-        passwordResetTokenRepository.save(resetToken);
-
-        //Отозвать все refresh токены пользователя
-        refreshTokenRepository.revokeAllUserTokens(user.getId());
-
-        log.info("Password changed successfully for user: {}", user.getEmail());
+        //Хешировать до транзакции: BCrypt не держит ни соединение, ни блокировку строки токена
+        String passwordHash = passwordHashingService.encode(request.getNewPassword());
+
+        ConsumedPasswordResetToken resetToken = transactionTemplate.execute(status -> {
+            //Погасить токен одним запросом: неизвестный, использованный и истёкший токен неотличимы
+            ConsumedPasswordResetToken consumed =
+                    passwordResetTokenRepository.consume(request.getToken(), LocalDateTime.now())
+                            .orElseThrow(() -> new InvalidTokenException("Invalid or expired token"));
+
+            //Изменить пароль и отозвать все refresh токены пользователя
+            userRepository.updatePassword(consumed.getUserId(), passwordHash, LocalDateTime.now());
+            refreshTokenWriteBehind.markRevoked(consumed.getUserId());
+            refreshTokenRepository.revokeAllUserTokens(consumed.getUserId());
+            return consumed;
+        });
+        userAuthCache.invalidate(resetToken.getUserId());
+        readYourWritesGuard.pin(resetToken.getUserId(), resetToken.getEmail());
+        opaqueTokenService.revokeAll(resetToken.getUserId());
+        sessionRegistry.removeAll(resetToken.getUserId());
+        revokeAccessTokens(resetToken.getUserId(), RevocationEvent.Reason.PASSWORD_CHANGE);
+
+        log.info("Password changed successfully for user: {}", resetToken.getEmail());
         return  "Password changed successfully";
     }
 
     /**
      * Отправка ссылки для изменения email
      */
-    @Transactional
     public String sendChangeEmailLink(UUID userId, ChangeEmailRequest request) {
         log.info("Change email requested to: {} for user: {}", request.getNewEmail(), userId);
 
-        // Найти пользователя
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new InvalidCredentialsException("User not found"));
+        // Найти пользователя (проверка по кешу, в токен идёт ссылка без SELECT)
+        if (userId == null || userAuthCache.get(userId).isEmpty()) {
+            throw new InvalidCredentialsException("User not found");
+        }
 
         // Проверить, не занят ли новый email
-        if (userRepository.existsByEmail(request.getNewEmail())) {
+        String newEmail = EmailUtils.normalize(request.getNewEmail());
+        if (userRepository.existsByEmail(newEmail)) {
             throw new UserAlreadyExistsExcpetion("Email is already in use");
         }
 
         // Генерация токена для подтверждения смены email
         String token = UUID.randomUUID().toString();
 
-        EmailChangeToken changeToken = EmailChangeToken.builder()
+        transactionTemplate.executeWithoutResult(status -> emailChangeTokenRepository.save(EmailChangeToken.builder()
                 .token(token)
-                .user(user)
-                .newEmail(request.getNewEmail())
+                .user(userRepository.getReferenceById(userId))
+                .newEmail(newEmail)
                 .expiresAt(LocalDateTime.now().plusHours(1))
                 .isUsed(false)
-                .build();
+                .build()));
 
-        emailChangeTokenRepository.save(changeToken);
-
-        // Отправка email с ссылкой для подтверждения
+        // Отправка email с ссылкой для подтверждения (после коммита, без соединения с БД)
         emailService.sendEmailChangeConfirmation(request.getNewEmail(), token);
 
         log.info("Email change confirmation link sent to: {}", request.getNewEmail());
@@ -325,52 +474,68 @@ public class AuthService {
     /**
      * Подтверждение изменения email по токену
      */
-    @Transactional
     public String confirmEmailChange(ConfirmEmailChangeRequest request) {
         log.info("Attempting to confirm email change with token: {}", request.getToken());
 
-        // Найти токен изменения email
-        EmailChangeToken changeToken = emailChangeTokenRepository.findByToken(request.getToken())
-                .orElseThrow(() -> new InvalidTokenException("Invalid token"));
-
-        // Проверки
-        if (Boolean.TRUE.equals(changeToken.getIsUsed())) {
-            throw new InvalidTokenException("Token is already used");
-        }
-        if (changeToken.getExpiresAt().isBefore(LocalDateTime.now())) {
-            throw new InvalidTokenException("Token is expired");
-        }
+        ConsumedEmailChangeToken changeToken = transactionTemplate.execute(status -> {
+            // Погасить токен одним запросом; если дальше будет ошибка, откат вернёт его
+            ConsumedEmailChangeToken consumed =
+                    emailChangeTokenRepository.consume(request.getToken(), LocalDateTime.now())
+                            .orElseThrow(() -> new InvalidTokenException("Invalid or expired token"));
 
-        // Проверить, не занят ли новый email (на случай если кто-то успел зарегистрироваться)
-        if (userRepository.existsByEmail(changeToken.getNewEmail())) {
-            throw new UserAlreadyExistsExcpetion("Email is already in use");
-        }
-
-        // Изменить email пользователя
-        User user = changeToken.getUser();
-        String oldEmail = user.getEmail();
-        user.setEmail(changeToken.getNewEmail());
-        userRepository.save(user);
-
-        // Отметить токен как использованный
-        changeToken.setIsUsed(true);
-        emailChangeTokenRepository.save(changeToken);
+            // Проверить, не занят ли новый email (на случай если кто-то успел зарегистрироваться)
+            String email = EmailUtils.normalize(consumed.getNewEmail());
+            if (userRepository.existsByEmail(email)) {
+                throw new UserAlreadyExistsExcpetion("Email is already in use");
+            }
 
-        // Отозвать все refresh токены пользователя
-        refreshTokenRepository.revokeAllUserTokens(user.getId());
+            // Изменить email пользователя и отозвать все его refresh токены
+            userRepository.updateEmail(consumed.getUserId(), email, LocalDateTime.now());
+            refreshTokenWriteBehind.markRevoked(consumed.getUserId());
+            refreshTokenRepository.revokeAllUserTokens(consumed.getUserId());
+            return consumed;
+        });
+        String newEmail = EmailUtils.normalize(changeToken.getNewEmail());
+        UUID userId = changeToken.getUserId();
 
-        // Отправить событие в Kafka о смене email
+        // Отправить событие в Kafka о смене email (после коммита)
         AccountChangedEvent accountChangedEvent = AccountChangedEvent.builder()
-                .userId(user.getId())
-                .newEmail(user.getEmail())
+                .userId(userId)
+                .newEmail(newEmail)
                 .changedAt(LocalDateTime.now())
                 .build();
         kafkaProducerService.sendAccountChangedEvent(accountChangedEvent);
-
-        log.info("Email changed successfully from {} to {} for user: {}", oldEmail, user.getEmail(), user.getId());
+        unknownEmailCache.evict(newEmail);
+        userAuthCache.invalidate(userId);
+        readYourWritesGuard.pin(userId, EmailUtils.normalize(changeToken.getCurrentEmail()), newEmail);
+        opaqueTokenService.revokeAll(userId);
+        sessionRegistry.removeAll(userId);
+        revokeAccessTokens(userId, RevocationEvent.Reason.EMAIL_CHANGE);
+
+        log.info("Email changed successfully from {} to {} for user: {}",
+                changeToken.getCurrentEmail(), newEmail, userId);
         return "Email changed successfully";
     }
 
+    /**
+     * Отзыв отдельных refresh токенов пользователя: метка для ещё не записанных, затем UPDATE в БД
+     */
+    private void revokeRefreshTokens(UUID userId, List<String> tokens) {
+        tokens.forEach(refreshTokenWriteBehind::markTokenRevoked);
+        transactionTemplate.executeWithoutResult(status -> refreshTokenRepository.revokeTokens(tokens));
+        readYourWritesGuard.pin(userId);
+    }
 
-
+    /**
+     * Отзыв всех выпущенных access токенов пользователя: эпоха в Redis и событие в AUTH_REVOCATIONS
+     * для сервисов, кэширующих результаты проверки
+     */
+    private void revokeAccessTokens(UUID userId, RevocationEvent.Reason reason) {
+        long revokedAt = tokenBlacklistService.revokeUser(userId);
+        kafkaProducerService.sendRevocationEvent(RevocationEvent.builder()
+                .userId(userId)
+                .revokedAt(revokedAt)
+                .reason(reason)
+                .build());
+    }
 }
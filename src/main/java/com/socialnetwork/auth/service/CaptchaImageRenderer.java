@@ -0,0 +1,326 @@
+package com.socialnetwork.auth.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Рендеринг изображения капчи без AWT на каждый запрос.
+ * Глифы алфавита растеризуются один раз при старте, затем для каждой капчи
+ * они накладываются с искажениями на переиспользуемый растр потока
+ * и кодируются в PNG (8 бит, оттенки серого) в переиспользуемый буфер.
+ */
+@Component
+@Slf4j
+public class CaptchaImageRenderer {
+
+    public static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    static final int WIDTH = 200;
+    static final int HEIGHT = 60;
+
+    private static final int FONT_SIZE = 30;
+    private static final int GLYPH_STEP = 28;
+    private static final int NOISE_LINES = 5;
+    private static final int NOISE_DOTS = 120;
+    private static final byte[] DATA_URI_PREFIX_BYTES = "data:image/png;base64,".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] BASE64_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    private final Glyph[] glyphs = new Glyph[128];
+
+    private final ThreadLocal<RenderBuffers> buffers = ThreadLocal.withInitial(RenderBuffers::new);
+
+    public CaptchaImageRenderer() {
+        // Логический шрифт есть в любой JRE, поэтому поиск замены для отсутствующего "Arial" не нужен
+        Font font = new Font(Font.SANS_SERIF, Font.BOLD, FONT_SIZE);
+        for (char c : ALPHABET.toCharArray()) {
+            glyphs[c] = Glyph.rasterize(c, font);
+        }
+        log.debug("Captcha glyphs pre-rendered for {} characters", ALPHABET.length());
+    }
+
+    /**
+     * Рендеринг кода в PNG в формате data URI (Base64)
+     */
+    public String render(String code) {
+        RenderBuffers buf = buffers.get();
+        byte[] raster = buf.raster;
+        Arrays.fill(raster, (byte) 0xFF);
+
+        int x = (WIDTH - code.length() * GLYPH_STEP) / 2;
+        for (int i = 0; i < code.length(); i++) {
+            Glyph glyph = glyphs[code.charAt(i)];
+            if (glyph != null) {
+                int y = (HEIGHT - glyph.height) / 2 + SECURE_RANDOM.nextInt(11) - 5;
+                double shear = (SECURE_RANDOM.nextDouble() - 0.5) * 0.6;
+                double phase = SECURE_RANDOM.nextDouble() * Math.PI * 2;
+                drawGlyph(raster, glyph, x + SECURE_RANDOM.nextInt(7) - 3, y, shear, phase);
+            }
+            x += GLYPH_STEP;
+        }
+
+        addNoise(raster);
+        return buf.encode();
+    }
+
+    /**
+     * Наложение глифа со сдвигом по строкам (наклон) и синусоидальной волной по столбцам
+     */
+    private static void drawGlyph(byte[] raster, Glyph glyph, int originX, int originY, double shear, double phase) {
+        int halfHeight = glyph.height / 2;
+        for (int gy = 0; gy < glyph.height; gy++) {
+            int rowShift = (int) Math.round(shear * (gy - halfHeight));
+            for (int gx = 0; gx < glyph.width; gx++) {
+                int ink = glyph.coverage[gy * glyph.width + gx] & 0xFF;
+                if (ink == 0) {
+                    continue;
+                }
+                int px = originX + gx + rowShift;
+                int py = originY + gy + (int) Math.round(2.5 * Math.sin(gx / 4.0 + phase));
+                if (px < 0 || px >= WIDTH || py < 0 || py >= HEIGHT) {
+                    continue;
+                }
+                int idx = py * WIDTH + px;
+                int value = 255 - ink;
+                if (value < (raster[idx] & 0xFF)) {
+                    raster[idx] = (byte) value;
+                }
+            }
+        }
+    }
+
+    private static void addNoise(byte[] raster) {
+        for (int i = 0; i < NOISE_LINES; i++) {
+            drawLine(raster,
+                    SECURE_RANDOM.nextInt(WIDTH), SECURE_RANDOM.nextInt(HEIGHT),
+                    SECURE_RANDOM.nextInt(WIDTH), SECURE_RANDOM.nextInt(HEIGHT));
+        }
+        for (int i = 0; i < NOISE_DOTS; i++) {
+            raster[SECURE_RANDOM.nextInt(HEIGHT) * WIDTH + SECURE_RANDOM.nextInt(WIDTH)] = (byte) 0x80;
+        }
+    }
+
+    /**
+     * Линия шума (алгоритм Брезенхэма)
+     */
+    private static void drawLine(byte[] raster, int x0, int y0, int x1, int y1) {
+        int dx = Math.abs(x1 - x0);
+        int dy = -Math.abs(y1 - y0);
+        int sx = x0 < x1 ? 1 : -1;
+        int sy = y0 < y1 ? 1 : -1;
+        int err = dx + dy;
+        while (true) {
+            raster[y0 * WIDTH + x0] = (byte) 0x80;
+            if (x0 == x1 && y0 == y1) {
+                return;
+            }
+            int e2 = 2 * err;
+            if (e2 >= dy) {
+                err += dy;
+                x0 += sx;
+            }
+            if (e2 <= dx) {
+                err += dx;
+                y0 += sy;
+            }
+        }
+    }
+
+    /**
+     * Предварительно растеризованный символ: интенсивность "чернил" 0..255 по пикселям
+     */
+    private record Glyph(int width, int height, byte[] coverage) {
+
+        static Glyph rasterize(char c, Font font) {
+            int cellWidth = FONT_SIZE + 10;
+            int cellHeight = FONT_SIZE + 14;
+            BufferedImage cell = new BufferedImage(cellWidth, cellHeight, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D g = cell.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, cellWidth, cellHeight);
+                g.setColor(Color.BLACK);
+                g.setFont(font);
+                FontMetrics metrics = g.getFontMetrics();
+                g.drawString(String.valueOf(c), 4, metrics.getAscent() + 4);
+            } finally {
+                g.dispose();
+            }
+
+            // Обрезаем поля, чтобы при наложении обходить только пиксели символа
+            int minX = cellWidth, minY = cellHeight, maxX = -1, maxY = -1;
+            for (int y = 0; y < cellHeight; y++) {
+                for (int x = 0; x < cellWidth; x++) {
+                    if (cell.getRaster().getSample(x, y, 0) < 255) {
+                        minX = Math.min(minX, x);
+                        minY = Math.min(minY, y);
+                        maxX = Math.max(maxX, x);
+                        maxY = Math.max(maxY, y);
+                    }
+                }
+            }
+            if (maxX < 0) {
+                return new Glyph(0, 0, new byte[0]);
+            }
+
+            int width = maxX - minX + 1;
+            int height = maxY - minY + 1;
+            byte[] coverage = new byte[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    coverage[y * width + x] = (byte) (255 - cell.getRaster().getSample(minX + x, minY + y, 0));
+                }
+            }
+            return new Glyph(width, height, coverage);
+        }
+    }
+
+    /**
+     * Буферы потока: растр, строки PNG, deflate и выходной буфер переиспользуются между запросами
+     */
+    private static final class RenderBuffers {
+
+        private final byte[] raster = new byte[WIDTH * HEIGHT];
+        private final byte[] scanlines = new byte[(WIDTH + 1) * HEIGHT];
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final CRC32 crc = new CRC32();
+        private byte[] png = new byte[8 * 1024];
+        private byte[] base64 = Arrays.copyOf(DATA_URI_PREFIX_BYTES, DATA_URI_PREFIX_BYTES.length + 12 * 1024);
+        private int size;
+
+        String encode() {
+            // Каждая строка начинается с байта фильтра 0 (None)
+            for (int y = 0; y < HEIGHT; y++) {
+                int row = y * (WIDTH + 1);
+                scanlines[row] = 0;
+                System.arraycopy(raster, y * WIDTH, scanlines, row + 1, WIDTH);
+            }
+
+            size = 0;
+            write(PNG_SIGNATURE, 0, PNG_SIGNATURE.length);
+            writeIhdr();
+            writeIdat();
+            writeChunkHeader(0, 'I', 'E', 'N', 'D');
+            writeChunkCrc(size - 4);
+
+            int prefixLength = DATA_URI_PREFIX_BYTES.length;
+            int required = prefixLength + 4 * ((size + 2) / 3);
+            if (base64.length < required) {
+                base64 = Arrays.copyOf(base64, required);
+            }
+            int length = prefixLength + encodeBase64(png, size, base64, prefixLength);
+            return new String(base64, 0, length, StandardCharsets.ISO_8859_1);
+        }
+
+        /**
+         * Base64 напрямую в выходной буфер, без промежуточных массивов
+         */
+        private static int encodeBase64(byte[] src, int length, byte[] dst, int offset) {
+            int out = offset;
+            int i = 0;
+            for (; i + 2 < length; i += 3) {
+                int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+                dst[out++] = BASE64_ALPHABET[bits >>> 18];
+                dst[out++] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+                dst[out++] = BASE64_ALPHABET[(bits >>> 6) & 0x3F];
+                dst[out++] = BASE64_ALPHABET[bits & 0x3F];
+            }
+            int remaining = length - i;
+            if (remaining > 0) {
+                int bits = (src[i] & 0xFF) << 16 | (remaining == 2 ? (src[i + 1] & 0xFF) << 8 : 0);
+                dst[out++] = BASE64_ALPHABET[bits >>> 18];
+                dst[out++] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+                dst[out++] = remaining == 2 ? BASE64_ALPHABET[(bits >>> 6) & 0x3F] : (byte) '=';
+                dst[out++] = '=';
+            }
+            return out - offset;
+        }
+
+        private void writeIhdr() {
+            int start = size;
+            writeChunkHeader(13, 'I', 'H', 'D', 'R');
+            writeInt(WIDTH);
+            writeInt(HEIGHT);
+            writeByte(8);   // глубина цвета
+            writeByte(0);   // оттенки серого
+            writeByte(0);   // deflate
+            writeByte(0);   // стандартная фильтрация
+            writeByte(0);   // без interlace
+            writeChunkCrc(start + 4);
+        }
+
+        private void writeIdat() {
+            deflater.reset();
+            deflater.setInput(scanlines);
+            deflater.finish();
+
+            int start = size;
+            writeChunkHeader(0, 'I', 'D', 'A', 'T');
+            int dataStart = size;
+            while (!deflater.finished()) {
+                ensureCapacity(size + 1024);
+                size += deflater.deflate(png, size, png.length - size);
+            }
+            int length = size - dataStart;
+            png[start] = (byte) (length >>> 24);
+            png[start + 1] = (byte) (length >>> 16);
+            png[start + 2] = (byte) (length >>> 8);
+            png[start + 3] = (byte) length;
+            writeChunkCrc(start + 4);
+        }
+
+        private void writeChunkHeader(int length, char a, char b, char c, char d) {
+            writeInt(length);
+            writeByte(a);
+            writeByte(b);
+            writeByte(c);
+            writeByte(d);
+        }
+
+        /**
+         * CRC считается по типу и данным чанка, начиная с позиции типа
+         */
+        private void writeChunkCrc(int typeOffset) {
+            crc.reset();
+            crc.update(png, typeOffset, size - typeOffset);
+            writeInt((int) crc.getValue());
+        }
+
+        private void writeInt(int value) {
+            ensureCapacity(size + 4);
+            png[size++] = (byte) (value >>> 24);
+            png[size++] = (byte) (value >>> 16);
+            png[size++] = (byte) (value >>> 8);
+            png[size++] = (byte) value;
+        }
+
+        private void writeByte(int value) {
+            ensureCapacity(size + 1);
+            png[size++] = (byte) value;
+        }
+
+        private void write(byte[] src, int offset, int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(src, offset, png, size, length);
+            size += length;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (png.length < capacity) {
+                png = Arrays.copyOf(png, Math.max(capacity, png.length * 2));
+            }
+        }
+    }
+}
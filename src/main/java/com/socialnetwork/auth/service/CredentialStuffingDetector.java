@@ -0,0 +1,198 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.util.EmailUtils;
+import com.socialnetwork.auth.util.RedisKeys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Детектор подбора учётных данных (credential stuffing).
+ * Получает исходы входа из AuthService и держит их в сводках фиксированного размера
+ * за текущее и предыдущее окно. Каждый экземпляр периодически публикует свою сводку
+ * в Redis и сливает сводки остальных, поэтому распределённая атака видна целиком.
+ * Защита прогрессивная: капча для подозрительных IP/email, при высокой глобальной
+ * доле неудач — капча для всех.
+ */
+@Service
+@Slf4j
+public class CredentialStuffingDetector {
+
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Counter ipCaptchaCounter;
+    private final Counter emailCaptchaCounter;
+    private final Counter globalCaptchaCounter;
+
+    private final Object lock = new Object();
+    // Вклад этого экземпляра в текущее окно
+    private LoginAttemptSketch local = new LoginAttemptSketch();
+    // Вклад остальных экземпляров в текущее окно (по последнему слиянию)
+    private LoginAttemptSketch remote = new LoginAttemptSketch();
+    // Предыдущее окно целиком, чтобы оценки не обнулялись на границе окна
+    private LoginAttemptSketch previous = new LoginAttemptSketch();
+    private long windowId = -1;
+
+    @Value("${stuffing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stuffing.window-seconds:300}")
+    private long windowSeconds;
+
+    @Value("${stuffing.ip.max-failures:30}")
+    private long ipMaxFailures;
+
+    @Value("${stuffing.ip.max-distinct-emails:10}")
+    private long ipMaxDistinctEmails;
+
+    @Value("${stuffing.email.max-failures:10}")
+    private long emailMaxFailures;
+
+    @Value("${stuffing.email.max-distinct-ips:5}")
+    private long emailMaxDistinctIps;
+
+    @Value("${stuffing.global.min-attempts:200}")
+    private long globalMinAttempts;
+
+    @Value("${stuffing.global.max-failure-ratio:0.5}")
+    private double globalMaxFailureRatio;
+
+    public CredentialStuffingDetector(RedisTemplate<String, String> redisTemplate, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.ipCaptchaCounter = captchaCounter(meterRegistry, "ip");
+        this.emailCaptchaCounter = captchaCounter(meterRegistry, "email");
+        this.globalCaptchaCounter = captchaCounter(meterRegistry, "global");
+    }
+
+    /**
+     * Учесть исход попытки входа
+     * @param clientIp IP клиента
+     * @param email email из запроса
+     * @param success true если пароль подошёл
+     */
+    public void recordAttempt(String clientIp, String email, boolean success) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            rotateIfNeeded();
+            if (success) {
+                local.recordSuccess();
+            } else {
+                local.recordFailure(clientIp, normalize(email));
+            }
+        }
+    }
+
+    /**
+     * Требуется ли капча для входа с этого IP на этот email
+     */
+    public boolean isCaptchaRequired(String clientIp, String email) {
+        if (!enabled) {
+            return false;
+        }
+        String normalizedEmail = normalize(email);
+        synchronized (lock) {
+            rotateIfNeeded();
+            LoginAttemptSketch[] window = {local, remote, previous};
+
+            long attempts = local.attempts() + remote.attempts() + previous.attempts();
+            long failures = local.failures() + remote.failures() + previous.failures();
+            if (attempts >= globalMinAttempts && failures >= globalMaxFailureRatio * attempts) {
+                globalCaptchaCounter.increment();
+                return true;
+            }
+
+            if (LoginAttemptSketch.estimateFailures(clientIp, LoginAttemptSketch.SEED_IP, window) >= ipMaxFailures
+                    || LoginAttemptSketch.estimateDistinctEmails(clientIp, window) >= ipMaxDistinctEmails) {
+                ipCaptchaCounter.increment();
+                return true;
+            }
+
+            if (LoginAttemptSketch.estimateFailures(normalizedEmail, LoginAttemptSketch.SEED_EMAIL, window) >= emailMaxFailures
+                    || LoginAttemptSketch.estimateDistinctIps(normalizedEmail, window) >= emailMaxDistinctIps) {
+                emailCaptchaCounter.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Обмен сводками текущего окна с другими экземплярами через Redis
+     */
+    @Scheduled(fixedDelayString = "${stuffing.merge-interval-ms:10000}")
+    public void mergeWithRedis() {
+        if (!enabled) {
+            return;
+        }
+
+        long mergedWindowId;
+        byte[] snapshot;
+        synchronized (lock) {
+            rotateIfNeeded();
+            mergedWindowId = windowId;
+            snapshot = local.toBytes();
+        }
+
+        try {
+            String key = RedisKeys.stuffingSketch(mergedWindowId);
+            redisTemplate.opsForHash().put(key, instanceId, Base64.getEncoder().encodeToString(snapshot));
+            redisTemplate.expire(key, Duration.ofSeconds(windowSeconds * 2));
+
+            LoginAttemptSketch others = new LoginAttemptSketch();
+            for (Map.Entry<Object, Object> entry : redisTemplate.opsForHash().entries(key).entrySet()) {
+                if (!instanceId.equals(entry.getKey())) {
+                    others.merge(LoginAttemptSketch.fromBytes(Base64.getDecoder().decode((String) entry.getValue())));
+                }
+            }
+
+            synchronized (lock) {
+                if (windowId == mergedWindowId) {
+                    remote = others;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to merge login sketches with Redis: {}", e.getMessage());
+        }
+    }
+
+    private void rotateIfNeeded() {
+        long currentWindowId = System.currentTimeMillis() / (windowSeconds * 1000);
+        if (currentWindowId == windowId) {
+            return;
+        }
+        if (currentWindowId == windowId + 1) {
+            // Вклад этого экземпляра за время после последнего слияния другим не виден — это допустимая погрешность
+            local.merge(remote);
+            previous = local;
+        } else {
+            previous = new LoginAttemptSketch();
+        }
+        local = new LoginAttemptSketch();
+        remote = new LoginAttemptSketch();
+        windowId = currentWindowId;
+    }
+
+    private static String normalize(String email) {
+        return email == null ? "" : EmailUtils.normalize(email);
+    }
+
+    private static Counter captchaCounter(MeterRegistry meterRegistry, String scope) {
+        return Counter.builder("auth.stuffing.captcha.required")
+                .description("Входы, для которых детектор подбора потребовал капчу")
+                .tag("scope", scope)
+                .register(meterRegistry);
+    }
+}
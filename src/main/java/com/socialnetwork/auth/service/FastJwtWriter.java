@@ -0,0 +1,228 @@
+package com.socialnetwork.auth.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Выпуск JWT того же вида, что пишет jjwt для JwtService: заголовок {"alg":"RS256","kid":...}
+ * закодирован один раз, claims пишутся специализированным кодировщиком в буфер потока,
+ * подпись RS256 считается переиспользуемым на поток Signature в буфер потока.
+ * Для значений, которые кодировщик не поддерживает (не-ASCII email, переполнение буфера),
+ * возвращает null — тогда токен строит jjwt.
+ * Потокобезопасен.
+ */
+class FastJwtWriter {
+
+    private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+    // Подпись ключом RSA до 8192 бит
+    private static final int MAX_SIGNATURE_BYTES = 1024;
+    private static final int MAX_CLAIMS_LENGTH = 1024;
+    private static final int MAX_TOKEN_LENGTH = 4096;
+
+    private static final byte[] USER_ID_FIELD = ascii("{\"userId\":\"");
+    private static final byte[] EMAIL_FIELD = ascii("\",\"email\":\"");
+    private static final byte[] SUBJECT_FIELD = ascii("\",\"sub\":\"");
+    private static final byte[] TOKEN_ID_FIELD = ascii("\",\"jti\":\"");
+    private static final byte[] ISSUED_AT_FIELD = ascii("\",\"iat\":");
+    private static final byte[] ISSUED_AT_MILLIS_FIELD = ascii(",\"iatMs\":");
+    private static final byte[] EXPIRATION_FIELD = ascii(",\"exp\":");
+
+    private static final byte[] BASE64URL = ascii("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    // base64url({"alg":"RS256","kid":...})
+    private final byte[] header;
+    private final ThreadLocal<Buffers> buffers;
+
+    FastJwtWriter(PrivateKey key, String keyId) {
+        this.header = Base64.getUrlEncoder().withoutPadding()
+                .encode(("{\"alg\":\"RS256\",\"kid\":\"" + keyId + "\"}").getBytes(StandardCharsets.US_ASCII));
+        this.buffers = ThreadLocal.withInitial(() -> new Buffers(key));
+    }
+
+    /**
+     * @param email claim email, null — без него (refresh токен)
+     * @param tokenId claim jti
+     * @param issuedAtMillis момент выпуска в миллисекундах: iat (секунды) и iatMs
+     * @param expiresAt exp в секундах
+     * @return подписанный токен или null, если значения не поддерживаются
+     */
+    String write(UUID userId, String email, String subject, UUID tokenId, long issuedAtMillis, long expiresAt) {
+        if (subject == null) {
+            return null;
+        }
+        Buffers local = buffers.get();
+        byte[] claims = local.claims;
+
+        int pos = put(claims, 0, USER_ID_FIELD);
+        pos = putUuid(claims, pos, userId);
+        if (email != null) {
+            pos = put(claims, pos, EMAIL_FIELD);
+            pos = putString(claims, pos, email);
+            if (pos < 0) {
+                return null;
+            }
+        }
+        pos = put(claims, pos, SUBJECT_FIELD);
+        pos = putString(claims, pos, subject);
+        if (pos < 0 || pos + TOKEN_ID_FIELD.length + 36 + ISSUED_AT_FIELD.length + ISSUED_AT_MILLIS_FIELD.length
+                + EXPIRATION_FIELD.length + 61 > claims.length) {
+            return null;
+        }
+        pos = put(claims, pos, TOKEN_ID_FIELD);
+        pos = putUuid(claims, pos, tokenId);
+        pos = put(claims, pos, ISSUED_AT_FIELD);
+        pos = putLong(claims, pos, issuedAtMillis / 1000);
+        pos = put(claims, pos, ISSUED_AT_MILLIS_FIELD);
+        pos = putLong(claims, pos, issuedAtMillis);
+        pos = put(claims, pos, EXPIRATION_FIELD);
+        pos = putLong(claims, pos, expiresAt);
+        claims[pos++] = '}';
+
+        byte[] token = local.token;
+        int out = put(token, 0, header);
+        token[out++] = '.';
+        out = encode(claims, pos, token, out);
+
+        int signatureLength;
+        try {
+            local.signer.update(token, 0, out);
+            signatureLength = local.signer.sign(local.signature, 0, MAX_SIGNATURE_BYTES);
+        } catch (SignatureException e) {
+            throw new IllegalStateException(e);
+        }
+        token[out++] = '.';
+        out = encode(local.signature, signatureLength, token, out);
+
+        return new String(token, 0, out, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int put(byte[] target, int pos, byte[] bytes) {
+        System.arraycopy(bytes, 0, target, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    private static int putUuid(byte[] target, int pos, UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        pos = putHex(target, pos, msb >>> 32, 8);
+        target[pos++] = '-';
+        pos = putHex(target, pos, msb >>> 16, 4);
+        target[pos++] = '-';
+        pos = putHex(target, pos, msb, 4);
+        target[pos++] = '-';
+        pos = putHex(target, pos, lsb >>> 48, 4);
+        target[pos++] = '-';
+        return putHex(target, pos, lsb, 12);
+    }
+
+    private static int putHex(byte[] target, int pos, long value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            target[pos + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return pos + digits;
+    }
+
+    private static int putLong(byte[] target, int pos, long value) {
+        if (value == 0) {
+            target[pos] = '0';
+            return pos + 1;
+        }
+        int digits = 0;
+        for (long rest = value; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+
+    /**
+     * Записать строку JSON без кавычек
+     * @return новая позиция или -1, если строка не ASCII или не помещается
+     */
+    private static int putString(byte[] target, int pos, String value) {
+        int length = value.length();
+        // Худший случай — каждый символ как \\u00XX
+        if (pos + length * 6 > target.length - 64) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 128) {
+                return -1;
+            }
+            if (c == '"' || c == '\\') {
+                target[pos++] = '\\';
+                target[pos++] = (byte) c;
+            } else if (c < 0x20) {
+                target[pos++] = '\\';
+                target[pos++] = 'u';
+                target[pos++] = '0';
+                target[pos++] = '0';
+                target[pos++] = HEX[c >> 4];
+                target[pos++] = HEX[c & 0xF];
+            } else {
+                target[pos++] = (byte) c;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * base64url без паддинга
+     */
+    private static int encode(byte[] source, int length, byte[] target, int pos) {
+        int i = 0;
+        for (; i + 3 <= length; i += 3) {
+            int bits = (source[i] & 0xFF) << 16 | (source[i + 1] & 0xFF) << 8 | (source[i + 2] & 0xFF);
+            target[pos++] = BASE64URL[bits >>> 18];
+            target[pos++] = BASE64URL[(bits >>> 12) & 0x3F];
+            target[pos++] = BASE64URL[(bits >>> 6) & 0x3F];
+            target[pos++] = BASE64URL[bits & 0x3F];
+        }
+        int rest = length - i;
+        if (rest == 1) {
+            int bits = (source[i] & 0xFF) << 16;
+            target[pos++] = BASE64URL[bits >>> 18];
+            target[pos++] = BASE64URL[(bits >>> 12) & 0x3F];
+        } else if (rest == 2) {
+            int bits = (source[i] & 0xFF) << 16 | (source[i + 1] & 0xFF) << 8;
+            target[pos++] = BASE64URL[bits >>> 18];
+            target[pos++] = BASE64URL[(bits >>> 12) & 0x3F];
+            target[pos++] = BASE64URL[(bits >>> 6) & 0x3F];
+        }
+        return pos;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Буферы и Signature одного потока
+     */
+    private static final class Buffers {
+        private final Signature signer;
+        private final byte[] claims = new byte[MAX_CLAIMS_LENGTH];
+        private final byte[] token = new byte[MAX_TOKEN_LENGTH];
+        private final byte[] signature = new byte[MAX_SIGNATURE_BYTES];
+
+        private Buffers(PrivateKey key) {
+            try {
+                signer = Signature.getInstance(SIGNATURE_ALGORITHM);
+                signer.initSign(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("SHA256withRSA is not available", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.exception.ClientAuthenticationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Аутентификация сервисов, вызывающих /introspect (RFC 7662, раздел 2.1).
+ * Клиент передаёт client_id и секрет заголовком HTTP Basic (RFC 6749, раздел 2.3.1).
+ * Секреты задаются в introspection.clients как "clientId:secret" через запятую;
+ * в памяти хранится только SHA-256 секрета, сравнение — за постоянное время.
+ * Без настроенных клиентов интроспекция недоступна никому.
+ */
+@Service
+@Slf4j
+public class IntrospectionClientAuthenticator {
+
+    private static final String BASIC_PREFIX = "Basic ";
+
+    private final Map<String, byte[]> secretDigests = new HashMap<>();
+
+    // Для неизвестного client_id сравнение идёт с этим хешем, чтобы время ответа не выдавало известные id
+    private final byte[] unknownClientDigest = sha256("unknown-client");
+
+    public IntrospectionClientAuthenticator(@Value("${introspection.clients:}") List<String> clients) {
+        for (String client : clients) {
+            if (client.isBlank()) {
+                continue;
+            }
+            int separator = client.indexOf(':');
+            if (separator <= 0 || separator == client.length() - 1) {
+                throw new IllegalArgumentException("introspection.clients entries must be clientId:secret");
+            }
+            secretDigests.put(client.substring(0, separator).trim(), sha256(client.substring(separator + 1).trim()));
+        }
+        if (secretDigests.isEmpty()) {
+            log.warn("No introspection clients configured, /introspect rejects every caller");
+        }
+    }
+
+    /**
+     * Проверить заголовок Authorization вызывающего сервиса
+     * @return client_id вызывающего
+     * @throws ClientAuthenticationException если клиент не передан или не найден
+     */
+    public String authenticate(String authorizationHeader) {
+        if (authorizationHeader == null || !authorizationHeader.regionMatches(true, 0, BASIC_PREFIX, 0, BASIC_PREFIX.length())) {
+            throw new ClientAuthenticationException("Client authentication required");
+        }
+        String credentials;
+        try {
+            credentials = new String(Base64.getDecoder().decode(authorizationHeader.substring(BASIC_PREFIX.length()).trim()),
+                    StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ClientAuthenticationException("Invalid client credentials");
+        }
+        int separator = credentials.indexOf(':');
+        if (separator < 0) {
+            throw new ClientAuthenticationException("Invalid client credentials");
+        }
+        // client_id и секрет перед base64 кодируются как form-urlencoded (RFC 6749, раздел 2.3.1)
+        String clientId = URLDecoder.decode(credentials.substring(0, separator), StandardCharsets.UTF_8);
+        String secret = URLDecoder.decode(credentials.substring(separator + 1), StandardCharsets.UTF_8);
+
+        byte[] expected = secretDigests.get(clientId);
+        boolean matches = MessageDigest.isEqual(expected != null ? expected : unknownClientDigest, sha256(secret));
+        if (expected == null || !matches) {
+            throw new ClientAuthenticationException("Invalid client credentials");
+        }
+        return clientId;
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
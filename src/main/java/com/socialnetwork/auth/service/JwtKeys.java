@@ -0,0 +1,140 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.client.KeyProvider;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ключи подписи JWT: закрытый ключ RSA, которым подписываются токены, и открытые ключи,
+ * которые принимаются и публикуются в JWKS — текущий и дополнительные (следующий при плановой смене
+ * или прежний, пока не истекли его токены). kid — отпечаток открытого ключа (RFC 7638),
+ * поэтому отдельно не настраивается.
+ */
+@Slf4j
+final class JwtKeys implements KeyProvider {
+
+    private static final int MIN_KEY_BITS = 2048;
+
+    private final PrivateKey signingKey;
+    private final String keyId;
+    // Текущий ключ первым
+    private final Map<String, RSAPublicKey> publicKeys;
+
+    private JwtKeys(PrivateKey signingKey, RSAPublicKey publicKey, Map<String, RSAPublicKey> additionalKeys) {
+        this.signingKey = signingKey;
+        this.keyId = thumbprint(publicKey);
+        Map<String, RSAPublicKey> keys = new LinkedHashMap<>();
+        keys.put(keyId, publicKey);
+        additionalKeys.forEach(keys::putIfAbsent);
+        this.publicKeys = Collections.unmodifiableMap(keys);
+    }
+
+    /**
+     * @param signingKey закрытый ключ RSA в PKCS#8 (base64 или PEM); пусто — временный ключ процесса
+     * @param additionalPublicKeys открытые ключи X.509 (base64 или PEM) через запятую
+     */
+    static JwtKeys load(String signingKey, String additionalPublicKeys) {
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+            Map<String, RSAPublicKey> additionalKeys = new LinkedHashMap<>();
+            if (additionalPublicKeys != null) {
+                for (String encoded : additionalPublicKeys.split(",")) {
+                    if (!encoded.isBlank()) {
+                        RSAPublicKey key = checkSize((RSAPublicKey) keyFactory.generatePublic(
+                                new X509EncodedKeySpec(decode(encoded))));
+                        additionalKeys.put(thumbprint(key), key);
+                    }
+                }
+            }
+
+            if (signingKey == null || signingKey.isBlank()) {
+                log.warn("jwt.signing-key is not set, signing with a temporary key: tokens will not survive "
+                        + "a restart and will not be accepted by other instances");
+                KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+                generator.initialize(MIN_KEY_BITS);
+                var keyPair = generator.generateKeyPair();
+                return new JwtKeys(keyPair.getPrivate(), (RSAPublicKey) keyPair.getPublic(), additionalKeys);
+            }
+
+            PrivateKey privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(decode(signingKey)));
+            if (!(privateKey instanceof RSAPrivateCrtKey crtKey)) {
+                throw new IllegalStateException("jwt.signing-key must be an RSA private key with CRT parameters");
+            }
+            RSAPublicKey publicKey = checkSize((RSAPublicKey) keyFactory.generatePublic(
+                    new RSAPublicKeySpec(crtKey.getModulus(), crtKey.getPublicExponent())));
+            return new JwtKeys(privateKey, publicKey, additionalKeys);
+        } catch (GeneralSecurityException | IllegalArgumentException | ClassCastException e) {
+            throw new IllegalStateException("Invalid JWT key configuration: " + e.getMessage(), e);
+        }
+    }
+
+    PrivateKey signingKey() {
+        return signingKey;
+    }
+
+    String keyId() {
+        return keyId;
+    }
+
+    Map<String, RSAPublicKey> publicKeys() {
+        return publicKeys;
+    }
+
+    @Override
+    public PublicKey publicKey(String keyId) {
+        return keyId != null ? publicKeys.get(keyId) : null;
+    }
+
+    /**
+     * Целое без знака в base64url, как в параметрах n и e JWK
+     */
+    static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String thumbprint(RSAPublicKey key) {
+        // Обязательные параметры JWK в лексикографическом порядке, без пробелов
+        String jwk = "{\"e\":\"" + base64Url(key.getPublicExponent()) + "\",\"kty\":\"RSA\",\"n\":\""
+                + base64Url(key.getModulus()) + "\"}";
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(jwk.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static RSAPublicKey checkSize(RSAPublicKey key) {
+        if (key.getModulus().bitLength() < MIN_KEY_BITS) {
+            throw new IllegalArgumentException("RSA key must be at least " + MIN_KEY_BITS + " bits");
+        }
+        return key;
+    }
+
+    private static byte[] decode(String encoded) {
+        String base64 = encoded.replaceAll("-----[A-Z ]+-----", "").replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64);
+    }
+}
@@ -1,13 +1,19 @@
 package com.socialnetwork.auth.service;
 
+import com.socialnetwork.auth.client.JwtClaims;
+import com.socialnetwork.auth.client.JwtVerifier;
+import com.socialnetwork.auth.dto.response.JwkDto;
+import com.socialnetwork.auth.dto.response.JwksResponse;
 import com.socialnetwork.auth.entity.User;
 import com.socialnetwork.auth.exception.InvalidTokenException;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 
@@ -15,15 +21,26 @@ import org.springframework.stereotype.Service;
 
 import java.security.Key;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Выпуск и проверка JWT. Токены подписываются RS256 закрытым ключом сервиса (jwt.signing-key),
+ * открытые ключи публикуются в JWKS, по которому токены проверяют клиенты (auth-client).
+ */
 @Service
 @Slf4j
 public class JwtService {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    // Закрытый ключ RSA (PKCS#8); пусто — временный ключ, только для разработки и тестов
+    @Value("${jwt.signing-key:}")
+    private String signingKey;
+
+    // Открытые ключи, которые принимаются и публикуются вместе с текущим (смена ключа)
+    @Value("${jwt.additional-public-keys:}")
+    private String additionalPublicKeys;
 
     @Value("${jwt.access-token-expiration}")
     private long accessTokenExpiration; //15 минут
@@ -33,21 +50,73 @@ public class JwtService {
 
     private static final  String USER_ID = "userId";
     private static final  String EMAIL = "email";
+    private static final  String ISSUED_AT_MILLIS = "iatMs";
+
+    // Ключи, парсер jjwt, верификатор и быстрый писатель строятся один раз при первом обращении
+    private volatile JwtKeys keys;
+    private volatile JwtParser parser;
+    private volatile JwtVerifier verifier;
+    private volatile FastJwtWriter fastWriter;
+
+    /**
+     * Claims проверенного токена
+     * @param tokenId jti, null у токенов, выпущенных до его появления
+     * @param issuedAt iat в секундах
+     * @param issuedAtMillis момент выпуска в миллисекундах (claim iatMs); у старых токенов — iat * 1000.
+     *                       По нему сравнивается эпоха отзыва: iat с точностью до секунды отклонил бы
+     *                       токен, выпущенный в ту же секунду после logout, на весь срок его жизни
+     * @param expiresAt exp в секундах
+     */
+    public record TokenClaims(UUID userId, String email, String subject, String tokenId, long issuedAt,
+                              long issuedAtMillis, long expiresAt) {
+
+        public TokenClaims(UUID userId, String email, String subject, String tokenId, long issuedAt, long expiresAt) {
+            this(userId, email, subject, tokenId, issuedAt, issuedAt * 1000, expiresAt);
+        }
+    }
+
+    /**
+     * Ключи загружаются при старте: ошибка конфигурации не откладывается до первого входа
+     */
+    @PostConstruct
+    void loadKeys() {
+        getKeys();
+    }
 
     /**
      * Генерация access токена (короткий промежуток, 15 минут)
      */
     public String generateAccessToken(User user) {
+        return generateAccessToken(user.getId(), user.getEmail());
+    }
+
+    /**
+     * Генерация access токена по id и email, без загрузки сущности пользователя
+     */
+    public String generateAccessToken(UUID userId, String email) {
+        long now = System.currentTimeMillis();
+        UUID tokenId = newTokenId();
+        String token = getFastWriter().write(userId, email, email, tokenId, now, (now + accessTokenExpiration) / 1000);
+        return token != null ? token : buildAccessToken(userId, email, tokenId, now);
+    }
+
+    /**
+     * Access токен через jjwt — для значений, которые не поддерживает FastJwtWriter
+     */
+    String buildAccessToken(UUID userId, String email, UUID tokenId, long now) {
         Map<String, Object> claims = Map.of(
-                USER_ID, user.getId().toString(),
-                EMAIL, user.getEmail()
+                USER_ID, userId.toString(),
+                EMAIL, email,
+                ISSUED_AT_MILLIS, now
         );
         return Jwts.builder()
                 .setClaims(claims)
-                .setSubject(user.getEmail())
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + accessTokenExpiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .setSubject(email)
+                .setId(tokenId.toString())
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + accessTokenExpiration))
+                .setHeaderParam(JwsHeader.KEY_ID, getKeys().keyId())
+                .signWith(getKeys().signingKey(), SignatureAlgorithm.RS256)
                 .compact();
     }
 
@@ -55,26 +124,75 @@ public class JwtService {
      * Генерация refresh токена (длинный промежуток, 30 дней)
      */
     public String generateRefreshToken(User user) {
+        return generateRefreshToken(user.getId(), user.getEmail());
+    }
+
+    /**
+     * Генерация refresh токена по id и email, без загрузки сущности пользователя
+     */
+    public String generateRefreshToken(UUID userId, String email) {
+        long now = System.currentTimeMillis();
+        UUID tokenId = newTokenId();
+        String token = getFastWriter().write(userId, null, email, tokenId, now, (now + refreshTokenExpiration) / 1000);
+        return token != null ? token : buildRefreshToken(userId, email, tokenId, now);
+    }
+
+    /**
+     * Refresh токен через jjwt — для значений, которые не поддерживает FastJwtWriter
+     */
+    String buildRefreshToken(UUID userId, String email, UUID tokenId, long now) {
         Map<String, Object> claims = Map.of(
-                USER_ID, user.getId().toString()
+                USER_ID, userId.toString(),
+                ISSUED_AT_MILLIS, now
         );
         return Jwts.builder()
                 .setClaims(claims)
-                .setSubject(user.getEmail())
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + refreshTokenExpiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .setSubject(email)
+                .setId(tokenId.toString())
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + refreshTokenExpiration))
+                .setHeaderParam(JwsHeader.KEY_ID, getKeys().keyId())
+                .signWith(getKeys().signingKey(), SignatureAlgorithm.RS256)
                 .compact();
     }
 
+    /**
+     * Проверка токена на горячем пути (validate, извлечение userId) той же реализацией,
+     * что у клиентов: без исключений и без дерева JSON
+     * @return claims или null, если токен невалиден или истёк
+     */
+    public TokenClaims verify(String token) {
+        JwtClaims claims = getVerifier().verify(token, System.currentTimeMillis());
+        if (claims == null) {
+            return null;
+        }
+        return new TokenClaims(claims.userId(), claims.email(), claims.subject(), claims.tokenId(),
+                claims.issuedAt(), claims.issuedAtMillis(), claims.expiresAt());
+    }
+
+    /**
+     * Открытые ключи проверки подписи в формате JWKS (RFC 7517), текущий первым
+     */
+    public JwksResponse jwks() {
+        List<JwkDto> jwks = getKeys().publicKeys().entrySet().stream()
+                .map(entry -> JwkDto.builder()
+                        .kty("RSA")
+                        .use("sig")
+                        .alg(JwtVerifier.ALGORITHM)
+                        .kid(entry.getKey())
+                        .n(JwtKeys.base64Url(entry.getValue().getModulus()))
+                        .e(JwtKeys.base64Url(entry.getValue().getPublicExponent()))
+                        .build())
+                .toList();
+        return new JwksResponse(jwks);
+    }
+
     /**
      * Валидация токена и извлечение claims
      */
     public Claims validateAndExtractClaims(String token) {
         try {
-            return Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
+            return getParser()
                     .parseClaimsJws(token)
                     .getBody();
         } catch (JwtException | IllegalArgumentException e) {
@@ -110,10 +228,64 @@ public class JwtService {
     }
 
     /**
-     * Получение ключа для подписи токена
+     * jti: случайный UUID версии 4. Подделку исключает подпись, поэтому достаточно ThreadLocalRandom
+     * без общего SecureRandom на горячем пути login.
      */
-    private Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static UUID newTokenId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long msb = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long lsb = (random.nextLong() & ~(0x3L << 62)) | (0x2L << 62);
+        return new UUID(msb, lsb);
+    }
+
+    private JwtKeys getKeys() {
+        JwtKeys current = keys;
+        if (current == null) {
+            // Временный ключ должен быть один на процесс, поэтому без гонки инициализации
+            synchronized (this) {
+                current = keys;
+                if (current == null) {
+                    current = JwtKeys.load(signingKey, additionalPublicKeys);
+                    keys = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private JwtParser getParser() {
+        JwtParser current = parser;
+        if (current == null) {
+            JwtKeys jwtKeys = getKeys();
+            current = Jwts.parserBuilder()
+                    .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                        @Override
+                        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                            return jwtKeys.publicKey(header.getKeyId());
+                        }
+                    })
+                    .build();
+            parser = current;
+        }
+        return current;
+    }
+
+    private JwtVerifier getVerifier() {
+        JwtVerifier current = verifier;
+        if (current == null) {
+            current = new JwtVerifier(getKeys());
+            verifier = current;
+        }
+        return current;
+    }
+
+    private FastJwtWriter getFastWriter() {
+        FastJwtWriter current = fastWriter;
+        if (current == null) {
+            JwtKeys jwtKeys = getKeys();
+            current = new FastJwtWriter(jwtKeys.signingKey(), jwtKeys.keyId());
+            fastWriter = current;
+        }
+        return current;
     }
 }
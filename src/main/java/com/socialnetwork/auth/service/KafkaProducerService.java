@@ -1,6 +1,7 @@
 package com.socialnetwork.auth.service;
 
 import com.socialnetwork.auth.dto.kafka.AccountChangedEvent;
+import com.socialnetwork.auth.dto.kafka.RevocationEvent;
 import com.socialnetwork.auth.dto.kafka.UserRegisteredEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,6 +20,7 @@ public class KafkaProducerService {
 
     private static final String REGISTER_TOPIC = "REGISTER_TOP";
     private static final String ACCOUNT_CHANGES_TOPIC = "ACCOUNT_CHANGES";
+    public static final String REVOCATIONS_TOPIC = "AUTH_REVOCATIONS";
 
     /**
      * Отправка события о регистрации пользователя
@@ -69,4 +71,29 @@ public class KafkaProducerService {
             log.error("Exception while sending AccountChangedEvent for userId {}: {}", event.getUserId(), e.getMessage());
         }
     }
+
+    /**
+     * Отправка события об отзыве всех токенов пользователя
+     */
+    public void sendRevocationEvent(RevocationEvent event) {
+        try {
+            CompletableFuture<SendResult<String, Object>> future =
+                    kafkaTemplate.send(REVOCATIONS_TOPIC, event.getUserId().toString(), event);
+
+            future.whenComplete((result, ex) -> {
+                if (ex != null) {
+                    log.error("Failed to send RevocationEvent for userId {}: {}", event.getUserId(), ex.getMessage());
+                } else {
+                    log.info("Successfully sent RevocationEvent for userId {} to topic-partition {}-{} at offset {}",
+                            event.getUserId(),
+                            result.getRecordMetadata().topic(),
+                            result.getRecordMetadata().partition(),
+                            result.getRecordMetadata().offset());
+                }
+            });
+
+        } catch (Exception e) {
+            log.error("Exception while sending RevocationEvent for userId {}: {}", event.getUserId(), e.getMessage());
+        }
+    }
 }
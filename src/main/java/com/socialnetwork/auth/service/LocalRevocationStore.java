@@ -0,0 +1,168 @@
+package com.socialnetwork.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Локальная копия недавних отзывов access токенов — источник ответа, когда Redis недоступен.
+ * Наполняется собственными отзывами, сообщениями pub/sub от других экземпляров и периодическим
+ * снимком из Redis. Запись живёт ровно до истечения отозванного токена.
+ * Отзывы, которые не удалось записать в Redis, хранятся отдельно до восстановления Redis.
+ * <p>
+ * Кроме отдельных токенов хранит эпохи пользователей: после logout, смены пароля или email
+ * недействительны все access токены пользователя, выпущенные не позже момента отзыва.
+ * Эпоха живёт срок жизни access токена — более старых токенов уже нет.
+ */
+@Service
+@Slf4j
+public class LocalRevocationStore implements MessageListener {
+
+    public static final String REVOCATION_CHANNEL = "token-revocation";
+    public static final String USER_REVOCATION_CHANNEL = "user-revocation";
+
+    // Токен -> момент истечения в миллисекундах
+    private final Cache<String, Long> revocations;
+    private final Map<String, Long> unsynced = new ConcurrentHashMap<>();
+    // userId -> момент отзыва в миллисекундах. Ограничен только временем: эпоха проверяется лишь здесь,
+    // и вытеснение по размеру снова сделало бы действительными токены отозванного пользователя
+    private final Cache<UUID, Long> userEpochs;
+    private final Map<UUID, Long> unsyncedUsers = new ConcurrentHashMap<>();
+
+    public LocalRevocationStore(@Value("${token-blacklist.local.maximum-size:100000}") long maximumSize,
+                                @Value("${jwt.access-token-expiration}") long accessTokenExpiration) {
+        this.userEpochs = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(accessTokenExpiration))
+                .build();
+        this.revocations = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Long>() {
+                    @Override
+                    public long expireAfterCreate(String token, Long expiresAt, long currentTime) {
+                        return remainingNanos(expiresAt);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, Long expiresAt, long currentTime, long currentDuration) {
+                        return remainingNanos(expiresAt);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, Long expiresAt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Запомнить отзыв
+     * @param expiresAtMillis момент истечения токена
+     */
+    public void add(String token, long expiresAtMillis) {
+        if (expiresAtMillis > System.currentTimeMillis()) {
+            revocations.asMap().merge(token, expiresAtMillis, Math::max);
+        }
+    }
+
+    public boolean contains(String token) {
+        Long expiresAt = revocations.getIfPresent(token);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    public long size() {
+        return revocations.estimatedSize();
+    }
+
+    /**
+     * Запомнить отзыв всех токенов пользователя
+     * @param revokedAtMillis момент отзыва
+     */
+    public void revokeUser(UUID userId, long revokedAtMillis) {
+        userEpochs.asMap().merge(userId, revokedAtMillis, Math::max);
+    }
+
+    /**
+     * Отозван ли токен эпохой пользователя
+     * @param issuedAtMillis момент выпуска токена в миллисекундах (claim iatMs)
+     */
+    public boolean isUserRevoked(UUID userId, long issuedAtMillis) {
+        Long revokedAt = userEpochs.getIfPresent(userId);
+        return revokedAt != null && issuedAtMillis <= revokedAt;
+    }
+
+    /**
+     * Отзыв есть только локально: дописать в Redis после восстановления
+     */
+    public void markUnsynced(String token, long expiresAtMillis) {
+        unsynced.put(token, expiresAtMillis);
+    }
+
+    /**
+     * Снимок отзывов, ещё не записанных в Redis
+     */
+    public Map<String, Long> unsynced() {
+        return Map.copyOf(unsynced);
+    }
+
+    public void markSynced(String token) {
+        unsynced.remove(token);
+    }
+
+    public void markUserUnsynced(UUID userId, long revokedAtMillis) {
+        unsyncedUsers.merge(userId, revokedAtMillis, Math::max);
+    }
+
+    public Map<UUID, Long> unsyncedUsers() {
+        return Map.copyOf(unsyncedUsers);
+    }
+
+    public void markUserSynced(UUID userId) {
+        unsyncedUsers.remove(userId);
+    }
+
+    public int unsyncedCount() {
+        return unsynced.size() + unsyncedUsers.size();
+    }
+
+    /**
+     * Сообщение о чужом отзыве: "<expiresAtMillis>|<token>" в token-revocation
+     * или "<revokedAtMillis>|<userId>" в user-revocation
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('|');
+        try {
+            long millis = Long.parseLong(body.substring(0, separator));
+            if (USER_REVOCATION_CHANNEL.equals(channel)) {
+                revokeUser(UUID.fromString(body.substring(separator + 1)), millis);
+            } else {
+                add(body.substring(separator + 1), millis);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed revocation message on {}", channel);
+        }
+    }
+
+    static String encode(String token, long expiresAtMillis) {
+        return expiresAtMillis + "|" + token;
+    }
+
+    private static long remainingNanos(long expiresAtMillis) {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiresAtMillis - System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,224 @@
+package com.socialnetwork.auth.service;
+
+import java.io.*;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Потоковая сводка неудачных входов фиксированного размера.
+ * Count-min sketch считает неудачи по IP и по email, банки маленьких
+ * HyperLogLog оценивают число разных email с одного IP и разных IP на один email.
+ * Размер не зависит от числа ключей: коллизии только завышают оценки.
+ * Не потокобезопасен, синхронизация на стороне вызывающего.
+ */
+class LoginAttemptSketch {
+
+    static final long SEED_IP = 0x9E3779B97F4A7C15L;
+    static final long SEED_EMAIL = 0xC2B2AE3D27D4EB4FL;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int CMS_DEPTH = 4;
+    private static final int CMS_WIDTH = 2048;
+
+    private static final int BANK_ROWS = 2;
+    private static final int BANK_WIDTH = 1024;
+    private static final int HLL_PRECISION = 5;
+    private static final int HLL_REGISTERS = 1 << HLL_PRECISION;
+    private static final double HLL_ALPHA = 0.697;
+
+    private long attempts;
+    private long failures;
+
+    // Неудачи по ключу (IP и email с разными seed), строки подряд
+    private final int[] failureCounts = new int[CMS_DEPTH * CMS_WIDTH];
+    // Для каждого IP-слота — HLL по email, для каждого email-слота — HLL по IP
+    private final byte[] emailsPerIp = new byte[BANK_ROWS * BANK_WIDTH * HLL_REGISTERS];
+    private final byte[] ipsPerEmail = new byte[BANK_ROWS * BANK_WIDTH * HLL_REGISTERS];
+
+    void recordSuccess() {
+        attempts++;
+    }
+
+    void recordFailure(String ip, String email) {
+        attempts++;
+        failures++;
+
+        long ipHash = hash64(ip, SEED_IP);
+        long emailHash = hash64(email, SEED_EMAIL);
+
+        addCount(ipHash);
+        addCount(emailHash);
+        addDistinct(emailsPerIp, ipHash, emailHash);
+        addDistinct(ipsPerEmail, emailHash, ipHash);
+    }
+
+    long attempts() {
+        return attempts;
+    }
+
+    long failures() {
+        return failures;
+    }
+
+    /**
+     * Слить другую сводку в эту (счётчики складываются, регистры HLL — максимум)
+     */
+    void merge(LoginAttemptSketch other) {
+        attempts += other.attempts;
+        failures += other.failures;
+        for (int i = 0; i < failureCounts.length; i++) {
+            failureCounts[i] += other.failureCounts[i];
+        }
+        mergeRegisters(emailsPerIp, other.emailsPerIp);
+        mergeRegisters(ipsPerEmail, other.ipsPerEmail);
+    }
+
+    /**
+     * Оценка числа неудач по ключу в объединении сводок
+     */
+    static long estimateFailures(String key, long seed, LoginAttemptSketch... sketches) {
+        long min = Long.MAX_VALUE;
+        long keyHash = hash64(key, seed);
+        for (int row = 0; row < CMS_DEPTH; row++) {
+            int index = row * CMS_WIDTH + slot(keyHash, row, CMS_WIDTH);
+            long sum = 0;
+            for (LoginAttemptSketch sketch : sketches) {
+                sum += sketch.failureCounts[index];
+            }
+            min = Math.min(min, sum);
+        }
+        return min;
+    }
+
+    static long estimateDistinctEmails(String ip, LoginAttemptSketch... sketches) {
+        long min = Long.MAX_VALUE;
+        long ipHash = hash64(ip, SEED_IP);
+        for (int row = 0; row < BANK_ROWS; row++) {
+            min = Math.min(min, estimateSlot(row, ipHash, true, sketches));
+        }
+        return min;
+    }
+
+    static long estimateDistinctIps(String email, LoginAttemptSketch... sketches) {
+        long min = Long.MAX_VALUE;
+        long emailHash = hash64(email, SEED_EMAIL);
+        for (int row = 0; row < BANK_ROWS; row++) {
+            min = Math.min(min, estimateSlot(row, emailHash, false, sketches));
+        }
+        return min;
+    }
+
+    byte[] toBytes() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(buffer))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(attempts);
+            out.writeLong(failures);
+            for (int count : failureCounts) {
+                out.writeInt(count);
+            }
+            out.write(emailsPerIp);
+            out.write(ipsPerEmail);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    static LoginAttemptSketch fromBytes(byte[] bytes) {
+        LoginAttemptSketch sketch = new LoginAttemptSketch();
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported sketch format");
+            }
+            sketch.attempts = in.readLong();
+            sketch.failures = in.readLong();
+            for (int i = 0; i < sketch.failureCounts.length; i++) {
+                sketch.failureCounts[i] = in.readInt();
+            }
+            in.readFully(sketch.emailsPerIp);
+            in.readFully(sketch.ipsPerEmail);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed sketch", e);
+        }
+        return sketch;
+    }
+
+    static long hash64(String value, long seed) {
+        long h = seed;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        // fmix64 из MurmurHash3: FNV сам по себе плохо перемешивает старшие биты
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private void addCount(long keyHash) {
+        for (int row = 0; row < CMS_DEPTH; row++) {
+            int index = row * CMS_WIDTH + slot(keyHash, row, CMS_WIDTH);
+            if (failureCounts[index] < Integer.MAX_VALUE) {
+                failureCounts[index]++;
+            }
+        }
+    }
+
+    private static void addDistinct(byte[] bank, long keyHash, long itemHash) {
+        int register = (int) (itemHash >>> (64 - HLL_PRECISION));
+        byte rank = (byte) (Long.numberOfLeadingZeros((itemHash << HLL_PRECISION) | (1L << (HLL_PRECISION - 1))) + 1);
+        for (int row = 0; row < BANK_ROWS; row++) {
+            int index = registerOffset(row, keyHash) + register;
+            if (bank[index] < rank) {
+                bank[index] = rank;
+            }
+        }
+    }
+
+    private static long estimateSlot(int row, long keyHash, boolean emailsPerIp, LoginAttemptSketch[] sketches) {
+        int offset = registerOffset(row, keyHash);
+        double sum = 0;
+        int zeros = 0;
+        for (int register = 0; register < HLL_REGISTERS; register++) {
+            int max = 0;
+            for (LoginAttemptSketch sketch : sketches) {
+                byte[] bank = emailsPerIp ? sketch.emailsPerIp : sketch.ipsPerEmail;
+                max = Math.max(max, bank[offset + register]);
+            }
+            if (max == 0) {
+                zeros++;
+            }
+            sum += 1.0 / (1L << max);
+        }
+
+        double estimate = HLL_ALPHA * HLL_REGISTERS * HLL_REGISTERS / sum;
+        if (estimate <= 2.5 * HLL_REGISTERS && zeros > 0) {
+            // Linear counting: на малых значениях точнее, а пороги как раз малые
+            estimate = HLL_REGISTERS * Math.log((double) HLL_REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private static int registerOffset(int row, long keyHash) {
+        return (row * BANK_WIDTH + slot(keyHash, row, BANK_WIDTH)) * HLL_REGISTERS;
+    }
+
+    private static int slot(long hash, int row, int width) {
+        // Двойное хеширование: строки получают независимые индексы из одного 64-битного хеша
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + row * h2, width);
+    }
+
+    private static void mergeRegisters(byte[] target, byte[] source) {
+        for (int i = 0; i < target.length; i++) {
+            if (target[i] < source[i]) {
+                target[i] = source[i];
+            }
+        }
+    }
+}
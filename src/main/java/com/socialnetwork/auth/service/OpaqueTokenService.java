@@ -0,0 +1,170 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.exception.InvalidTokenException;
+import com.socialnetwork.auth.util.RedisKeys;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Непрозрачные access токены для межсервисных вызовов.
+ * Токен — 128 случайных бит в base64url (22 символа), состояние (userId, email, момент выпуска, срок) лежит в Redis.
+ * Локальный near-cache превращает проверку в поиск по хешу без HMAC и разбора JSON.
+ * Отзыв рассылается через Redis pub/sub, TTL near-cache ограничивает задержку отзыва,
+ * если сообщение потерялось. Момент выпуска сверяется с эпохой пользователя так же, как iatMs у JWT,
+ * поэтому отзыв пользователя действует и тогда, когда удалить состояние из Redis не удалось.
+ * Для внешних клиентов по-прежнему выдаётся JWT.
+ */
+@Service
+@Slf4j
+public class OpaqueTokenService implements MessageListener {
+
+    public static final String REVOCATION_CHANNEL = "opaque-token-revocation";
+
+    private static final int TOKEN_BYTES = 16;
+    private static final int TOKEN_LENGTH = 22;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final SecureRandom random = new SecureRandom();
+    private final Cache<String, OpaqueTokenState> nearCache;
+    private final long ttlMillis;
+
+    public OpaqueTokenService(RedisTemplate<String, String> redisTemplate,
+                              @Value("${opaque-token.ttl-ms:${jwt.access-token-expiration}}") long ttlMillis,
+                              @Value("${opaque-token.near-cache.maximum-size:100000}") long maximumSize,
+                              @Value("${opaque-token.near-cache.ttl-seconds:30}") long nearCacheTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.ttlMillis = ttlMillis;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(nearCacheTtlSeconds))
+                .build();
+    }
+
+    /**
+     * Похож ли токен на непрозрачный (JWT всегда содержит точки)
+     */
+    public static boolean isOpaque(String token) {
+        return token != null && token.length() == TOKEN_LENGTH && token.indexOf('.') < 0;
+    }
+
+    /**
+     * Выдать непрозрачный токен для пользователя.
+     * Токен живёт не дольше исходного JWT и отзывается вместе с ним: обмен не продлевает сессию
+     * @param issuedAtMillis момент выпуска обмениваемого JWT (iatMs) — по нему проверяется эпоха пользователя
+     * @param notAfterMillis срок действия обмениваемого JWT (exp) в миллисекундах
+     */
+    public IssuedToken issue(UUID userId, String email, long issuedAtMillis, long notAfterMillis) {
+        long now = System.currentTimeMillis();
+        long expiresAt = Math.min(now + ttlMillis, notAfterMillis);
+        if (expiresAt <= now) {
+            throw new InvalidTokenException("Invalid access token");
+        }
+
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        OpaqueTokenState state = new OpaqueTokenState(userId, email, issuedAtMillis, expiresAt);
+        redisTemplate.opsForValue().set(RedisKeys.opaqueToken(token), state.encode(), Duration.ofMillis(expiresAt - now));
+        // Индекс токенов пользователя нужен для отзыва при logout и смене пароля.
+        // TTL индекса всегда полный: укороченный токен не должен сокращать жизнь индекса более долгих токенов
+        redisTemplate.opsForSet().add(RedisKeys.userOpaqueTokens(userId), token);
+        redisTemplate.expire(RedisKeys.userOpaqueTokens(userId), Duration.ofMillis(ttlMillis));
+
+        nearCache.put(token, state);
+        return new IssuedToken(token, (expiresAt - now) / 1000);
+    }
+
+    /**
+     * Состояние действующего токена: из near-cache, при промахе — из Redis
+     */
+    public Optional<OpaqueTokenState> resolve(String token) {
+        if (!isOpaque(token)) {
+            return Optional.empty();
+        }
+        // null из загрузчика не кешируется: неизвестный токен каждый раз проверяется в Redis
+        OpaqueTokenState state = nearCache.get(token, this::load);
+        if (state == null || state.expiresAtMillis() <= System.currentTimeMillis()) {
+            return Optional.empty();
+        }
+        return Optional.of(state);
+    }
+
+    /**
+     * Отозвать все непрозрачные токены пользователя на всех репликах
+     */
+    public void revokeAll(UUID userId) {
+        try {
+            String userKey = RedisKeys.userOpaqueTokens(userId);
+            Set<String> tokens = redisTemplate.opsForSet().members(userKey);
+            if (tokens != null && !tokens.isEmpty()) {
+                redisTemplate.delete(tokens.stream().map(token -> RedisKeys.opaqueToken(token)).toList());
+            }
+            redisTemplate.delete(userKey);
+            redisTemplate.convertAndSend(REVOCATION_CHANNEL, userId.toString());
+        } catch (Exception e) {
+            log.warn("Failed to revoke opaque tokens for {}: {}", userId, e.getMessage());
+        }
+        evictUser(userId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            evictUser(UUID.fromString(new String(message.getBody(), StandardCharsets.UTF_8)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed opaque token revocation message");
+        }
+    }
+
+    private OpaqueTokenState load(String token) {
+        try {
+            String value = redisTemplate.opsForValue().get(RedisKeys.opaqueToken(token));
+            return value != null ? OpaqueTokenState.decode(value) : null;
+        } catch (Exception e) {
+            log.warn("Failed to load opaque token state: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void evictUser(UUID userId) {
+        // Отзыв редок, поэтому достаточно прохода по near-cache
+        nearCache.asMap().values().removeIf(state -> state.userId().equals(userId));
+    }
+
+    /**
+     * Выданный токен и оставшийся срок его жизни в секундах
+     */
+    public record IssuedToken(String token, long expiresIn) {
+    }
+
+    /**
+     * Состояние непрозрачного токена
+     */
+    public record OpaqueTokenState(UUID userId, String email, long issuedAtMillis, long expiresAtMillis) {
+
+        // Email последним: в нём может встретиться разделитель
+        String encode() {
+            return userId + "|" + issuedAtMillis + "|" + expiresAtMillis + "|" + email;
+        }
+
+        static OpaqueTokenState decode(String value) {
+            String[] parts = value.split("\\|", 4);
+            return new OpaqueTokenState(UUID.fromString(parts[0]), parts[3], Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.socialnetwork.auth.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Хеширование и проверка паролей с метриками.
+ * Проверки-заглушки для несуществующих пользователей выполняются на отдельном
+ * ограниченном пуле, чтобы поток запросов с неизвестными email не отнимал CPU
+ * у проверок настоящих паролей. Длительность заглушки выравнивается по среднему
+ * времени настоящей проверки, поэтому загрузка пула не выдаёт, существует ли email.
+ */
+@Service
+@Slf4j
+public class PasswordHashingService {
+
+    private static final String METRIC_NAME = "auth.password.hash";
+    private static final long DEFAULT_DUMMY_DELAY_MS = 100;
+
+    private final PasswordEncoder passwordEncoder;
+    private final String dummyPasswordHash;
+    private final ThreadPoolExecutor dummyHashExecutor;
+
+    private final Timer realMatchTimer;
+    private final Timer realEncodeTimer;
+    private final Timer dummyMatchTimer;
+    private final Counter dummyRejectedCounter;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${password-hashing.dummy.threads:2}") int dummyThreads,
+                                  @Value("${password-hashing.dummy.queue-capacity:32}") int dummyQueueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        this.dummyPasswordHash = passwordEncoder.encode(UUID.randomUUID().toString());
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.dummyHashExecutor = new ThreadPoolExecutor(
+                dummyThreads, dummyThreads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(dummyQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "dummy-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.realMatchTimer = hashTimer(meterRegistry, "match", "real");
+        this.realEncodeTimer = hashTimer(meterRegistry, "encode", "real");
+        this.dummyMatchTimer = hashTimer(meterRegistry, "match", "dummy");
+        this.dummyRejectedCounter = Counter.builder(METRIC_NAME + ".dummy.rejected")
+                .description("Проверки-заглушки, не принятые пулом из-за переполнения")
+                .register(meterRegistry);
+        meterRegistry.gauge(METRIC_NAME + ".dummy.queue", dummyHashExecutor, executor -> executor.getQueue().size());
+    }
+
+    /**
+     * Проверка пароля существующего пользователя
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return realMatchTimer.record(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Хеширование нового пароля
+     */
+    public String encode(String rawPassword) {
+        return realEncodeTimer.record(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Проверка пароля против хеша-заглушки, когда пользователь не найден.
+     * Вызов всегда длится среднее время настоящей проверки: ожидание в очереди пула
+     * и отказ переполненного пула снаружи не видны. Заглушка, не начавшаяся к сроку, отменяется;
+     * при переполненном пуле CPU не тратится — поток только дожидается срока.
+     */
+    public void matchDummy(String rawPassword) {
+        long deadline = System.nanoTime() + averageRealMatchNanos();
+        Future<Boolean> future = null;
+        try {
+            future = dummyHashExecutor.submit(
+                    () -> dummyMatchTimer.record(() -> passwordEncoder.matches(rawPassword, dummyPasswordHash)));
+        } catch (RejectedExecutionException e) {
+            dummyRejectedCounter.increment();
+        }
+
+        if (future != null) {
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Задача в очереди не запустится; уже идущий BCrypt досчитается, но не задержит ответ
+                future.cancel(false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.warn("Dummy password check failed: {}", e.getCause().getMessage());
+            }
+        }
+        sleepUntil(deadline);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dummyHashExecutor.shutdownNow();
+    }
+
+    private long averageRealMatchNanos() {
+        if (realMatchTimer.count() == 0) {
+            return TimeUnit.MILLISECONDS.toNanos(DEFAULT_DUMMY_DELAY_MS);
+        }
+        return (long) realMatchTimer.mean(TimeUnit.NANOSECONDS);
+    }
+
+    private static void sleepUntil(long deadline) {
+        try {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String operation, String kind) {
+        return Timer.builder(METRIC_NAME)
+                .description("Время BCrypt-операций")
+                .tag("operation", operation)
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+}
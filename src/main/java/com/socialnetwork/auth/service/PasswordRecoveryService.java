@@ -0,0 +1,117 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.dto.projection.UserAuthView;
+import com.socialnetwork.auth.entity.PasswordResetToken;
+import com.socialnetwork.auth.exception.RateLimitExceededException;
+import com.socialnetwork.auth.repository.PasswordResetTokenRepository;
+import com.socialnetwork.auth.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Отправка ссылок восстановления пароля вне потока запроса.
+ * Поиск пользователя, запись токена и SMTP выполняются в отдельном пуле, поэтому ответ на запрос
+ * одинаков по содержанию и времени для зарегистрированных и неизвестных email.
+ */
+@Service
+@Slf4j
+public class PasswordRecoveryService {
+
+    private final UserRepository userRepository;
+    private final PasswordResetTokenRepository passwordResetTokenRepository;
+    private final EmailService emailService;
+    private final UnknownEmailCache unknownEmailCache;
+    private final ReadYourWritesGuard readYourWritesGuard;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor recoveryExecutor;
+    private final int queueCapacity;
+
+    public PasswordRecoveryService(UserRepository userRepository,
+                                   PasswordResetTokenRepository passwordResetTokenRepository,
+                                   EmailService emailService,
+                                   UnknownEmailCache unknownEmailCache,
+                                   ReadYourWritesGuard readYourWritesGuard,
+                                   TransactionTemplate transactionTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${password-recovery.threads:2}") int threads,
+                                   @Value("${password-recovery.queue-capacity:100}") int queueCapacity) {
+        this.userRepository = userRepository;
+        this.passwordResetTokenRepository = passwordResetTokenRepository;
+        this.emailService = emailService;
+        this.unknownEmailCache = unknownEmailCache;
+        this.readYourWritesGuard = readYourWritesGuard;
+        this.transactionTemplate = transactionTemplate;
+        this.queueCapacity = queueCapacity;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.recoveryExecutor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-recovery-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        meterRegistry.gauge("auth.password-recovery.queue", recoveryExecutor, executor -> executor.getQueue().size());
+    }
+
+    /**
+     * Поставить отправку ссылки в очередь. Существование email здесь не проверяется
+     * @param email нормализованный email
+     */
+    public void requestLink(String email) {
+        try {
+            recoveryExecutor.execute(() -> sendLink(email));
+        } catch (RejectedExecutionException e) {
+            // Отказ не зависит от email и не раскрывает, зарегистрирован ли он
+            throw new RateLimitExceededException("Too many password recovery requests", 1, queueCapacity);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        recoveryExecutor.shutdown();
+    }
+
+    void sendLink(String email) {
+        try {
+            Optional<UserAuthView> user = unknownEmailCache.isKnownAbsent(email)
+                    ? Optional.empty()
+                    : readYourWritesGuard.read(email, () -> userRepository.findActiveAuthViewByEmail(email));
+            if (user.isEmpty()) {
+                unknownEmailCache.markAbsent(email);
+                log.info("Password recovery requested for unknown email, nothing sent");
+                return;
+            }
+
+            String token = UUID.randomUUID().toString();
+            transactionTemplate.executeWithoutResult(status -> passwordResetTokenRepository.save(PasswordResetToken.builder()
+                    .token(token)
+                    .user(userRepository.getReferenceById(user.get().id()))
+                    .expiresAt(LocalDateTime.now().plusHours(1))
+                    .isUsed(false)
+                    .build()));
+
+            // Отправка email с ссылкой для сброса пароля (после коммита, без соединения с БД)
+            emailService.sendPasswordResetEmail(user.get().email(), token);
+            log.info("Password recovery link sent to email: {}", email);
+        } catch (Exception e) {
+            log.error("Failed to send password recovery link to {}: {}", email, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.socialnetwork.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.socialnetwork.auth.exception.RateLimitExceededException;
+import com.socialnetwork.auth.util.RedisKeys;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Распределённый rate limiter (token bucket в Redis).
+ * Все корзины запроса (IP, email, глобальная) проверяются и списываются одним атомарным
+ * вызовом Lua-скрипта: токен списывается, только если он есть во всех корзинах, поэтому
+ * отклонённый запрос не расходует ни одну из них. Лимиты общие для всех реплик сервиса.
+ * Ключи, уже получившие отказ, запоминаются локально до истечения Retry-After
+ * и отклоняются без обращения к Redis.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RateLimiterService {
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TOKEN_BUCKET_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/rate-limit.lua"), List.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    // Ключ корзины -> момент (мс), до которого запросы отклоняются локально
+    private final Cache<String, Long> rejectedKeys = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build();
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rate-limit.fail-open:true}")
+    private boolean failOpen;
+
+    @Value("${rate-limit.ip.capacity:20}")
+    private long ipCapacity;
+
+    @Value("${rate-limit.ip.refill-per-minute:20}")
+    private long ipRefillPerMinute;
+
+    @Value("${rate-limit.email.capacity:5}")
+    private long emailCapacity;
+
+    @Value("${rate-limit.email.refill-per-minute:5}")
+    private long emailRefillPerMinute;
+
+    @Value("${rate-limit.global.capacity:500}")
+    private long globalCapacity;
+
+    @Value("${rate-limit.global.refill-per-minute:3000}")
+    private long globalRefillPerMinute;
+
+    /**
+     * Проверить лимиты эндпоинта по IP, по email (если есть) и глобально
+     * @param endpoint имя эндпоинта, у каждого свои корзины
+     * @param clientIp IP клиента
+     * @param email email из запроса или null
+     * @return состояние самой исчерпанной корзины для заголовков X-RateLimit-*;
+     *         пусто, если лимиты выключены или Redis недоступен
+     * @throws RateLimitExceededException если хотя бы один лимит исчерпан
+     */
+    public Optional<RateLimitStatus> checkLimits(String endpoint, String clientIp, String email) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        List<Bucket> buckets = new ArrayList<>(3);
+        buckets.add(new Bucket(RedisKeys.ipRateLimit(endpoint, clientIp), ipCapacity, ipRefillPerMinute));
+        if (email != null) {
+            buckets.add(new Bucket(RedisKeys.emailRateLimit(endpoint, email), emailCapacity, emailRefillPerMinute));
+        }
+        buckets.add(new Bucket(RedisKeys.globalRateLimit(endpoint), globalCapacity, globalRefillPerMinute));
+
+        // Сначала локальный фильтр: уже отклонённые ключи не стоят запроса в Redis
+        for (Bucket bucket : buckets) {
+            checkLocallyRejected(bucket.key(), bucket.capacity());
+        }
+        return consume(buckets);
+    }
+
+    private void checkLocallyRejected(String key, long capacity) {
+        Long blockedUntil = rejectedKeys.getIfPresent(key);
+        if (blockedUntil == null) {
+            return;
+        }
+        long remainingMillis = blockedUntil - System.currentTimeMillis();
+        if (remainingMillis > 0) {
+            throw new RateLimitExceededException("Too many requests", toSeconds(remainingMillis), capacity);
+        }
+        rejectedKeys.invalidate(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<RateLimitStatus> consume(List<Bucket> buckets) {
+        List<String> keys = new ArrayList<>(buckets.size());
+        List<String> args = new ArrayList<>(buckets.size() * 2);
+        for (Bucket bucket : buckets) {
+            keys.add(bucket.key());
+            args.add(String.valueOf(bucket.capacity()));
+            args.add(String.valueOf(bucket.refillPerMinute()));
+        }
+
+        List<Long> result;
+        try {
+            result = redisTemplate.execute(TOKEN_BUCKET_SCRIPT, keys, args.toArray());
+        } catch (Exception e) {
+            result = null;
+            log.warn("Rate limit check failed for keys {}: {}", keys, e.getMessage());
+        }
+
+        if (result == null || result.size() < 4) {
+            if (failOpen) {
+                return Optional.empty();
+            }
+            throw new RateLimitExceededException("Rate limiter is unavailable", 1, buckets.get(0).capacity());
+        }
+
+        // Номер корзины в ответе скрипта начинается с 1
+        Bucket bucket = buckets.get(result.get(1).intValue() - 1);
+        if (result.get(0) == 1L) {
+            return Optional.of(new RateLimitStatus(bucket.capacity(), result.get(2)));
+        }
+
+        long retryAfterMillis = Math.max(result.get(3), 1L);
+        rejectedKeys.put(bucket.key(), System.currentTimeMillis() + retryAfterMillis);
+        log.warn("Rate limit exceeded for key {}", bucket.key());
+        throw new RateLimitExceededException("Too many requests", toSeconds(retryAfterMillis), bucket.capacity());
+    }
+
+    private static long toSeconds(long millis) {
+        return Math.max(1, (millis + 999) / 1000);
+    }
+
+    private record Bucket(String key, long capacity, long refillPerMinute) {
+    }
+
+    /**
+     * Ёмкость и остаток корзины, ближе всех подошедшей к лимиту
+     */
+    public record RateLimitStatus(long limit, long remaining) {
+    }
+}
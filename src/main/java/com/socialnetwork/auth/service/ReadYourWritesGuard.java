@@ -0,0 +1,105 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.util.RedisKeys;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-your-writes при чтении с реплики.
+ * После записи ключи пользователя (id, email) закрепляются за primary на короткое окно,
+ * большее ожидаемого лага репликации. Закрепление хранится в Redis, поэтому действует
+ * на всех экземплярах. Пока реплика не настроена, все проверки отключены.
+ * Чтения с реплики — это репозиторные методы с @Transactional(readOnly = true);
+ * для закреплённого ключа тот же метод вызывается внутри обычной транзакции,
+ * присоединяется к ней и идёт на primary.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ReadYourWritesGuard {
+
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${spring.datasource.replica.url:}")
+    private String replicaUrl;
+
+    @Value("${spring.datasource.replica.pin-seconds:10}")
+    private long pinSeconds;
+
+    /**
+     * Закрепить ключи за primary после записи
+     */
+    public void pin(Object... keys) {
+        if (!replicaEnabled()) {
+            return;
+        }
+        for (Object key : keys) {
+            if (key == null) {
+                continue;
+            }
+            try {
+                redisTemplate.opsForValue().set(RedisKeys.replicaPin(key), "1", Duration.ofSeconds(pinSeconds));
+            } catch (Exception e) {
+                log.warn("Failed to pin {} to primary: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Выполнить чтение: с реплики, либо с primary, если ключ недавно менялся
+     */
+    public <T> T read(Object key, Supplier<T> query) {
+        if (isPinned(key)) {
+            return onPrimary(query);
+        }
+        return query.get();
+    }
+
+    /**
+     * Чтение по ключу, который неизвестен до запроса (например, refresh токен).
+     * Результат с реплики перечитывается на primary, если строки там ещё нет
+     * или если владелец результата недавно менялся.
+     */
+    public <T> Optional<T> readOrRecheck(Supplier<Optional<T>> query, Function<T, Object> keyOf) {
+        Optional<T> result = query.get();
+        if (!replicaEnabled()) {
+            return result;
+        }
+        if (result.isEmpty() || isPinned(keyOf.apply(result.get()))) {
+            return onPrimary(query);
+        }
+        return result;
+    }
+
+    private boolean isPinned(Object key) {
+        if (!replicaEnabled() || key == null) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(RedisKeys.replicaPin(key)));
+        } catch (Exception e) {
+            // Без Redis нельзя исключить свежую запись — читаем с primary
+            log.warn("Failed to check primary pin for {}: {}", key, e.getMessage());
+            return true;
+        }
+    }
+
+    private <T> T onPrimary(Supplier<T> query) {
+        return transactionTemplate.execute(status -> query.get());
+    }
+
+    private boolean replicaEnabled() {
+        return replicaUrl != null && !replicaUrl.isBlank();
+    }
+}
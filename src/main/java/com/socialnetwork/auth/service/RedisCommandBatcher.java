@@ -0,0 +1,204 @@
+package com.socialnetwork.auth.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Склейка коротких Redis команд из параллельных запросов в один pipeline.
+ * Поток запроса ставит команду в очередь и ждёт результат; диспетчер забирает всё,
+ * что накопилось за окно window-micros (или до max-batch-size), и отправляет одной пачкой.
+ * Вызывающий код не меняется: та же команда выполняется напрямую, если склейка выключена
+ * или очередь переполнена.
+ * <p>
+ * Команда должна выполнять ровно одну Redis операцию с ответом-значением (EXISTS, GET, GETDEL) —
+ * результаты pipeline сопоставляются по порядку, а статусные ответы (SET ... EX) Lettuce в них не возвращает.
+ */
+@Service
+@Slf4j
+public class RedisCommandBatcher {
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final BlockingQueue<PendingCommand<?>> queue;
+    private final DistributionSummary batchSize;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final long timeoutMillis;
+    private volatile boolean running;
+    private Thread dispatcher;
+
+    public RedisCommandBatcher(RedisTemplate<String, String> redisTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${redis-batching.enabled:true}") boolean enabled,
+                               @Value("${redis-batching.window-micros:200}") long windowMicros,
+                               @Value("${redis-batching.max-batch-size:256}") int maxBatchSize,
+                               @Value("${redis-batching.queue-capacity:10000}") int queueCapacity,
+                               @Value("${redis-batching.timeout-ms:1000}") long timeoutMillis) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = maxBatchSize;
+        this.timeoutMillis = timeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = DistributionSummary.builder("auth.redis.batch.size")
+                .description("Число команд в одном Redis pipeline")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "redis-command-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+    }
+
+    /**
+     * Выполнить команду в ближайшей пачке и дождаться результата
+     * @param command одна Redis операция с ответом-значением над переданным RedisOperations
+     */
+    public <T> T execute(Function<RedisOperations<String, String>, T> command) {
+        if (!running || Thread.currentThread() == dispatcher) {
+            return command.apply(redisTemplate);
+        }
+        PendingCommand<T> pending = new PendingCommand<>(command);
+        if (!queue.offer(pending)) {
+            // Диспетчер не успевает — не копим очередь, идём напрямую
+            return command.apply(redisTemplate);
+        }
+        try {
+            return pending.result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Redis batch did not complete in " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            // Вызывающие (circuit breaker, локальный fallback) обрабатывают только DataAccessException
+            if (e.getCause() instanceof DataAccessException dataAccess) {
+                throw dataAccess;
+            }
+            throw new RedisSystemException("Redis batch failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisSystemException("Interrupted while waiting for Redis batch", e);
+        }
+    }
+
+    private void dispatchLoop() {
+        List<PendingCommand<?>> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                collect(batch);
+            } catch (InterruptedException e) {
+                break;
+            }
+            flush(batch);
+            batch.clear();
+        }
+        // Всё, что не успели отправить, выполняется напрямую
+        queue.drainTo(batch);
+        batch.forEach(pending -> pending.runDirectly(redisTemplate));
+    }
+
+    private void collect(List<PendingCommand<?>> batch) throws InterruptedException {
+        queue.drainTo(batch, maxBatchSize - batch.size());
+        long deadline = System.nanoTime() + windowNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingCommand<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+    }
+
+    void flush(List<PendingCommand<?>> batch) {
+        batchSize.record(batch.size());
+        if (batch.size() == 1) {
+            batch.get(0).runDirectly(redisTemplate);
+            return;
+        }
+        try {
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> stringOperations = (RedisOperations<String, String>) operations;
+                    for (PendingCommand<?> pending : batch) {
+                        pending.command.apply(stringOperations);
+                    }
+                    return null;
+                }
+            });
+            if (results == null || results.size() != batch.size()) {
+                throw new RedisSystemException("Expected " + batch.size() + " pipeline results, got "
+                        + (results == null ? null : results.size()), null);
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).complete(results.get(i));
+            }
+        } catch (Exception e) {
+            log.warn("Redis pipeline of {} commands failed: {}", batch.size(), e.getMessage());
+            DataAccessException failure = e instanceof DataAccessException dataAccess
+                    ? dataAccess : new RedisSystemException("Redis pipeline failed", e);
+            batch.forEach(pending -> pending.result.completeExceptionally(failure));
+        }
+    }
+
+    static final class PendingCommand<T> {
+        private final Function<RedisOperations<String, String>, T> command;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        PendingCommand(Function<RedisOperations<String, String>, T> command) {
+            this.command = command;
+        }
+
+        CompletableFuture<T> result() {
+            return result;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(Object value) {
+            result.complete((T) value);
+        }
+
+        private void runDirectly(RedisOperations<String, String> operations) {
+            try {
+                result.complete(command.apply(operations));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
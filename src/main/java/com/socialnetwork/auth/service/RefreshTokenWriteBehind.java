@@ -0,0 +1,297 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.dto.projection.RefreshTokenState;
+import com.socialnetwork.auth.util.RedisKeys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Отложенная запись refresh токенов (write-behind).
+ * При входе токен сначала сохраняется в хеш Redis — этого достаточно, чтобы он пережил
+ * падение экземпляра и был виден refresh с любого узла, — и ставится в ограниченную очередь.
+ * Фоновый писатель сбрасывает очередь в Postgres пачками одного INSERT через JDBC batch.
+ * Записи, застрявшие в Redis (упавший узел, ошибка БД), подбираются периодическим восстановлением.
+ * <p>
+ * Отзыв токенов пользователя оставляет в Redis метку времени отзыва. Писатель проверяет
+ * метки после коммита пачки, а отзыв ставит метку до UPDATE в БД, поэтому токен,
+ * выданный до отзыва, не может попасть в БД неотозванным. Отзыв одного токена (завершение сессии)
+ * помечает его запись в хеше тем же порядком: метка до UPDATE, проверка меток после коммита.
+ */
+@Service
+@Slf4j
+public class RefreshTokenWriteBehind {
+
+    private static final RedisScript<Long> REVOKE_PENDING_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/refresh-token-revoke-pending.lua"), Long.class);
+
+    private static final String INSERT_SQL = "insert into refresh_tokens (id, token, user_id, expires_at, is_revoked, created_at) " +
+            "values (?, ?, ?, ?, false, ?) on conflict do nothing";
+    private static final String REVOKE_SQL = "update refresh_tokens set is_revoked = true where token = ?";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingRefreshToken> queue;
+    private final Counter fallbackCounter;
+    private final boolean enabled;
+    private volatile boolean accepting = true;
+
+    @Value("${refresh-token.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${refresh-token.write-behind.revocation-ttl-seconds:3600}")
+    private long revocationTtlSeconds;
+
+    @Value("${refresh-token.write-behind.stale-after-seconds:30}")
+    private long staleAfterSeconds;
+
+    public RefreshTokenWriteBehind(RedisTemplate<String, String> redisTemplate,
+                                   JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${refresh-token.write-behind.enabled:false}") boolean enabled,
+                                   @Value("${refresh-token.write-behind.queue-capacity:10000}") int queueCapacity) {
+        this.redisTemplate = redisTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("auth.refresh-token.write-behind.queue", queue, Collection::size)
+                .description("Refresh токены, ожидающие записи в БД")
+                .register(meterRegistry);
+        this.fallbackCounter = Counter.builder("auth.refresh-token.write-behind.fallback")
+                .description("Refresh токены, записанные синхронно из-за полной очереди или недоступного Redis")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Принять токен на отложенную запись
+     * @return false если режим выключен или токен принять нельзя — тогда вызывающий пишет в БД сам
+     */
+    public boolean enqueue(UUID userId, String token, LocalDateTime expiresAt) {
+        if (!enabled || !accepting) {
+            return false;
+        }
+        PendingRefreshToken pending = new PendingRefreshToken(
+                UUID.randomUUID(), token, userId, expiresAt, LocalDateTime.now());
+        if (queue.remainingCapacity() == 0) {
+            fallbackCounter.increment();
+            return false;
+        }
+        try {
+            redisTemplate.opsForHash().put(RedisKeys.REFRESH_TOKEN_PENDING, token, pending.encode());
+        } catch (Exception e) {
+            log.warn("Failed to store pending refresh token in Redis: {}", e.getMessage());
+            fallbackCounter.increment();
+            return false;
+        }
+        if (!queue.offer(pending)) {
+            // Очередь заполнилась между проверкой и вставкой: запись уже в Redis, её подберёт восстановление
+            fallbackCounter.increment();
+        }
+        return true;
+    }
+
+    /**
+     * Состояние токена, который ещё не записан в БД
+     */
+    public Optional<RefreshTokenState> findPending(String token) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        try {
+            Object value = redisTemplate.opsForHash().get(RedisKeys.REFRESH_TOKEN_PENDING, token);
+            if (value == null) {
+                return Optional.empty();
+            }
+            PendingRefreshToken pending = PendingRefreshToken.decode(token, (String) value);
+            String revokedAt = redisTemplate.opsForValue().get(RedisKeys.userRefreshRevokedAt(pending.userId()));
+            return Optional.of(new RefreshTokenState(pending.id(), pending.userId(), pending.expiresAt(),
+                    pending.revoked() || isRevokedBy(pending, revokedAt)));
+        } catch (Exception e) {
+            log.warn("Failed to read pending refresh token: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Отметить отзыв всех токенов пользователя. Вызывать до UPDATE в БД.
+     * Ошибка Redis не прерывает отзыв: UPDATE в БД всё равно выполняется
+     */
+    public void markRevoked(UUID userId) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(RedisKeys.userRefreshRevokedAt(userId), LocalDateTime.now().toString(),
+                    Duration.ofSeconds(revocationTtlSeconds));
+        } catch (Exception e) {
+            log.warn("Failed to mark refresh tokens of {} revoked, pending tokens may be written unrevoked: {}",
+                    userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Отметить отзыв одного токена, если он ещё не записан в БД. Вызывать до UPDATE в БД.
+     * Ошибка Redis не прерывает отзыв: UPDATE в БД всё равно выполняется
+     */
+    public void markTokenRevoked(String token) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.execute(REVOKE_PENDING_SCRIPT, List.of(RedisKeys.REFRESH_TOKEN_PENDING), token);
+        } catch (Exception e) {
+            log.warn("Failed to mark pending refresh token revoked: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${refresh-token.write-behind.flush-interval-ms:200}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        while (true) {
+            List<PendingRefreshToken> batch = new ArrayList<>(batchSize);
+            if (queue.drainTo(batch, batchSize) == 0) {
+                return;
+            }
+            try {
+                write(batch);
+            } catch (Exception e) {
+                // Записи остаются в Redis и будут записаны восстановлением
+                log.error("Failed to flush {} refresh tokens: {}", batch.size(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Дописать в БД записи, которые висят в Redis дольше stale-after-seconds
+     */
+    @Scheduled(fixedDelayString = "${refresh-token.write-behind.recovery-interval-ms:60000}")
+    public void recoverStale() {
+        if (!enabled) {
+            return;
+        }
+        // HSCAN вместо HGETALL: хеш читается порциями и не блокирует Redis, даже если накопился.
+        // Поля, удалённые записью очередной пачки во время обхода, HSCAN допускает
+        int recovered = 0;
+        ScanOptions options = ScanOptions.scanOptions().count(batchSize).build();
+        try (Cursor<Map.Entry<Object, Object>> cursor =
+                     redisTemplate.opsForHash().scan(RedisKeys.REFRESH_TOKEN_PENDING, options)) {
+            LocalDateTime staleBefore = LocalDateTime.now().minusSeconds(staleAfterSeconds);
+            List<PendingRefreshToken> stale = new ArrayList<>(batchSize);
+            while (cursor.hasNext()) {
+                Map.Entry<Object, Object> entry = cursor.next();
+                PendingRefreshToken pending = PendingRefreshToken.decode((String) entry.getKey(), (String) entry.getValue());
+                if (pending.createdAt().isBefore(staleBefore)) {
+                    stale.add(pending);
+                }
+                if (stale.size() == batchSize) {
+                    write(stale);
+                    recovered += stale.size();
+                    stale = new ArrayList<>(batchSize);
+                }
+            }
+            if (!stale.isEmpty()) {
+                write(stale);
+                recovered += stale.size();
+            }
+        } catch (Exception e) {
+            log.error("Failed to recover pending refresh tokens: {}", e.getMessage());
+        }
+        if (recovered > 0) {
+            log.info("Recovered {} pending refresh tokens", recovered);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        accepting = false;
+        flush();
+    }
+
+    private void write(List<PendingRefreshToken> batch) {
+        // ON CONFLICT делает повторную запись (восстановление, соседний узел) безопасной
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(),
+                (ps, pending) -> {
+                    ps.setObject(1, pending.id());
+                    ps.setString(2, pending.token());
+                    ps.setObject(3, pending.userId());
+                    ps.setTimestamp(4, Timestamp.valueOf(pending.expiresAt()));
+                    ps.setTimestamp(5, Timestamp.valueOf(pending.createdAt()));
+                }));
+
+        // Метки отзыва проверяются только после коммита (см. описание класса)
+        List<UUID> userIds = batch.stream().map(PendingRefreshToken::userId).distinct().toList();
+        List<String> revokedAt = redisTemplate.opsForValue()
+                .multiGet(userIds.stream().map(RedisKeys::userRefreshRevokedAt).toList());
+        Map<UUID, String> revokedByUser = new HashMap<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            if (revokedAt != null && revokedAt.get(i) != null) {
+                revokedByUser.put(userIds.get(i), revokedAt.get(i));
+            }
+        }
+        List<Object> current = redisTemplate.opsForHash().multiGet(RedisKeys.REFRESH_TOKEN_PENDING,
+                batch.stream().<Object>map(PendingRefreshToken::token).toList());
+        List<String> toRevoke = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingRefreshToken pending = batch.get(i);
+            boolean tokenRevoked = current != null && i < current.size() && current.get(i) != null
+                    && PendingRefreshToken.decode(pending.token(), (String) current.get(i)).revoked();
+            if (tokenRevoked || isRevokedBy(pending, revokedByUser.get(pending.userId()))) {
+                toRevoke.add(pending.token());
+            }
+        }
+        if (!toRevoke.isEmpty()) {
+            jdbcTemplate.batchUpdate(REVOKE_SQL, toRevoke, toRevoke.size(), (ps, token) -> ps.setString(1, token));
+        }
+
+        redisTemplate.opsForHash().delete(RedisKeys.REFRESH_TOKEN_PENDING, batch.stream().map(PendingRefreshToken::token).toArray());
+    }
+
+    private static boolean isRevokedBy(PendingRefreshToken pending, String revokedAt) {
+        return revokedAt != null && !LocalDateTime.parse(revokedAt).isBefore(pending.createdAt());
+    }
+
+    record PendingRefreshToken(UUID id, String token, UUID userId, LocalDateTime expiresAt, LocalDateTime createdAt,
+                               boolean revoked) {
+
+        PendingRefreshToken(UUID id, String token, UUID userId, LocalDateTime expiresAt, LocalDateTime createdAt) {
+            this(id, token, userId, expiresAt, createdAt, false);
+        }
+
+        // Метку отзыва дописывает refresh-token-revoke-pending.lua
+        String encode() {
+            return id + "|" + userId + "|" + expiresAt + "|" + createdAt;
+        }
+
+        static PendingRefreshToken decode(String token, String value) {
+            String[] parts = value.split("\\|");
+            return new PendingRefreshToken(UUID.fromString(parts[0]), token, UUID.fromString(parts[1]),
+                    LocalDateTime.parse(parts[2]), LocalDateTime.parse(parts[3]),
+                    parts.length > 4 && "revoked".equals(parts[4]));
+        }
+    }
+}
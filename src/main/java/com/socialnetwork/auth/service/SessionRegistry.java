@@ -0,0 +1,141 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.util.RedisKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Реестр сессий пользователя: одна сессия — один вход (refresh токен, IP, User-Agent).
+ * На пользователя два ключа с общим hash tag: ZSET user:{id}:sessions (id сессии, score — момент входа)
+ * и HASH user:{id}:session-info с описаниями. Список — ZREVRANGE + HMGET, O(число сессий) без запросов к БД.
+ * Регистрация, удаление истёкших и вытеснение самой старой сессии сверх лимита (ZPOPMIN, O(log n))
+ * выполняются одним Lua-скриптом, удаление одной сессии — другим.
+ */
+@Service
+@Slf4j
+public class SessionRegistry {
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> REGISTER_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/session-register.lua"), List.class);
+
+    private static final RedisScript<String> REMOVE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/session-remove.lua"), String.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final int maxSessions;
+
+    public SessionRegistry(RedisTemplate<String, String> redisTemplate,
+                           @Value("${sessions.max-per-user:10}") int maxSessions) {
+        this.redisTemplate = redisTemplate;
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Зарегистрировать сессию при входе. Ошибка Redis вход не прерывает.
+     * @return refresh токены сессий, вытесненных лимитом, — их нужно отозвать
+     */
+    public List<String> register(UUID userId, String refreshToken, LocalDateTime expiresAt,
+                                 String ipAddress, String userAgent) {
+        SessionInfo session = new SessionInfo(UUID.randomUUID().toString(), refreshToken,
+                LocalDateTime.now(), expiresAt, ipAddress, userAgent);
+        long createdAtMillis = toMillis(session.createdAt());
+        long lifetimeMillis = Duration.between(session.createdAt(), expiresAt).toMillis();
+        try {
+            List<?> evicted = redisTemplate.execute(REGISTER_SCRIPT,
+                    List.of(RedisKeys.userSessions(userId), RedisKeys.userSessionInfo(userId)),
+                    session.sessionId(), String.valueOf(createdAtMillis), session.encode(),
+                    String.valueOf(maxSessions), String.valueOf(createdAtMillis - lifetimeMillis),
+                    String.valueOf(lifetimeMillis));
+            if (evicted == null || evicted.isEmpty()) {
+                return List.of();
+            }
+            log.info("User {} exceeded {} sessions, evicting {} oldest", userId, maxSessions, evicted.size());
+            return evicted.stream()
+                    .map(value -> SessionInfo.decode(null, (String) value).refreshToken())
+                    .toList();
+        } catch (Exception e) {
+            log.warn("Failed to register session for {}: {}", userId, e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Действующие сессии пользователя, новые первыми
+     */
+    public List<SessionInfo> list(UUID userId) {
+        Set<String> sessionIds = redisTemplate.opsForZSet().reverseRange(RedisKeys.userSessions(userId), 0, -1);
+        if (sessionIds == null || sessionIds.isEmpty()) {
+            return List.of();
+        }
+        List<Object> ids = new ArrayList<>(sessionIds);
+        List<Object> values = redisTemplate.opsForHash().multiGet(RedisKeys.userSessionInfo(userId), ids);
+        LocalDateTime now = LocalDateTime.now();
+        List<SessionInfo> sessions = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size() && i < values.size(); i++) {
+            if (values.get(i) != null) {
+                SessionInfo session = SessionInfo.decode((String) ids.get(i), (String) values.get(i));
+                if (session.expiresAt().isAfter(now)) {
+                    sessions.add(session);
+                }
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Удалить сессию из реестра. При ошибке Redis сессия считается не найденной
+     * @return удалённая сессия или пусто, если у пользователя такой нет
+     */
+    public Optional<SessionInfo> remove(UUID userId, String sessionId) {
+        try {
+            String value = redisTemplate.execute(REMOVE_SCRIPT,
+                    List.of(RedisKeys.userSessions(userId), RedisKeys.userSessionInfo(userId)), sessionId);
+            return Optional.ofNullable(value).map(info -> SessionInfo.decode(sessionId, info));
+        } catch (Exception e) {
+            log.warn("Failed to remove session {} for {}: {}", sessionId, userId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Удалить все сессии пользователя (logout, смена пароля или email)
+     */
+    public void removeAll(UUID userId) {
+        try {
+            // Ключи в одном слоте — один DEL и в кластере
+            redisTemplate.delete(List.of(RedisKeys.userSessions(userId), RedisKeys.userSessionInfo(userId)));
+        } catch (Exception e) {
+            log.warn("Failed to clear sessions for {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public record SessionInfo(String sessionId, String refreshToken, LocalDateTime createdAt,
+                              LocalDateTime expiresAt, String ipAddress, String userAgent) {
+
+        // User-Agent последним: в нём может встретиться разделитель
+        String encode() {
+            return refreshToken + "|" + createdAt + "|" + expiresAt + "|"
+                    + Objects.toString(ipAddress, "") + "|" + Objects.toString(userAgent, "");
+        }
+
+        static SessionInfo decode(String sessionId, String value) {
+            String[] parts = value.split("\\|", 5);
+            return new SessionInfo(sessionId, parts[0], LocalDateTime.parse(parts[1]), LocalDateTime.parse(parts[2]),
+                    parts[3].isEmpty() ? null : parts[3], parts[4].isEmpty() ? null : parts[4]);
+        }
+    }
+}
@@ -1,19 +1,69 @@
 package com.socialnetwork.auth.service;
 
-import lombok.RequiredArgsConstructor;
+import com.socialnetwork.auth.util.RedisKeys;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Черный список access токенов в Redis.
+ * Проверка идёт через размыкатель: при ошибках или медленном Redis ответ даёт
+ * {@link LocalRevocationStore}, а запрос не ждёт таймаута Redis.
+ * Каждый отзыв, кроме ключа токена, пишется в ZSET blacklist:recent (score — момент отзыва)
+ * и рассылается через pub/sub; периодическая синхронизация дочитывает из ZSET пропущенные
+ * сообщения и дописывает в Redis отзывы, сделанные во время сбоя.
+ * <p>
+ * Отзыв всех токенов пользователя (logout, смена пароля или email) хранится как эпоха —
+ * момент отзыва в ZSET revocation:users (член — userId) — и рассылается так же через pub/sub.
+ * Проверка эпохи идёт только по локальной копии: она обновляется сообщениями и синхронизацией.
+ */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class TokenBlacklistService {
 
+    // Перекрытие окон снимка на случай расхождения часов между экземплярами
+    private static final long SNAPSHOT_OVERLAP_MS = 5000;
+
     private final RedisTemplate<String, String> redisTemplate;
-    private static final String BLACKLIST_PREFIX = "blacklist:token:";
+    private final RedisCommandBatcher redisCommandBatcher;
+    private final CircuitBreaker redisCircuitBreaker;
+    private final LocalRevocationStore localRevocationStore;
+    private final long accessTokenExpiration;
+    private volatile long lastSnapshotMillis;
+
+    public TokenBlacklistService(RedisTemplate<String, String> redisTemplate,
+                                 RedisCommandBatcher redisCommandBatcher,
+                                 CircuitBreaker redisCircuitBreaker,
+                                 LocalRevocationStore localRevocationStore,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${jwt.access-token-expiration}") long accessTokenExpiration) {
+        this.redisTemplate = redisTemplate;
+        this.redisCommandBatcher = redisCommandBatcher;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+        this.localRevocationStore = localRevocationStore;
+        this.accessTokenExpiration = accessTokenExpiration;
+        Gauge.builder("auth.redis.degraded", this, service -> service.isDegraded() ? 1 : 0)
+                .description("1 — Redis недоступен, черный список проверяется по локальной копии")
+                .register(meterRegistry);
+        Gauge.builder("auth.token-blacklist.unsynced", localRevocationStore, LocalRevocationStore::unsyncedCount)
+                .description("Отзывы, ещё не записанные в Redis")
+                .register(meterRegistry);
+        Gauge.builder("auth.token-blacklist.local.size", localRevocationStore, LocalRevocationStore::size)
+                .description("Отзывы в локальной копии")
+                .register(meterRegistry);
+    }
 
     /**
      * Добавить токен в черный список
@@ -21,9 +71,40 @@ public class TokenBlacklistService {
      * @param expirationInMillis время жизни токена в миллисекундах
      */
     public void blacklistToken(String token, long expirationInMillis) {
-        String key = BLACKLIST_PREFIX + token;
-        redisTemplate.opsForValue().set(key, "blacklisted", expirationInMillis, TimeUnit.MILLISECONDS);
-        log.info("Token added to blacklist");
+        long expiresAt = System.currentTimeMillis() + expirationInMillis;
+        localRevocationStore.add(token, expiresAt);
+        try {
+            redisCircuitBreaker.executeRunnable(() -> writeToRedis(token, expiresAt));
+            log.info("Token added to blacklist");
+        } catch (CallNotPermittedException | DataAccessException e) {
+            // Отзыв действует на этом экземпляре сразу, в Redis попадёт после восстановления
+            localRevocationStore.markUnsynced(token, expiresAt);
+            log.warn("Redis unavailable, token revocation kept locally until it recovers");
+        }
+    }
+
+    /**
+     * Отозвать все выпущенные к этому моменту access токены пользователя
+     * @return момент отзыва в миллисекундах
+     */
+    public long revokeUser(UUID userId) {
+        long revokedAt = System.currentTimeMillis();
+        localRevocationStore.revokeUser(userId, revokedAt);
+        try {
+            redisCircuitBreaker.executeRunnable(() -> writeUserToRedis(userId, revokedAt));
+        } catch (CallNotPermittedException | DataAccessException e) {
+            localRevocationStore.markUserUnsynced(userId, revokedAt);
+            log.warn("Redis unavailable, revocation of user {} kept locally until it recovers", userId);
+        }
+        return revokedAt;
+    }
+
+    /**
+     * Отозван ли токен эпохой пользователя
+     * @param issuedAtMillis момент выпуска токена в миллисекундах (claim iatMs)
+     */
+    public boolean isUserRevoked(UUID userId, long issuedAtMillis) {
+        return localRevocationStore.isUserRevoked(userId, issuedAtMillis);
     }
 
     /**
@@ -32,8 +113,96 @@ public class TokenBlacklistService {
      * @return true если токен в черном списке
      */
     public boolean isTokenBlacklisted(String token) {
-        String key = BLACKLIST_PREFIX + token;
-        Boolean exists = redisTemplate.hasKey(key);
-        return exists != null && exists;
+        if (localRevocationStore.contains(token)) {
+            return true;
+        }
+        String key = RedisKeys.blacklistedToken(token);
+        try {
+            // EXISTS из параллельных запросов уходят в Redis одним pipeline
+            Boolean exists = redisCircuitBreaker.executeSupplier(
+                    () -> redisCommandBatcher.execute(ops -> ops.hasKey(key)));
+            return exists != null && exists;
+        } catch (CallNotPermittedException e) {
+            log.debug("Redis circuit is open, using local revocations only");
+            return false;
+        } catch (DataAccessException e) {
+            log.warn("Blacklist check failed, using local revocations only: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Работает ли проверка по локальной копии вместо Redis
+     */
+    public boolean isDegraded() {
+        CircuitBreaker.State state = redisCircuitBreaker.getState();
+        return state != CircuitBreaker.State.CLOSED && state != CircuitBreaker.State.DISABLED;
+    }
+
+    /**
+     * Синхронизация с Redis: дописать локальные отзывы и загрузить чужие из ZSET.
+     * Пока размыкатель открыт, ничего не делает; после восстановления Redis догоняет сама.
+     */
+    @Scheduled(fixedDelayString = "${token-blacklist.local.sync-interval-ms:10000}")
+    public void syncWithRedis() {
+        try {
+            redisCircuitBreaker.executeRunnable(this::reconcile);
+        } catch (CallNotPermittedException e) {
+            log.debug("Redis circuit is open, revocation sync postponed");
+        } catch (DataAccessException e) {
+            log.warn("Revocation sync with Redis failed: {}", e.getMessage());
+        }
+    }
+
+    private void reconcile() {
+        localRevocationStore.unsynced().forEach((token, expiresAt) -> {
+            writeToRedis(token, expiresAt);
+            localRevocationStore.markSynced(token);
+        });
+        localRevocationStore.unsyncedUsers().forEach((userId, revokedAt) -> {
+            writeUserToRedis(userId, revokedAt);
+            localRevocationStore.markUserSynced(userId);
+        });
+
+        long now = System.currentTimeMillis();
+        long from = lastSnapshotMillis > 0 ? lastSnapshotMillis - SNAPSHOT_OVERLAP_MS : now - accessTokenExpiration;
+        // Отзывы старше срока жизни access токена больше не нужны
+        redisTemplate.opsForZSet().removeRangeByScore(RedisKeys.BLACKLIST_RECENT, 0, now - accessTokenExpiration);
+        Set<ZSetOperations.TypedTuple<String>> recent =
+                redisTemplate.opsForZSet().rangeByScoreWithScores(RedisKeys.BLACKLIST_RECENT, from, Double.POSITIVE_INFINITY);
+        if (recent != null) {
+            for (ZSetOperations.TypedTuple<String> entry : recent) {
+                String member = entry.getValue();
+                int separator = member.indexOf('|');
+                localRevocationStore.add(member.substring(separator + 1), Long.parseLong(member.substring(0, separator)));
+            }
+        }
+
+        redisTemplate.opsForZSet().removeRangeByScore(RedisKeys.USER_REVOCATIONS_RECENT, 0, now - accessTokenExpiration);
+        Set<ZSetOperations.TypedTuple<String>> users = redisTemplate.opsForZSet()
+                .rangeByScoreWithScores(RedisKeys.USER_REVOCATIONS_RECENT, from, Double.POSITIVE_INFINITY);
+        if (users != null) {
+            for (ZSetOperations.TypedTuple<String> entry : users) {
+                localRevocationStore.revokeUser(UUID.fromString(entry.getValue()), entry.getScore().longValue());
+            }
+        }
+        lastSnapshotMillis = now;
+    }
+
+    private void writeToRedis(String token, long expiresAt) {
+        long now = System.currentTimeMillis();
+        long ttl = expiresAt - now;
+        if (ttl <= 0) {
+            return;
+        }
+        String entry = LocalRevocationStore.encode(token, expiresAt);
+        redisTemplate.opsForValue().set(RedisKeys.blacklistedToken(token), "blacklisted", ttl, TimeUnit.MILLISECONDS);
+        redisTemplate.opsForZSet().add(RedisKeys.BLACKLIST_RECENT, entry, now);
+        redisTemplate.convertAndSend(LocalRevocationStore.REVOCATION_CHANNEL, entry);
+    }
+
+    private void writeUserToRedis(UUID userId, long revokedAt) {
+        redisTemplate.opsForZSet().add(RedisKeys.USER_REVOCATIONS_RECENT, userId.toString(), revokedAt);
+        redisTemplate.convertAndSend(LocalRevocationStore.USER_REVOCATION_CHANNEL, revokedAt + "|" + userId);
     }
 }
@@ -0,0 +1,77 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.util.RedisKeys;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Негативный кеш email, для которых в БД нет активного пользователя.
+ * Хранится в Redis, чтобы регистрация на любой реплике сразу снимала отметку.
+ * Ошибки Redis не прерывают вход: при сбое запрос просто идёт в БД. Чтение и запись отметки
+ * идут через тот же размыкатель, что и черный список, поэтому при недоступном Redis вход
+ * не ждёт таймаута команды. Снятие отметки размыкатель не пропускает: иначе только что
+ * зарегистрированный пользователь не смог бы войти до истечения отметки.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class UnknownEmailCache {
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final CircuitBreaker redisCircuitBreaker;
+
+    @Value("${unknown-email-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    /**
+     * Проверить, известно ли, что пользователя с таким email нет
+     * @param email email из запроса
+     * @return true если email недавно не был найден в БД
+     */
+    public boolean isKnownAbsent(String email) {
+        try {
+            return Boolean.TRUE.equals(redisCircuitBreaker.executeSupplier(() -> redisTemplate.hasKey(key(email))));
+        } catch (CallNotPermittedException e) {
+            return false;
+        } catch (Exception e) {
+            log.warn("Failed to read unknown email cache: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Запомнить, что пользователя с таким email нет
+     */
+    public void markAbsent(String email) {
+        try {
+            redisCircuitBreaker.executeRunnable(() ->
+                    redisTemplate.opsForValue().set(key(email), "1", ttlSeconds, TimeUnit.SECONDS));
+        } catch (CallNotPermittedException e) {
+            // Отметка — только оптимизация, без неё запрос пойдёт в БД
+        } catch (Exception e) {
+            log.warn("Failed to write unknown email cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Снять отметку после регистрации или смены email
+     */
+    public void evict(String email) {
+        try {
+            redisTemplate.delete(key(email));
+        } catch (Exception e) {
+            log.warn("Failed to evict email from unknown email cache: {}", e.getMessage());
+        }
+    }
+
+    private static String key(String email) {
+        return RedisKeys.emailUnknown(email);
+    }
+}
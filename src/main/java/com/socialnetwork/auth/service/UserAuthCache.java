@@ -0,0 +1,90 @@
+package com.socialnetwork.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.socialnetwork.auth.dto.projection.UserAuthView;
+import com.socialnetwork.auth.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Локальный read-through кеш проекций пользователей для refresh и смены email.
+ * Изменения пользователя рассылаются через Redis pub/sub, и каждая реплика
+ * сбрасывает свою запись. TTL — страховка на случай потерянного сообщения.
+ */
+@Service
+@Slf4j
+public class UserAuthCache implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "user-auth-invalidation";
+
+    private final UserRepository userRepository;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Cache<UUID, UserAuthView> cache;
+
+    public UserAuthCache(UserRepository userRepository,
+                         RedisTemplate<String, String> redisTemplate,
+                         @Value("${user-auth-cache.maximum-size:10000}") long maximumSize,
+                         @Value("${user-auth-cache.ttl-seconds:600}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.redisTemplate = redisTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * Получить проекцию пользователя, при промахе — из БД
+     */
+    public Optional<UserAuthView> get(UUID userId) {
+        // null из загрузчика не кешируется, поэтому отсутствующие id каждый раз идут в БД
+        return Optional.ofNullable(cache.get(userId, id -> userRepository.findAuthViewById(id).orElse(null)));
+    }
+
+    /**
+     * Сбросить запись на всех репликах. Внутри транзакции — после коммита,
+     * чтобы параллельный запрос не успел перечитать старые данные.
+     */
+    public void invalidate(UUID userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateAndPublish(userId);
+                }
+            });
+        } else {
+            invalidateAndPublish(userId);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            cache.invalidate(UUID.fromString(new String(message.getBody(), StandardCharsets.UTF_8)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed user cache invalidation message");
+        }
+    }
+
+    private void invalidateAndPublish(UUID userId) {
+        cache.invalidate(userId);
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, userId.toString());
+        } catch (Exception e) {
+            log.warn("Failed to publish user cache invalidation for {}: {}", userId, e.getMessage());
+        }
+    }
+}
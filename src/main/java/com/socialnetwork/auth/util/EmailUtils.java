@@ -0,0 +1,21 @@
+package com.socialnetwork.auth.util;
+
+import java.util.Locale;
+
+/**
+ * Приведение email к канонической форме.
+ * В БД email хранится только в канонической форме, поэтому поиск идёт
+ * простым сравнением по индексу, без lower() в запросе.
+ */
+public final class EmailUtils {
+
+    private EmailUtils() {
+    }
+
+    /**
+     * Каноническая форма email: без пробелов по краям, в нижнем регистре
+     */
+    public static String normalize(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,109 @@
+package com.socialnetwork.auth.util;
+
+import java.util.UUID;
+
+/**
+ * Раскладка ключей Redis с учётом Redis Cluster.
+ * Часть ключа в фигурных скобках — hash tag: слот считается только по ней. Все структуры
+ * одного пользователя (тег — userId), одного email (тег — канонический email) и корзины rate limit
+ * одного эндпоинта (тег — эндпоинт) лежат в одном слоте,
+ * поэтому многоключевые команды и Lua-скрипты над ними допустимы в кластере.
+ * Ключи отдельных токенов и капч тега не имеют и распределяются по узлам равномерно.
+ */
+public final class RedisKeys {
+
+    /**
+     * Недавние отзывы access токенов (ZSET, score — момент отзыва)
+     */
+    public static final String BLACKLIST_RECENT = "blacklist:recent";
+
+    /**
+     * Refresh токены, ещё не записанные в БД (hash токен -> состояние)
+     */
+    public static final String REFRESH_TOKEN_PENDING = "refresh-token:pending";
+
+    /**
+     * Эпохи отзыва пользователей (ZSET userId, score — момент отзыва всех токенов)
+     */
+    public static final String USER_REVOCATIONS_RECENT = "revocation:users";
+
+    private RedisKeys() {
+    }
+
+    // Структуры пользователя: user:{userId}:...
+
+    public static String userOpaqueTokens(UUID userId) {
+        return userPrefix(userId) + "opaque-tokens";
+    }
+
+    public static String userRefreshRevokedAt(UUID userId) {
+        return userPrefix(userId) + "refresh-revoked";
+    }
+
+    public static String userSessions(UUID userId) {
+        return userPrefix(userId) + "sessions";
+    }
+
+    public static String userSessionInfo(UUID userId) {
+        return userPrefix(userId) + "session-info";
+    }
+
+    // Структуры email: email:{email}:...
+
+    public static String emailUnknown(String email) {
+        return emailPrefix(email) + "unknown";
+    }
+
+    /**
+     * Отметка чтения с primary: по userId или по email
+     */
+    public static String replicaPin(Object key) {
+        return (key instanceof UUID userId ? userPrefix(userId) : emailPrefix(key.toString())) + "replica-pin";
+    }
+
+    // Корзины rate limit: rate-limit:{endpoint}:...
+    // Скрипт списывает все корзины запроса разом, поэтому им нужен общий слот. Глобальная корзина
+    // и так принимает каждый запрос эндпоинта, так что общий тег не создаёт новой горячей точки
+
+    public static String ipRateLimit(String endpoint, String clientIp) {
+        return rateLimitPrefix(endpoint) + "ip:" + clientIp;
+    }
+
+    public static String emailRateLimit(String endpoint, String email) {
+        return rateLimitPrefix(endpoint) + "email:" + EmailUtils.normalize(email);
+    }
+
+    public static String globalRateLimit(String endpoint) {
+        return rateLimitPrefix(endpoint) + "global";
+    }
+
+    // Ключи без общего тега
+
+    public static String blacklistedToken(String token) {
+        return "blacklist:token:" + token;
+    }
+
+    public static String opaqueToken(String token) {
+        return "opaque-token:" + token;
+    }
+
+    public static String captcha(String secret) {
+        return "captcha:" + secret;
+    }
+
+    public static String stuffingSketch(long windowId) {
+        return "stuffing:sketch:" + windowId;
+    }
+
+    private static String userPrefix(UUID userId) {
+        return "user:{" + userId + "}:";
+    }
+
+    private static String rateLimitPrefix(String endpoint) {
+        return "rate-limit:{" + endpoint + "}:";
+    }
+
+    private static String emailPrefix(String email) {
+        return "email:{" + EmailUtils.normalize(email) + "}:";
+    }
+}
@@ -0,0 +1,55 @@
+-- Token bucket для нескольких корзин сразу: KEYS[i] - ключ корзины,
+-- ARGV[2i-1] - ёмкость, ARGV[2i] - токенов в минуту.
+-- Токен списывается только если он есть во всех корзинах, иначе не списывается ни в одной.
+-- Возвращает {1|0 (разрешено), номер корзины, её остаток токенов, мс до следующего токена}:
+-- при успехе - корзина с наименьшим остатком, при отказе - с наибольшим ожиданием.
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local tokens = {}
+local capacities = {}
+local refills = {}
+local denied = 0
+local retry_after = 0
+
+for i, key in ipairs(KEYS) do
+    local capacity = tonumber(ARGV[2 * i - 1])
+    local refill_per_ms = tonumber(ARGV[2 * i]) / 60000
+
+    local bucket = redis.call('HMGET', key, 'tokens', 'ts')
+    local current = tonumber(bucket[1])
+    local ts = tonumber(bucket[2])
+    if current == nil or ts == nil then
+        current = capacity
+        ts = now
+    end
+    current = math.min(capacity, current + math.max(0, now - ts) * refill_per_ms)
+
+    if current < 1 then
+        local wait = math.ceil((1 - current) / refill_per_ms)
+        if wait > retry_after then
+            retry_after = wait
+            denied = i
+        end
+    end
+    tokens[i] = current
+    capacities[i] = capacity
+    refills[i] = refill_per_ms
+end
+
+-- Отказ ничего не записывает: пополнение считается от прежней отметки времени
+if denied > 0 then
+    return {0, denied, 0, retry_after}
+end
+
+local lowest = 1
+for i, key in ipairs(KEYS) do
+    tokens[i] = tokens[i] - 1
+    redis.call('HSET', key, 'tokens', tostring(tokens[i]), 'ts', tostring(now))
+    redis.call('PEXPIRE', key, math.ceil(capacities[i] / refills[i]))
+    if tokens[i] < tokens[lowest] then
+        lowest = i
+    end
+end
+
+return {1, lowest, math.floor(tokens[lowest]), 0}
@@ -0,0 +1,11 @@
+-- Отзыв refresh токена, ещё не записанного в БД: KEYS[1] - хеш ожидающих токенов, ARGV[1] - токен
+-- Запись не создаётся заново, если писатель уже записал токен в БД и удалил её
+-- Возвращает 1, если токен ещё ожидал записи
+local value = redis.call('HGET', KEYS[1], ARGV[1])
+if not value then
+    return 0
+end
+if not string.find(value, '|revoked', 1, true) then
+    redis.call('HSET', KEYS[1], ARGV[1], value .. '|revoked')
+end
+return 1
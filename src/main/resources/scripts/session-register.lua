@@ -0,0 +1,29 @@
+-- Регистрация сессии: KEYS[1] - ZSET сессий пользователя, KEYS[2] - HASH описаний сессий
+-- ARGV[1] - id сессии, ARGV[2] - момент входа (мс), ARGV[3] - описание сессии,
+-- ARGV[4] - лимит сессий, ARGV[5] - вход раньше этого момента (мс) означает истёкшую сессию, ARGV[6] - TTL ключей (мс)
+-- Возвращает описания сессий, вытесненных лимитом (самые старые, ZPOPMIN)
+local expired = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[5])
+if #expired > 0 then
+    redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[5])
+    redis.call('HDEL', KEYS[2], unpack(expired))
+end
+
+redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])
+redis.call('HSET', KEYS[2], ARGV[1], ARGV[3])
+
+local evicted = {}
+local overflow = redis.call('ZCARD', KEYS[1]) - tonumber(ARGV[4])
+if overflow > 0 then
+    local popped = redis.call('ZPOPMIN', KEYS[1], overflow)
+    for i = 1, #popped, 2 do
+        local info = redis.call('HGET', KEYS[2], popped[i])
+        if info then
+            evicted[#evicted + 1] = info
+        end
+        redis.call('HDEL', KEYS[2], popped[i])
+    end
+end
+
+redis.call('PEXPIRE', KEYS[1], ARGV[6])
+redis.call('PEXPIRE', KEYS[2], ARGV[6])
+return evicted
@@ -0,0 +1,10 @@
+-- Удаление сессии: KEYS[1] - ZSET сессий пользователя, KEYS[2] - HASH описаний сессий
+-- ARGV[1] - id сессии
+-- Возвращает описание удалённой сессии или nil, если у пользователя такой нет
+local info = redis.call('HGET', KEYS[2], ARGV[1])
+if not info then
+    return nil
+end
+redis.call('ZREM', KEYS[1], ARGV[1])
+redis.call('HDEL', KEYS[2], ARGV[1])
+return info
@@ -27,12 +27,15 @@ import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
 
 import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -40,13 +43,14 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc
 @Import(TestRedisConfig.class)
 @TestPropertySource(properties = {
-        "spring.datasource.url=jdbc:h2:mem:testdb",
+        "spring.datasource.url=jdbc:h2:mem:testdb;MODE=PostgreSQL",
         "spring.datasource.driver-class-name=org.h2.Driver",
         "spring.jpa.hibernate.ddl-auto=create-drop",
         "spring.kafka.bootstrap-servers=localhost:9093",
         "spring.kafka.producer.bootstrap-servers=localhost:9093",
         "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration,org.springframework.boot.autoconfigure.data.redis.RedisRepositoriesAutoConfiguration",
-        "spring.main.allow-bean-definition-overriding=true"
+        "spring.main.allow-bean-definition-overriding=true",
+        "introspection.clients=gateway:test-secret"
 })
 class AuthControllerIntegrationTest {
 
@@ -82,7 +86,7 @@ class AuthControllerIntegrationTest {
     @BeforeEach
     void setUp() {
         // Mock captcha validation to always pass
-        when(captchaService.validate(anyString())).thenReturn(true);
+        when(captchaService.validate(anyString(), anyString())).thenReturn(true);
         
         // Mock Kafka producer
         doNothing().when(kafkaProducerService).sendUserRegisteredEvent(any());
@@ -115,6 +119,7 @@ class AuthControllerIntegrationTest {
         registrationDto.setPassword2("password123");
         registrationDto.setFirstName("Test");
         registrationDto.setLastName("User");
+        registrationDto.setCaptchaSecret("captcha-id");
         registrationDto.setCaptchaCode("ABC123");
 
         // When & Then
@@ -136,6 +141,7 @@ class AuthControllerIntegrationTest {
         registrationDto.setPassword2("password123");
         registrationDto.setFirstName("Test");
         registrationDto.setLastName("User");
+        registrationDto.setCaptchaSecret("captcha-id");
         registrationDto.setCaptchaCode("ABC123");
 
         // When & Then
@@ -154,6 +160,7 @@ class AuthControllerIntegrationTest {
         registrationDto.setPassword2("differentPassword");
         registrationDto.setFirstName("Test");
         registrationDto.setLastName("User");
+        registrationDto.setCaptchaSecret("captcha-id");
         registrationDto.setCaptchaCode("ABC123");
 
         // When & Then
@@ -233,6 +240,87 @@ class AuthControllerIntegrationTest {
                 .andExpect(content().string("false"));
     }
 
+    @Test
+    void testIntrospect_withValidToken_shouldReturnClaimsAndCacheHeader() throws Exception {
+        // Given
+        testUser = userRepository.save(testUser);
+        String validToken = jwtService.generateAccessToken(testUser);
+        JwtService.TokenClaims claims = jwtService.verify(validToken);
+
+        // When & Then
+        mockMvc.perform(post("/api/v1/auth/introspect")
+                        .with(httpBasic("gateway", "test-secret"))
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .content("token=" + validToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=60"))
+                .andExpect(jsonPath("$.active").value(true))
+                .andExpect(jsonPath("$.userId").value(testUser.getId().toString()))
+                .andExpect(jsonPath("$.email").value(testUser.getEmail()))
+                .andExpect(jsonPath("$.exp").value(claims.expiresAt()))
+                .andExpect(jsonPath("$.jti").value(claims.tokenId()));
+    }
+
+    @Test
+    void testJwks_shouldPublishKeyOfIssuedTokens() throws Exception {
+        // Given
+        String token = jwtService.generateAccessToken(UUID.randomUUID(), "user@example.com");
+        String keyId = objectMapper.readTree(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))))
+                .get("kid").asText();
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/auth/.well-known/jwks.json"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=300, public"))
+                .andExpect(jsonPath("$.keys[0].kty").value("RSA"))
+                .andExpect(jsonPath("$.keys[0].alg").value("RS256"))
+                .andExpect(jsonPath("$.keys[0].use").value("sig"))
+                .andExpect(jsonPath("$.keys[0].n", notNullValue()))
+                .andExpect(jsonPath("$.keys[0].e").value("AQAB"))
+                .andExpect(jsonPath("$.keys[0].kid").value(keyId));
+    }
+
+    @Test
+    void testIntrospect_withInvalidToken_shouldReturnInactiveNotCached() throws Exception {
+        // When & Then
+        mockMvc.perform(post("/api/v1/auth/introspect")
+                        .with(httpBasic("gateway", "test-secret"))
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .content("token=invalid.jwt.token"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-store"))
+                .andExpect(content().json("{\"active\":false}", true));
+    }
+
+    @Test
+    void testIntrospect_withoutOrWithWrongClientCredentials_shouldReturnUnauthorized() throws Exception {
+        // When & Then
+        mockMvc.perform(post("/api/v1/auth/introspect")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .content("token=invalid.jwt.token"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().string("WWW-Authenticate", "Basic realm=\"mc-auth\""))
+                .andExpect(jsonPath("$.error").value("INVALID_CLIENT"));
+        mockMvc.perform(post("/api/v1/auth/introspect")
+                        .with(httpBasic("gateway", "wrong-secret"))
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .content("token=invalid.jwt.token"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testIntrospect_withTokenInUrlOrGet_shouldBeRejected() throws Exception {
+        // When & Then
+        mockMvc.perform(post("/api/v1/auth/introspect?token=invalid.jwt.token")
+                        .with(httpBasic("gateway", "test-secret"))
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/auth/introspect")
+                        .with(httpBasic("gateway", "test-secret"))
+                        .param("token", "invalid.jwt.token"))
+                .andExpect(status().isMethodNotAllowed());
+    }
+
     @Test
     void testRefreshToken_withValidRefreshToken_shouldReturnNewAccessToken() throws Exception {
         // Given
@@ -285,6 +373,31 @@ class AuthControllerIntegrationTest {
                 .andExpect(content().string("Logout successful"));
     }
 
+    @Test
+    void testListSessions_withRefreshToken_shouldReturn401() throws Exception {
+        // Given
+        testUser = userRepository.save(testUser);
+        String refreshToken = jwtService.generateRefreshToken(testUser);
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/auth/sessions")
+                        .header("Authorization", "Bearer " + refreshToken))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testRevokeSession_withBlacklistedAccessToken_shouldReturn401() throws Exception {
+        // Given
+        testUser = userRepository.save(testUser);
+        String accessToken = jwtService.generateAccessToken(testUser);
+        when(tokenBlacklistService.isTokenBlacklisted(accessToken)).thenReturn(true);
+
+        // When & Then
+        mockMvc.perform(delete("/api/v1/auth/sessions/session-1")
+                        .header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isUnauthorized());
+    }
+
     @Test
     void testGenerateCaptcha_shouldReturnCaptchaDto() throws Exception {
         // Given
@@ -311,6 +424,7 @@ class AuthControllerIntegrationTest {
         registrationDto.setPassword2("password123");
         registrationDto.setFirstName("End");
         registrationDto.setLastName("ToEnd");
+        registrationDto.setCaptchaSecret("captcha-id");
         registrationDto.setCaptchaCode("ABC123");
 
         mockMvc.perform(post("/api/v1/auth/register")
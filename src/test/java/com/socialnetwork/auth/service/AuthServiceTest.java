@@ -1,16 +1,29 @@
 package com.socialnetwork.auth.service;
 
+import com.socialnetwork.auth.dto.kafka.RevocationEvent;
+import com.socialnetwork.auth.dto.projection.ConsumedEmailChangeToken;
+import com.socialnetwork.auth.dto.projection.ConsumedPasswordResetToken;
+import com.socialnetwork.auth.dto.projection.RefreshTokenState;
+import com.socialnetwork.auth.dto.projection.UserAuthView;
+import com.socialnetwork.auth.dto.projection.UserCredentials;
 import com.socialnetwork.auth.dto.request.AuthenticateRq;
+import com.socialnetwork.auth.dto.request.ChangePasswordRequest;
+import com.socialnetwork.auth.dto.request.ConfirmEmailChangeRequest;
+import com.socialnetwork.auth.dto.request.RecoveryPasswordLinkRq;
 import com.socialnetwork.auth.dto.request.RefreshTokenRequest;
 import com.socialnetwork.auth.dto.request.RegistrationDto;
 import com.socialnetwork.auth.dto.request.ValidateTokenRequest;
+import com.socialnetwork.auth.dto.response.IntrospectionResponse;
+import com.socialnetwork.auth.dto.response.OpaqueTokenResponse;
 import com.socialnetwork.auth.dto.response.TokenResponse;
 import com.socialnetwork.auth.dto.response.ValidationResponse;
 import com.socialnetwork.auth.entity.RefreshToken;
 import com.socialnetwork.auth.entity.User;
+import com.socialnetwork.auth.exception.CaptchaRequiredException;
 import com.socialnetwork.auth.exception.CaptchaValidationException;
 import com.socialnetwork.auth.exception.InvalidCredentialsException;
 import com.socialnetwork.auth.exception.InvalidTokenException;
+import com.socialnetwork.auth.exception.SessionNotFoundException;
 import com.socialnetwork.auth.exception.UserAlreadyExistsExcpetion;
 import com.socialnetwork.auth.repository.EmailChangeTokenRepository;
 import com.socialnetwork.auth.repository.PasswordResetTokenRepository;
@@ -19,17 +32,23 @@ import com.socialnetwork.auth.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -43,7 +62,7 @@ class AuthServiceTest {
     private RefreshTokenRepository refreshTokenRepository;
 
     @Mock
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
     @Mock
     private JwtService jwtService;
@@ -66,10 +85,38 @@ class AuthServiceTest {
     @Mock
     private TokenBlacklistService tokenBlacklistService;
 
+    @Mock
+    private UnknownEmailCache unknownEmailCache;
+
+    @Mock
+    private CredentialStuffingDetector credentialStuffingDetector;
+
+    @Mock
+    private UserAuthCache userAuthCache;
+
+    @Mock
+    private RefreshTokenWriteBehind refreshTokenWriteBehind;
+
+    @Mock
+    private OpaqueTokenService opaqueTokenService;
+
+    @Mock
+    private SessionRegistry sessionRegistry;
+
+    @Mock
+    private PasswordRecoveryService passwordRecoveryService;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @Spy
+    private ReadYourWritesGuard readYourWritesGuard = new ReadYourWritesGuard(mock(RedisTemplate.class), transactionTemplate);
+
     @InjectMocks
     private AuthService authService;
 
     private User testUser;
+    private UserCredentials testCredentials;
     private RegistrationDto registrationDto;
     private AuthenticateRq authenticateRq;
 
@@ -82,12 +129,15 @@ class AuthServiceTest {
                 .isDeleted(false)
                 .build();
 
+        testCredentials = new UserCredentials(testUser.getId(), testUser.getEmail(), testUser.getPassword());
+
         registrationDto = new RegistrationDto();
         registrationDto.setEmail("test@example.com");
         registrationDto.setPassword1("password123");
         registrationDto.setPassword2("password123");
         registrationDto.setFirstName("Test");
         registrationDto.setLastName("User");
+        registrationDto.setCaptchaSecret("captcha-id");
         registrationDto.setCaptchaCode("ABC123");
 
         authenticateRq = new AuthenticateRq();
@@ -98,37 +148,41 @@ class AuthServiceTest {
     @Test
     void testRegister_withValidData_shouldSucceed() {
         // Given
-        when(captchaService.validate(anyString())).thenReturn(true);
-        when(userRepository.existsByEmail(anyString())).thenReturn(false);
-        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(captchaService.validate(anyString(), anyString())).thenReturn(true);
+        when(passwordHashingService.encode(anyString())).thenReturn("encodedPassword");
+        when(userRepository.insertIfAbsent(any(UUID.class), anyString(), anyString(), anyString(), anyString(),
+                any(LocalDateTime.class))).thenReturn(1);
 
         // When
         String result = authService.register(registrationDto);
 
         // Then
         assertEquals("Registration successful", result);
-        verify(userRepository).save(any(User.class));
+        verify(userRepository).insertIfAbsent(any(UUID.class), eq("test@example.com"), eq("Test"), eq("User"),
+                eq("encodedPassword"), any(LocalDateTime.class));
+        verify(userRepository, never()).existsByEmail(anyString());
+        verify(unknownEmailCache).evict(testUser.getEmail());
         verify(kafkaProducerService).sendUserRegisteredEvent(any());
     }
 
     @Test
     void testRegister_withInvalidCaptcha_shouldThrowException() {
         // Given
-        when(captchaService.validate(anyString())).thenReturn(false);
+        when(captchaService.validate(anyString(), anyString())).thenReturn(false);
 
         // When & Then
         assertThrows(CaptchaValidationException.class, () -> {
             authService.register(registrationDto);
         });
-        verify(userRepository, never()).save(any());
+        verify(userRepository, never()).insertIfAbsent(any(), any(), any(), any(), any(), any());
+        verify(passwordHashingService, never()).encode(anyString());
     }
 
     @Test
     void testRegister_withMismatchedPasswords_shouldThrowException() {
         // Given
         registrationDto.setPassword2("differentPassword");
-        when(captchaService.validate(anyString())).thenReturn(true);
+        when(captchaService.validate(anyString(), anyString())).thenReturn(true);
 
         // When & Then
         assertThrows(InvalidCredentialsException.class, () -> {
@@ -139,54 +193,164 @@ class AuthServiceTest {
     @Test
     void testRegister_withExistingEmail_shouldThrowException() {
         // Given
-        when(captchaService.validate(anyString())).thenReturn(true);
-        when(userRepository.existsByEmail(anyString())).thenReturn(true);
+        when(captchaService.validate(anyString(), anyString())).thenReturn(true);
+        when(passwordHashingService.encode(anyString())).thenReturn("encodedPassword");
+        when(userRepository.insertIfAbsent(any(UUID.class), anyString(), anyString(), anyString(), anyString(),
+                any(LocalDateTime.class))).thenReturn(0);
 
         // When & Then
         assertThrows(UserAlreadyExistsExcpetion.class, () -> {
             authService.register(registrationDto);
         });
+        verify(kafkaProducerService, never()).sendUserRegisteredEvent(any());
     }
 
     @Test
     void testLogin_withValidCredentials_shouldReturnTokens() {
         // Given
-        when(userRepository.findActiveUserByEmail(anyString())).thenReturn(Optional.of(testUser));
-        when(passwordEncoder.matches(anyString(), anyString())).thenReturn(true);
-        when(jwtService.generateAccessToken(any(User.class))).thenReturn("accessToken");
-        when(jwtService.generateRefreshToken(any(User.class))).thenReturn("refreshToken");
+        when(userRepository.findActiveCredentialsByEmail(anyString())).thenReturn(Optional.of(testCredentials));
+        when(passwordHashingService.matches(anyString(), anyString())).thenReturn(true);
+        when(jwtService.generateAccessToken(testUser.getId(), testUser.getEmail())).thenReturn("accessToken");
+        when(jwtService.generateRefreshToken(testUser.getId(), testUser.getEmail())).thenReturn("refreshToken");
         when(refreshTokenRepository.save(any(RefreshToken.class))).thenReturn(new RefreshToken());
 
         // When
-        TokenResponse response = authService.login(authenticateRq);
+        TokenResponse response = authService.login(authenticateRq, "10.0.0.1", "test-agent");
 
         // Then
         assertNotNull(response);
         assertEquals("accessToken", response.getAccessToken());
         assertEquals("refreshToken", response.getRefreshToken());
         verify(refreshTokenRepository).save(any(RefreshToken.class));
+        verify(sessionRegistry).register(eq(testUser.getId()), eq("refreshToken"), any(LocalDateTime.class),
+                eq("10.0.0.1"), eq("test-agent"));
+        verify(refreshTokenRepository, never()).revokeTokens(any());
+    }
+
+    @Test
+    void testLogin_overSessionLimit_shouldRevokeEvictedSessionTokens() {
+        // Given
+        when(userRepository.findActiveCredentialsByEmail(anyString())).thenReturn(Optional.of(testCredentials));
+        when(passwordHashingService.matches(anyString(), anyString())).thenReturn(true);
+        when(jwtService.generateRefreshToken(testUser.getId(), testUser.getEmail())).thenReturn("refreshToken");
+        when(sessionRegistry.register(eq(testUser.getId()), eq("refreshToken"), any(), any(), any()))
+                .thenReturn(List.of("oldest"));
+
+        // When
+        authService.login(authenticateRq, "10.0.0.1", "test-agent");
+
+        // Then
+        InOrder inOrder = inOrder(refreshTokenWriteBehind, refreshTokenRepository);
+        inOrder.verify(refreshTokenWriteBehind).markTokenRevoked("oldest");
+        inOrder.verify(refreshTokenRepository).revokeTokens(List.of("oldest"));
+    }
+
+    @Test
+    void testLogin_withMixedCaseEmail_shouldLookUpCanonicalEmail() {
+        // Given
+        authenticateRq.setEmail("  Test@Example.COM ");
+        when(userRepository.findActiveCredentialsByEmail("test@example.com")).thenReturn(Optional.of(testCredentials));
+        when(passwordHashingService.matches(anyString(), anyString())).thenReturn(true);
+
+        // When
+        authService.login(authenticateRq, "10.0.0.1", "test-agent");
+
+        // Then
+        verify(userRepository).findActiveCredentialsByEmail("test@example.com");
+    }
+
+    @Test
+    void testRegister_withMixedCaseEmail_shouldStoreCanonicalEmail() {
+        // Given
+        registrationDto.setEmail("New.User@Example.COM");
+        when(captchaService.validate(anyString(), anyString())).thenReturn(true);
+        when(passwordHashingService.encode(anyString())).thenReturn("encodedPassword");
+        when(userRepository.insertIfAbsent(any(UUID.class), anyString(), anyString(), anyString(), anyString(),
+                any(LocalDateTime.class))).thenReturn(1);
+
+        // When
+        authService.register(registrationDto);
+
+        // Then
+        verify(userRepository).insertIfAbsent(any(UUID.class), eq("new.user@example.com"), anyString(), anyString(),
+                anyString(), any(LocalDateTime.class));
     }
 
     @Test
     void testLogin_withInvalidEmail_shouldThrowException() {
         // Given
-        when(userRepository.findActiveUserByEmail(anyString())).thenReturn(Optional.empty());
+        when(userRepository.findActiveCredentialsByEmail(anyString())).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(InvalidCredentialsException.class, () -> {
-            authService.login(authenticateRq);
+            authService.login(authenticateRq, "10.0.0.1", "test-agent");
         });
     }
 
+    @Test
+    void testLogin_withInvalidEmail_shouldRememberUnknownEmail() {
+        // Given
+        when(userRepository.findActiveCredentialsByEmail(anyString())).thenReturn(Optional.empty());
+
+        // When
+        assertThrows(InvalidCredentialsException.class, () -> authService.login(authenticateRq, "10.0.0.1", "test-agent"));
+
+        // Then
+        verify(unknownEmailCache).markAbsent("test@example.com");
+        verify(passwordHashingService).matchDummy("password123");
+    }
+
+    @Test
+    void testLogin_withKnownAbsentEmail_shouldNotQueryDatabase() {
+        // Given
+        when(unknownEmailCache.isKnownAbsent("test@example.com")).thenReturn(true);
+
+        // When & Then
+        assertThrows(InvalidCredentialsException.class, () -> authService.login(authenticateRq, "10.0.0.1", "test-agent"));
+        verify(userRepository, never()).findActiveCredentialsByEmail(anyString());
+        verify(passwordHashingService).matchDummy("password123");
+    }
+
+    @Test
+    void testLogin_whenCaptchaRequiredAndMissing_shouldRejectBeforeDatabase() {
+        // Given
+        when(credentialStuffingDetector.isCaptchaRequired("10.0.0.1", "test@example.com")).thenReturn(true);
+
+        // When & Then
+        assertThrows(CaptchaRequiredException.class, () -> authService.login(authenticateRq, "10.0.0.1", "test-agent"));
+        verify(userRepository, never()).findActiveCredentialsByEmail(anyString());
+        verify(credentialStuffingDetector).recordAttempt("10.0.0.1", "test@example.com", false);
+    }
+
+    @Test
+    void testLogin_whenCaptchaRequiredAndSolved_shouldAuthenticate() {
+        // Given
+        authenticateRq.setCaptchaSecret("captcha-id");
+        authenticateRq.setCaptchaCode("ABC123");
+        when(credentialStuffingDetector.isCaptchaRequired("10.0.0.1", "test@example.com")).thenReturn(true);
+        when(captchaService.validate("captcha-id", "ABC123")).thenReturn(true);
+        when(userRepository.findActiveCredentialsByEmail(anyString())).thenReturn(Optional.of(testCredentials));
+        when(passwordHashingService.matches(anyString(), anyString())).thenReturn(true);
+        when(jwtService.generateAccessToken(testUser.getId(), testUser.getEmail())).thenReturn("accessToken");
+        when(jwtService.generateRefreshToken(testUser.getId(), testUser.getEmail())).thenReturn("refreshToken");
+
+        // When
+        TokenResponse response = authService.login(authenticateRq, "10.0.0.1", "test-agent");
+
+        // Then
+        assertEquals("accessToken", response.getAccessToken());
+        verify(credentialStuffingDetector).recordAttempt("10.0.0.1", "test@example.com", true);
+    }
+
     @Test
     void testLogin_withInvalidPassword_shouldThrowException() {
         // Given
-        when(userRepository.findActiveUserByEmail(anyString())).thenReturn(Optional.of(testUser));
-        when(passwordEncoder.matches(anyString(), anyString())).thenReturn(false);
+        when(userRepository.findActiveCredentialsByEmail(anyString())).thenReturn(Optional.of(testCredentials));
+        when(passwordHashingService.matches(anyString(), anyString())).thenReturn(false);
 
         // When & Then
         assertThrows(InvalidCredentialsException.class, () -> {
-            authService.login(authenticateRq);
+            authService.login(authenticateRq, "10.0.0.1", "test-agent");
         });
     }
 
@@ -198,11 +362,8 @@ class AuthServiceTest {
                 .build();
         
         when(tokenBlacklistService.isTokenBlacklisted(anyString())).thenReturn(false);
-        
-        io.jsonwebtoken.Claims claims = mock(io.jsonwebtoken.Claims.class);
-        when(claims.get("userId", String.class)).thenReturn(testUser.getId().toString());
-        when(claims.get("email", String.class)).thenReturn(testUser.getEmail());
-        when(jwtService.validateAndExtractClaims(anyString())).thenReturn(claims);
+        when(jwtService.verify("validToken")).thenReturn(
+                new JwtService.TokenClaims(testUser.getId(), testUser.getEmail(), testUser.getEmail(), "jti", 0, Long.MAX_VALUE));
 
         // When
         ValidationResponse response = authService.validateToken(request);
@@ -213,6 +374,71 @@ class AuthServiceTest {
         assertEquals(testUser.getEmail(), response.getEmail());
     }
 
+    @Test
+    void testValidateToken_issuedBeforeUserRevocation_shouldBeInvalidWithoutRedis() {
+        // Given
+        when(jwtService.verify("oldToken")).thenReturn(
+                new JwtService.TokenClaims(testUser.getId(), testUser.getEmail(), testUser.getEmail(), "jti", 100, Long.MAX_VALUE));
+        when(tokenBlacklistService.isUserRevoked(testUser.getId(), 100000)).thenReturn(true);
+
+        // When
+        ValidationResponse response = authService.validateToken(ValidateTokenRequest.builder().token("oldToken").build());
+
+        // Then
+        assertFalse(response.isValid());
+        verify(tokenBlacklistService, never()).isTokenBlacklisted(anyString());
+    }
+
+    @Test
+    void testValidateToken_withRefreshToken_shouldBeInvalid() {
+        // Given: у refresh токена нет claim email
+        when(jwtService.verify("refreshToken")).thenReturn(
+                new JwtService.TokenClaims(testUser.getId(), null, testUser.getEmail(), "jti", 0, Long.MAX_VALUE));
+
+        // When
+        ValidationResponse response = authService.validateToken(ValidateTokenRequest.builder().token("refreshToken").build());
+
+        // Then
+        assertFalse(response.isValid());
+    }
+
+    @Test
+    void testAuthenticate_withRevokedToken_shouldThrowException() {
+        // Given
+        when(jwtService.verify("loggedOutToken")).thenReturn(
+                new JwtService.TokenClaims(testUser.getId(), testUser.getEmail(), testUser.getEmail(), "jti", 0, Long.MAX_VALUE));
+        when(tokenBlacklistService.isTokenBlacklisted("loggedOutToken")).thenReturn(true);
+
+        // When & Then
+        assertThrows(InvalidTokenException.class, () -> authService.authenticate("loggedOutToken"));
+    }
+
+    @Test
+    void testAuthenticate_withValidToken_shouldReturnUserId() {
+        // Given
+        when(jwtService.verify("validToken")).thenReturn(
+                new JwtService.TokenClaims(testUser.getId(), testUser.getEmail(), testUser.getEmail(), "jti", 0, Long.MAX_VALUE));
+
+        // When & Then
+        assertEquals(testUser.getId(), authService.authenticate("validToken"));
+    }
+
+    @Test
+    void testIntrospect_withBlacklistedToken_shouldReturnOnlyInactive() {
+        // Given
+        when(jwtService.verify("revokedToken")).thenReturn(
+                new JwtService.TokenClaims(testUser.getId(), testUser.getEmail(), testUser.getEmail(), "jti", 0, Long.MAX_VALUE));
+        when(tokenBlacklistService.isTokenBlacklisted("revokedToken")).thenReturn(true);
+
+        // When
+        IntrospectionResponse response = authService.introspect("revokedToken");
+
+        // Then
+        assertFalse(response.isActive());
+        assertNull(response.getUserId());
+        assertNull(response.getJti());
+    }
+
     @Test
     void testValidateToken_withInvalidToken_shouldReturnInvalidResponse() {
         // Given
@@ -220,14 +446,75 @@ class AuthServiceTest {
                 .token("invalidToken")
                 .build();
         
-        when(tokenBlacklistService.isTokenBlacklisted(anyString())).thenReturn(false);
-        when(jwtService.validateAndExtractClaims(anyString())).thenThrow(new InvalidTokenException("Invalid token"));
+        when(jwtService.verify("invalidToken")).thenReturn(null);
 
         // When
         ValidationResponse response = authService.validateToken(request);
 
         // Then
         assertFalse(response.isValid());
+        // Невалидная подпись отсекается до похода в Redis
+        verifyNoInteractions(tokenBlacklistService);
+    }
+
+    @Test
+    void testValidateToken_withOpaqueToken_shouldResolveWithoutJwt() {
+        // Given
+        String opaqueToken = "q7Xj0pX2b9yV3kLmN4oPqA";
+        when(opaqueTokenService.resolve(opaqueToken)).thenReturn(Optional.of(
+                new OpaqueTokenService.OpaqueTokenState(testUser.getId(), testUser.getEmail(), 100_000, Long.MAX_VALUE)));
+
+        // When
+        ValidationResponse response = authService.validateToken(ValidateTokenRequest.builder().token(opaqueToken).build());
+
+        // Then
+        assertTrue(response.isValid());
+        assertEquals(testUser.getId(), response.getUserId());
+        verifyNoInteractions(jwtService);
+        verify(tokenBlacklistService, never()).isTokenBlacklisted(anyString());
+    }
+
+    @Test
+    void testValidateToken_opaqueTokenIssuedBeforeUserRevocation_shouldBeInvalid() {
+        // Given: revokeAll не смог удалить состояние из Redis, но эпоха пользователя уже известна
+        String opaqueToken = "q7Xj0pX2b9yV3kLmN4oPqA";
+        when(opaqueTokenService.resolve(opaqueToken)).thenReturn(Optional.of(
+                new OpaqueTokenService.OpaqueTokenState(testUser.getId(), testUser.getEmail(), 100_000, Long.MAX_VALUE)));
+        when(tokenBlacklistService.isUserRevoked(testUser.getId(), 100_000)).thenReturn(true);
+
+        // When
+        ValidationResponse response = authService.validateToken(ValidateTokenRequest.builder().token(opaqueToken).build());
+
+        // Then
+        assertFalse(response.isValid());
+    }
+
+    @Test
+    void testIssueOpaqueToken_shouldBoundLifetimeByJwtExpiry() {
+        // Given
+        when(tokenBlacklistService.isTokenBlacklisted("access.jwt.token")).thenReturn(false);
+        when(jwtService.verify("access.jwt.token")).thenReturn(
+                new JwtService.TokenClaims(testUser.getId(), testUser.getEmail(), testUser.getId().toString(), "jti", 0, 1_000));
+        when(opaqueTokenService.issue(testUser.getId(), testUser.getEmail(), 0L, 1_000_000L))
+                .thenReturn(new OpaqueTokenService.IssuedToken("q7Xj0pX2b9yV3kLmN4oPqA", 7));
+
+        // When
+        OpaqueTokenResponse response = authService.issueOpaqueToken("access.jwt.token");
+
+        // Then: expiresIn совпадает со сроком, который получил токен
+        assertEquals("q7Xj0pX2b9yV3kLmN4oPqA", response.getAccessToken());
+        assertEquals(7, response.getExpiresIn());
+    }
+
+    @Test
+    void testIssueOpaqueToken_withRefreshToken_shouldThrowException() {
+        // Given
+        when(jwtService.verify("refresh.jwt.token")).thenReturn(
+                new JwtService.TokenClaims(testUser.getId(), null, testUser.getEmail(), "jti", 0, Long.MAX_VALUE));
+
+        // When & Then
+        assertThrows(InvalidTokenException.class, () -> authService.issueOpaqueToken("refresh.jwt.token"));
+        verify(opaqueTokenService, never()).issue(any(), any(), anyLong(), anyLong());
     }
 
     @Test
@@ -236,16 +523,14 @@ class AuthServiceTest {
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken("validRefreshToken");
 
-        RefreshToken refreshToken = RefreshToken.builder()
-                .token("validRefreshToken")
-                .user(testUser)
-                .expiresAt(LocalDateTime.now().plusDays(1))
-                .isRevoked(false)
-                .build();
+        RefreshTokenState refreshToken = new RefreshTokenState(UUID.randomUUID(), testUser.getId(), LocalDateTime.now().plusDays(1), false);
 
-        when(refreshTokenRepository.findByToken(anyString())).thenReturn(Optional.of(refreshToken));
-        when(jwtService.validateAndExtractClaims(anyString())).thenReturn(mock(io.jsonwebtoken.Claims.class));
-        when(jwtService.generateAccessToken(any(User.class))).thenReturn("newAccessToken");
+        when(refreshTokenRepository.findStateByToken(anyString())).thenReturn(Optional.of(refreshToken));
+        when(jwtService.verify(anyString())).thenReturn(
+                new JwtService.TokenClaims(testUser.getId(), null, testUser.getEmail(), "jti", 0, Long.MAX_VALUE));
+        when(userAuthCache.get(testUser.getId())).thenReturn(Optional.of(
+                new UserAuthView(testUser.getId(), testUser.getEmail(), false)));
+        when(jwtService.generateAccessToken(testUser.getId(), testUser.getEmail())).thenReturn("newAccessToken");
 
         // When
         TokenResponse response = authService.refreshAccessToken(request);
@@ -256,20 +541,34 @@ class AuthServiceTest {
         assertEquals("validRefreshToken", response.getRefreshToken());
     }
 
+    @Test
+    void testRefreshAccessToken_forDeletedUser_shouldThrowException() {
+        // Given
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken("validRefreshToken");
+
+        RefreshTokenState refreshToken = new RefreshTokenState(UUID.randomUUID(), testUser.getId(), LocalDateTime.now().plusDays(1), false);
+
+        when(refreshTokenRepository.findStateByToken(anyString())).thenReturn(Optional.of(refreshToken));
+        when(jwtService.verify(anyString())).thenReturn(
+                new JwtService.TokenClaims(testUser.getId(), null, testUser.getEmail(), "jti", 0, Long.MAX_VALUE));
+        when(userAuthCache.get(testUser.getId())).thenReturn(Optional.of(
+                new UserAuthView(testUser.getId(), testUser.getEmail(), true)));
+
+        // When & Then
+        assertThrows(InvalidTokenException.class, () -> authService.refreshAccessToken(request));
+        verify(jwtService, never()).generateAccessToken(any(UUID.class), anyString());
+    }
+
     @Test
     void testRefreshAccessToken_withRevokedToken_shouldThrowException() {
         // Given
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken("revokedToken");
 
-        RefreshToken refreshToken = RefreshToken.builder()
-                .token("revokedToken")
-                .user(testUser)
-                .expiresAt(LocalDateTime.now().plusDays(1))
-                .isRevoked(true)
-                .build();
+        RefreshTokenState refreshToken = new RefreshTokenState(UUID.randomUUID(), testUser.getId(), LocalDateTime.now().plusDays(1), true);
 
-        when(refreshTokenRepository.findByToken(anyString())).thenReturn(Optional.of(refreshToken));
+        when(refreshTokenRepository.findStateByToken(anyString())).thenReturn(Optional.of(refreshToken));
 
         // When & Then
         assertThrows(InvalidCredentialsException.class, () -> {
@@ -283,14 +582,9 @@ class AuthServiceTest {
         RefreshTokenRequest request = new RefreshTokenRequest();
         request.setRefreshToken("expiredToken");
 
-        RefreshToken refreshToken = RefreshToken.builder()
-                .token("expiredToken")
-                .user(testUser)
-                .expiresAt(LocalDateTime.now().minusDays(1))
-                .isRevoked(false)
-                .build();
+        RefreshTokenState refreshToken = new RefreshTokenState(UUID.randomUUID(), testUser.getId(), LocalDateTime.now().minusDays(1), false);
 
-        when(refreshTokenRepository.findByToken(anyString())).thenReturn(Optional.of(refreshToken));
+        when(refreshTokenRepository.findStateByToken(anyString())).thenReturn(Optional.of(refreshToken));
 
         // When & Then
         assertThrows(InvalidTokenException.class, () -> {
@@ -298,6 +592,93 @@ class AuthServiceTest {
         });
     }
 
+    @Test
+    void testChangePassword_shouldConsumeTokenAndUpdatePassword() {
+        // Given
+        ConsumedPasswordResetToken consumed = mock(ConsumedPasswordResetToken.class);
+        when(consumed.getUserId()).thenReturn(testUser.getId());
+        when(passwordResetTokenRepository.consume(eq("reset-token"), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(consumed));
+        when(passwordHashingService.encode("newPassword")).thenReturn("newHash");
+
+        ChangePasswordRequest request = new ChangePasswordRequest();
+        request.setToken("reset-token");
+        request.setNewPassword("newPassword");
+
+        // When
+        authService.changePassword(request);
+
+        // Then
+        verify(userRepository).updatePassword(eq(testUser.getId()), eq("newHash"), any(LocalDateTime.class));
+        verify(refreshTokenRepository).revokeAllUserTokens(testUser.getId());
+        verify(userAuthCache).invalidate(testUser.getId());
+        verify(userRepository, never()).save(any(User.class));
+        verify(kafkaProducerService).sendRevocationEvent(argThat(event -> event.getUserId().equals(testUser.getId())
+                && event.getReason() == RevocationEvent.Reason.PASSWORD_CHANGE));
+    }
+
+    @Test
+    void testChangePassword_shouldHashBeforeTransactionAndInvalidateAfterCommit() {
+        // Given
+        ConsumedPasswordResetToken consumed = mock(ConsumedPasswordResetToken.class);
+        when(consumed.getUserId()).thenReturn(testUser.getId());
+        when(passwordResetTokenRepository.consume(eq("reset-token"), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(consumed));
+        when(passwordHashingService.encode("newPassword")).thenReturn("newHash");
+
+        ChangePasswordRequest request = new ChangePasswordRequest();
+        request.setToken("reset-token");
+        request.setNewPassword("newPassword");
+
+        // When
+        authService.changePassword(request);
+
+        // Then
+        InOrder inOrder = inOrder(passwordHashingService, transactionTemplate, userRepository, userAuthCache);
+        inOrder.verify(passwordHashingService).encode("newPassword");
+        inOrder.verify(transactionTemplate).execute(any());
+        inOrder.verify(userRepository).updatePassword(eq(testUser.getId()), eq("newHash"), any(LocalDateTime.class));
+        inOrder.verify(userAuthCache).invalidate(testUser.getId());
+    }
+
+    @Test
+    void testChangePassword_withUsedOrExpiredToken_shouldThrowException() {
+        // Given
+        when(passwordResetTokenRepository.consume(eq("reset-token"), any(LocalDateTime.class)))
+                .thenReturn(Optional.empty());
+
+        ChangePasswordRequest request = new ChangePasswordRequest();
+        request.setToken("reset-token");
+        request.setNewPassword("newPassword");
+
+        // When & Then
+        assertThrows(InvalidTokenException.class, () -> authService.changePassword(request));
+        verify(userRepository, never()).updatePassword(any(), anyString(), any());
+        verify(refreshTokenRepository, never()).revokeAllUserTokens(any());
+    }
+
+    @Test
+    void testConfirmEmailChange_shouldConsumeTokenAndUpdateEmail() {
+        // Given
+        ConsumedEmailChangeToken consumed = mock(ConsumedEmailChangeToken.class);
+        when(consumed.getUserId()).thenReturn(testUser.getId());
+        when(consumed.getNewEmail()).thenReturn("new@example.com");
+        when(emailChangeTokenRepository.consume(eq("change-token"), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(consumed));
+        when(userRepository.existsByEmail("new@example.com")).thenReturn(false);
+
+        // When
+        authService.confirmEmailChange(ConfirmEmailChangeRequest.builder().token("change-token").build());
+
+        // Then
+        verify(userRepository).updateEmail(eq(testUser.getId()), eq("new@example.com"), any(LocalDateTime.class));
+        verify(kafkaProducerService).sendAccountChangedEvent(any());
+        verify(userAuthCache).invalidate(testUser.getId());
+        verify(userRepository, never()).save(any(User.class));
+        verify(kafkaProducerService).sendRevocationEvent(argThat(event -> event.getUserId().equals(testUser.getId())
+                && event.getReason() == RevocationEvent.Reason.EMAIL_CHANGE));
+    }
+
     @Test
     void testLogout_shouldRevokeAllUserTokens() {
         // Given
@@ -310,5 +691,52 @@ class AuthServiceTest {
         // Then
         assertEquals("Logout successful", result);
         verify(refreshTokenRepository).revokeAllUserTokens(userId);
+        verify(sessionRegistry).removeAll(userId);
+        verify(tokenBlacklistService).revokeUser(userId);
+        verify(kafkaProducerService).sendRevocationEvent(argThat(event -> event.getUserId().equals(userId)
+                && event.getReason() == RevocationEvent.Reason.LOGOUT));
+    }
+
+    @Test
+    void testRevokeSession_shouldRevokeOnlyThatSessionToken() {
+        // Given
+        UUID userId = testUser.getId();
+        SessionRegistry.SessionInfo session = new SessionRegistry.SessionInfo("session-1", "refreshToken",
+                LocalDateTime.now(), LocalDateTime.now().plusDays(30), "10.0.0.1", "test-agent");
+        when(sessionRegistry.remove(userId, "session-1")).thenReturn(Optional.of(session));
+
+        // When
+        String result = authService.revokeSession(userId, "session-1");
+
+        // Then
+        assertEquals("Session revoked", result);
+        verify(refreshTokenWriteBehind).markTokenRevoked("refreshToken");
+        verify(refreshTokenRepository).revokeTokens(List.of("refreshToken"));
+        verify(refreshTokenRepository, never()).revokeAllUserTokens(any());
+    }
+
+    @Test
+    void testRevokeSession_unknownSession_shouldThrowException() {
+        // Given
+        when(sessionRegistry.remove(testUser.getId(), "other")).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThrows(SessionNotFoundException.class, () -> authService.revokeSession(testUser.getId(), "other"));
+        verify(refreshTokenRepository, never()).revokeTokens(any());
+    }
+
+    @Test
+    void testSendPasswordRecoveryLink_shouldAnswerWithoutLookingUpEmail() {
+        // Given
+        RecoveryPasswordLinkRq request = new RecoveryPasswordLinkRq();
+        request.setEmail(" Ghost@Example.com ");
+
+        // When
+        String result = authService.sendPasswordRecoveryLink(request);
+
+        // Then: ответ не зависит от того, есть ли такой пользователь
+        assertEquals("Password recovery link sent", result);
+        verify(passwordRecoveryService).requestLink("ghost@example.com");
+        verifyNoInteractions(userRepository, unknownEmailCache, passwordResetTokenRepository, emailService);
     }
 }
@@ -0,0 +1,68 @@
+package com.socialnetwork.auth.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaptchaImageRendererTest {
+
+    private CaptchaImageRenderer renderer;
+
+    @BeforeEach
+    void setUp() {
+        renderer = new CaptchaImageRenderer();
+    }
+
+    @Test
+    void testRender_shouldProduceDecodablePng() throws Exception {
+        // When
+        String image = renderer.render("ABC123");
+
+        // Then
+        assertTrue(image.startsWith("data:image/png;base64,"));
+        BufferedImage decoded = decode(image);
+        assertNotNull(decoded);
+        assertEquals(CaptchaImageRenderer.WIDTH, decoded.getWidth());
+        assertEquals(CaptchaImageRenderer.HEIGHT, decoded.getHeight());
+    }
+
+    @Test
+    void testRender_shouldDrawGlyphs() throws Exception {
+        // When
+        BufferedImage decoded = decode(renderer.render("WXYZ09"));
+
+        // Then: шум рисуется серым (0x80), символы — почти чёрным
+        int darkPixels = 0;
+        for (int y = 0; y < decoded.getHeight(); y++) {
+            for (int x = 0; x < decoded.getWidth(); x++) {
+                if ((decoded.getRGB(x, y) & 0xFF) < 0x40) {
+                    darkPixels++;
+                }
+            }
+        }
+        assertTrue(darkPixels > 200, "Expected glyph pixels on the image, got " + darkPixels);
+    }
+
+    @Test
+    void testRender_consecutiveCallsProduceIndependentImages() throws Exception {
+        // When: буферы потока переиспользуются между вызовами
+        String first = renderer.render("MMMMMM");
+        String second = renderer.render("MMMMMM");
+
+        // Then: оба изображения корректны, искажения случайны
+        assertNotNull(decode(first));
+        assertNotNull(decode(second));
+        assertNotEquals(first, second);
+    }
+
+    private static BufferedImage decode(String dataUri) throws Exception {
+        byte[] png = Base64.getDecoder().decode(dataUri.substring("data:image/png;base64,".length()));
+        return ImageIO.read(new ByteArrayInputStream(png));
+    }
+}
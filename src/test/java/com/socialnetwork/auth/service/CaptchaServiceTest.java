@@ -1,15 +1,20 @@
 package com.socialnetwork.auth.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.socialnetwork.auth.dto.response.CaptchaDto;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -29,8 +34,11 @@ class CaptchaServiceTest {
 
     @BeforeEach
     void setUp() {
-        captchaService = new CaptchaService(redisTemplate);
-        ReflectionTestUtils.setField(captchaService, "captchaTtlSeconds", 300L);
+        // Склейка выключена: команды идут прямо в мок RedisTemplate
+        RedisCommandBatcher batcher = new RedisCommandBatcher(redisTemplate, new SimpleMeterRegistry(),
+                false, 0, 1, 1, 1000);
+        captchaService = new CaptchaService(redisTemplate, batcher, CircuitBreaker.ofDefaults("redis"),
+                new CaptchaImageRenderer(), 300L);
     }
 
     @Test
@@ -45,92 +53,125 @@ class CaptchaServiceTest {
         // Then
         assertNotNull(result);
         assertNotNull(result.getSecret());
-        assertEquals(6, result.getSecret().length());
+        assertDoesNotThrow(() -> UUID.fromString(result.getSecret()));
         assertNotNull(result.getImage());
         assertTrue(result.getImage().startsWith("data:image/png;base64,"));
-        
-        // Verify Redis was called with correct prefix and TTL
+
+        // Verify Redis was called with the opaque id as key and the code as value
         verify(redisTemplate).opsForValue();
         verify(valueOperations).set(
-            "captcha:" + result.getSecret(),
-            "1",
-            300L,
-            TimeUnit.SECONDS
+            eq("captcha:" + result.getSecret()),
+            matches("[A-Z0-9]{6}"),
+            eq(300L),
+            eq(TimeUnit.SECONDS)
         );
     }
 
     @Test
     void testValidate_withValidCaptchaCode_shouldReturnTrue() {
         // Given
-        String captchaCode = "ABC123";
-        when(redisTemplate.delete("captcha:" + captchaCode)).thenReturn(true);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.getAndDelete("captcha:secret-id")).thenReturn("ABC123");
 
         // When
-        boolean result = captchaService.validate(captchaCode);
+        boolean result = captchaService.validate("secret-id", "ABC123");
 
         // Then
         assertTrue(result);
-        verify(redisTemplate).delete("captcha:" + captchaCode);
+        verify(valueOperations).getAndDelete("captcha:secret-id");
     }
 
     @Test
     void testValidate_withInvalidCaptchaCode_shouldReturnFalse() {
         // Given
-        String captchaCode = "INVALID";
-        when(redisTemplate.delete("captcha:" + captchaCode)).thenReturn(false);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.getAndDelete("captcha:secret-id")).thenReturn("ABC123");
+
+        // When
+        boolean result = captchaService.validate("secret-id", "XYZ789");
+
+        // Then
+        assertFalse(result);
+    }
+
+    @Test
+    void testValidate_withCodeOfAnotherCaptcha_shouldReturnFalse() {
+        // Given: код верный, но принадлежит другой капче
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.getAndDelete("captcha:other-id")).thenReturn(null);
 
         // When
-        boolean result = captchaService.validate(captchaCode);
+        boolean result = captchaService.validate("other-id", "ABC123");
 
         // Then
         assertFalse(result);
-        verify(redisTemplate).delete("captcha:" + captchaCode);
     }
 
     @Test
     void testValidate_withNullCode_shouldReturnFalse() {
         // When
-        boolean result = captchaService.validate(null);
+        boolean result = captchaService.validate("secret-id", null);
 
         // Then
         assertFalse(result);
-        verify(redisTemplate, never()).delete(anyString());
+        verify(redisTemplate, never()).opsForValue();
     }
 
     @Test
-    void testValidate_withEmptyCode_shouldReturnFalse() {
+    void testValidate_withEmptySecret_shouldReturnFalse() {
         // When
-        boolean result = captchaService.validate("");
+        boolean result = captchaService.validate("", "ABC123");
 
         // Then
         assertFalse(result);
-        verify(redisTemplate, never()).delete(anyString());
+        verify(redisTemplate, never()).opsForValue();
     }
 
     @Test
-    void testValidate_whenRedisReturnsNull_shouldReturnFalse() {
+    void testValidate_isCaseInsensitive() {
         // Given
-        String captchaCode = "CODE123";
-        when(redisTemplate.delete("captcha:" + captchaCode)).thenReturn(null);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.getAndDelete("captcha:secret-id")).thenReturn("ABC123");
 
         // When
-        boolean result = captchaService.validate(captchaCode);
+        boolean result = captchaService.validate("secret-id", "abc123");
 
         // Then
-        assertFalse(result);
+        assertTrue(result);
     }
 
     @Test
-    void testGenerateCaptcha_secretContainsOnlyAllowedCharacters() {
+    void testGenerateCaptcha_codeContainsOnlyAllowedCharacters() {
         // Given
         when(redisTemplate.opsForValue()).thenReturn(valueOperations);
         doNothing().when(valueOperations).set(anyString(), anyString(), anyLong(), any(TimeUnit.class));
 
         // When
-        CaptchaDto result = captchaService.generateCaptcha();
+        captchaService.generateCaptcha();
 
         // Then
-        String secret = result.getSecret();
-        assertTrue(secret.matches("[A-Z0-9]+"), "Secret should contain only uppercase letters and digits");
+        verify(valueOperations).set(anyString(), matches("[A-Z0-9]+"), anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRedisUnavailable_shouldIssueAndValidateCaptchaLocally() {
+        // Given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        doThrow(new RedisConnectionFailureException("down"))
+                .when(valueOperations).set(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+        CaptchaDto captcha = captchaService.generateCaptcha();
+        Cache<String, String> localCaptchas = (Cache<String, String>) ReflectionTestUtils.getField(captchaService, "localCaptchas");
+        String code = localCaptchas.getIfPresent(captcha.getSecret());
+
+        // When
+        boolean valid = captchaService.validate(captcha.getSecret(), code);
+        boolean reused = captchaService.validate(captcha.getSecret(), code);
+
+        // Then — капча одноразовая и без Redis
+        assertTrue(valid);
+        assertFalse(reused);
+        // В Redis ушла только повторная проверка
+        verify(valueOperations, times(1)).getAndDelete("captcha:" + captcha.getSecret());
     }
 }
@@ -0,0 +1,140 @@
+package com.socialnetwork.auth.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CredentialStuffingDetectorTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    private CredentialStuffingDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        detector = new CredentialStuffingDetector(redisTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(detector, "enabled", true);
+        ReflectionTestUtils.setField(detector, "windowSeconds", 300L);
+        ReflectionTestUtils.setField(detector, "ipMaxFailures", 30L);
+        ReflectionTestUtils.setField(detector, "ipMaxDistinctEmails", 10L);
+        ReflectionTestUtils.setField(detector, "emailMaxFailures", 10L);
+        ReflectionTestUtils.setField(detector, "emailMaxDistinctIps", 5L);
+        ReflectionTestUtils.setField(detector, "globalMinAttempts", 200L);
+        ReflectionTestUtils.setField(detector, "globalMaxFailureRatio", 0.5);
+    }
+
+    @Test
+    void testIsCaptchaRequired_normalTraffic_shouldNotRequireCaptcha() {
+        // Given
+        for (int i = 0; i < 1000; i++) {
+            detector.recordAttempt("10.0." + (i / 250) + "." + (i % 250), "user" + i + "@example.com", i % 10 != 0);
+        }
+
+        // When & Then
+        assertFalse(detector.isCaptchaRequired("10.0.0.1", "user1@example.com"));
+    }
+
+    @Test
+    void testIsCaptchaRequired_oneIpManyEmails_shouldFlagIp() {
+        // Given
+        for (int i = 0; i < 15; i++) {
+            detector.recordAttempt("203.0.113.7", "victim" + i + "@example.com", false);
+        }
+
+        // When & Then
+        assertTrue(detector.isCaptchaRequired("203.0.113.7", "someone@example.com"));
+        assertFalse(detector.isCaptchaRequired("198.51.100.1", "someone@example.com"));
+    }
+
+    @Test
+    void testIsCaptchaRequired_manyIpsOneEmail_shouldFlagEmail() {
+        // Given
+        for (int i = 0; i < 8; i++) {
+            detector.recordAttempt("198.51.100." + i, "Victim@Example.com", false);
+        }
+
+        // When & Then
+        assertTrue(detector.isCaptchaRequired("192.0.2.1", "victim@example.com"));
+        assertFalse(detector.isCaptchaRequired("192.0.2.1", "other@example.com"));
+    }
+
+    @Test
+    void testIsCaptchaRequired_highGlobalFailureRatio_shouldRequireCaptchaForEveryone() {
+        // Given: распределённая атака, каждый IP пробует один email
+        for (int i = 0; i < 300; i++) {
+            detector.recordAttempt("100.64." + (i / 200) + "." + (i % 200), "user" + i + "@example.com", false);
+        }
+
+        // When & Then
+        assertTrue(detector.isCaptchaRequired("192.0.2.1", "fresh@example.com"));
+    }
+
+    @Test
+    void testMergeWithRedis_shouldSeeFailuresFromOtherInstances() {
+        // Given: сводка другого экземпляра уже лежит в Redis
+        LoginAttemptSketch other = new LoginAttemptSketch();
+        for (int i = 0; i < 15; i++) {
+            other.recordFailure("203.0.113.7", "victim" + i + "@example.com");
+        }
+        String payload = Base64.getEncoder().encodeToString(other.toBytes());
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries(anyString())).thenReturn(Map.of("other-instance", payload));
+
+        assertFalse(detector.isCaptchaRequired("203.0.113.7", "someone@example.com"));
+
+        // When
+        detector.mergeWithRedis();
+
+        // Then
+        verify(hashOperations).put(startsWith("stuffing:sketch:"), anyString(), anyString());
+        assertTrue(detector.isCaptchaRequired("203.0.113.7", "someone@example.com"));
+    }
+
+    @Test
+    void testSketch_distinctEstimateAndRoundTrip() {
+        // Given
+        LoginAttemptSketch sketch = new LoginAttemptSketch();
+        for (int i = 0; i < 50; i++) {
+            sketch.recordFailure("203.0.113.7", "victim" + i + "@example.com");
+        }
+
+        // When
+        LoginAttemptSketch restored = LoginAttemptSketch.fromBytes(sketch.toBytes());
+
+        // Then
+        long distinct = LoginAttemptSketch.estimateDistinctEmails("203.0.113.7", restored);
+        assertTrue(distinct >= 35 && distinct <= 70, "estimate was " + distinct);
+        assertTrue(LoginAttemptSketch.estimateFailures("203.0.113.7", LoginAttemptSketch.SEED_IP, restored) >= 50);
+        assertEquals(50, restored.failures());
+    }
+
+    @Test
+    void testDisabled_shouldNeverRequireCaptcha() {
+        // Given
+        ReflectionTestUtils.setField(detector, "enabled", false);
+        for (int i = 0; i < 50; i++) {
+            detector.recordAttempt("203.0.113.7", "victim" + i + "@example.com", false);
+        }
+
+        // When & Then
+        assertFalse(detector.isCaptchaRequired("203.0.113.7", "victim1@example.com"));
+    }
+}
@@ -0,0 +1,54 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.exception.ClientAuthenticationException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntrospectionClientAuthenticatorTest {
+
+    private final IntrospectionClientAuthenticator authenticator =
+            new IntrospectionClientAuthenticator(List.of("gateway:s3cret", "posts:other%secret"));
+
+    @Test
+    void testAuthenticate_withValidBasicCredentials_shouldReturnClientId() {
+        // When & Then
+        assertEquals("gateway", authenticator.authenticate(basic("gateway", "s3cret")));
+        // Секрет в заголовке form-urlencoded по RFC 6749: %25 — это '%'
+        assertEquals("posts", authenticator.authenticate(basic("posts", "other%25secret")));
+    }
+
+    @Test
+    void testAuthenticate_withWrongSecretOrUnknownClient_shouldThrowException() {
+        // When & Then
+        assertThrows(ClientAuthenticationException.class, () -> authenticator.authenticate(basic("gateway", "wrong")));
+        assertThrows(ClientAuthenticationException.class, () -> authenticator.authenticate(basic("unknown", "s3cret")));
+    }
+
+    @Test
+    void testAuthenticate_withMissingOrMalformedHeader_shouldThrowException() {
+        // When & Then
+        assertThrows(ClientAuthenticationException.class, () -> authenticator.authenticate(null));
+        assertThrows(ClientAuthenticationException.class, () -> authenticator.authenticate("Bearer eyJhbGciOiJIUzI1NiJ9"));
+        assertThrows(ClientAuthenticationException.class, () -> authenticator.authenticate("Basic not-base64!"));
+        assertThrows(ClientAuthenticationException.class, () -> authenticator.authenticate(
+                "Basic " + Base64.getEncoder().encodeToString("gateway".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void testAuthenticate_withoutConfiguredClients_shouldRejectEveryone() {
+        // Given
+        IntrospectionClientAuthenticator empty = new IntrospectionClientAuthenticator(List.of());
+
+        // When & Then
+        assertThrows(ClientAuthenticationException.class, () -> empty.authenticate(basic("gateway", "s3cret")));
+    }
+
+    private static String basic(String clientId, String secret) {
+        return "Basic " + Base64.getEncoder().encodeToString((clientId + ":" + secret).getBytes(StandardCharsets.UTF_8));
+    }
+}
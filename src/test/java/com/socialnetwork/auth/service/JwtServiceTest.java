@@ -1,28 +1,52 @@
 package com.socialnetwork.auth.service;
 
+import com.socialnetwork.auth.client.JwtVerifier;
+import com.socialnetwork.auth.client.KeyProvider;
+import com.socialnetwork.auth.dto.response.JwkDto;
 import com.socialnetwork.auth.entity.User;
 import com.socialnetwork.auth.exception.InvalidTokenException;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class JwtServiceTest {
 
+    private static final KeyPair KEY_PAIR = generateKeyPair();
+
     private JwtService jwtService;
 
+    private String keyId;
+
     private User testUser;
 
     @BeforeEach
     void setUp() {
         jwtService = new JwtService();
-        ReflectionTestUtils.setField(jwtService, "secret", "bXlTZWNyZXRLZXlGb3JKV1RUb2tlbkdlbmVyYXRpb25NaW5pbXVtMjU2Qml0c0xvbmdCYXNlNjRFbmNvZGVkPT0=");
+        ReflectionTestUtils.setField(jwtService, "signingKey", encode(KEY_PAIR));
         ReflectionTestUtils.setField(jwtService, "accessTokenExpiration", 900000L);
         ReflectionTestUtils.setField(jwtService, "refreshTokenExpiration", 2592000000L);
+        keyId = jwtService.jwks().getKeys().get(0).getKid();
 
         testUser = User.builder()
                 .id(UUID.randomUUID())
@@ -155,4 +179,205 @@ class JwtServiceTest {
         // Then
         assertNotEquals(token1, token2); // Different because of timestamp
     }
+
+    @Test
+    void testVerify_ownTokens_shouldBeVerifiedByClientWithPublishedKeys() {
+        // Given
+        String accessToken = jwtService.generateAccessToken(testUser);
+        String refreshToken = jwtService.generateRefreshToken(testUser);
+        JwtVerifier clientVerifier = new JwtVerifier(KeyProvider.of(publishedKeys()));
+
+        // When
+        var access = clientVerifier.verify(accessToken, System.currentTimeMillis());
+        var refresh = clientVerifier.verify(refreshToken, System.currentTimeMillis());
+
+        // Then
+        assertEquals(testUser.getId(), access.userId());
+        assertEquals(testUser.getEmail(), access.email());
+        assertEquals(testUser.getEmail(), access.subject());
+        assertTrue(access.expiresAt() > access.issuedAt());
+        assertEquals(testUser.getId(), refresh.userId());
+        assertNull(refresh.email());
+        JwtService.TokenClaims claims = jwtService.verify(accessToken);
+        assertEquals(access.tokenId(), claims.tokenId());
+        assertEquals(access.issuedAtMillis(), claims.issuedAtMillis());
+    }
+
+    @Test
+    void testVerify_invalidTokens_shouldReturnNullWithoutException() {
+        // Given
+        String token = jwtService.generateAccessToken(testUser);
+        int at = token.length() - 10;
+        String tampered = token.substring(0, at) + (token.charAt(at) == 'A' ? 'B' : 'A') + token.substring(at + 1);
+        String expired = Jwts.builder()
+                .claim("userId", testUser.getId().toString())
+                .claim("email", testUser.getEmail())
+                .setSubject(testUser.getEmail())
+                .setIssuedAt(new Date(System.currentTimeMillis() - 60_000))
+                .setExpiration(new Date(System.currentTimeMillis() - 1_000))
+                .setHeaderParam(JwsHeader.KEY_ID, keyId)
+                .signWith(KEY_PAIR.getPrivate(), SignatureAlgorithm.RS256)
+                .compact();
+        String otherKey = Jwts.builder()
+                .claim("userId", testUser.getId().toString())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .setHeaderParam(JwsHeader.KEY_ID, keyId)
+                .signWith(generateKeyPair().getPrivate(), SignatureAlgorithm.RS256)
+                .compact();
+        // Подмена алгоритма: HS256 с открытым ключом в качестве секрета
+        String hmacWithPublicKey = Jwts.builder()
+                .claim("userId", testUser.getId().toString())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .setHeaderParam(JwsHeader.KEY_ID, keyId)
+                .signWith(Keys.hmacShaKeyFor(KEY_PAIR.getPublic().getEncoded()), SignatureAlgorithm.HS256)
+                .compact();
+
+        // When & Then
+        assertNull(jwtService.verify(otherKey));
+        assertNull(jwtService.verify(hmacWithPublicKey));
+        assertThrows(InvalidTokenException.class, () -> jwtService.validateAndExtractClaims(hmacWithPublicKey));
+        assertNull(jwtService.verify(tampered));
+        assertNull(jwtService.verify(expired));
+        assertNull(jwtService.verify("invalid.jwt.token"));
+        assertNull(jwtService.verify("garbage"));
+        assertNull(jwtService.verify(null));
+    }
+
+    @Test
+    void testVerify_extraHeaderAndClaims_shouldBeAccepted() {
+        // Given — лишний параметр заголовка и лишний claim
+        String token = Jwts.builder()
+                .setHeaderParam("typ", "JWT")
+                .setHeaderParam(JwsHeader.KEY_ID, keyId)
+                .claim("userId", testUser.getId().toString())
+                .claim("email", testUser.getEmail())
+                .claim("roles", List.of("USER"))
+                .setSubject(testUser.getEmail())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(KEY_PAIR.getPrivate(), SignatureAlgorithm.RS256)
+                .compact();
+
+        // When
+        JwtService.TokenClaims claims = jwtService.verify(token);
+
+        // Then
+        assertEquals(testUser.getId(), claims.userId());
+        assertEquals(testUser.getEmail(), claims.email());
+    }
+
+    @Test
+    void testJwks_additionalKey_shouldBePublishedAndAccepted() {
+        // Given: токены прежнего ключа ещё действуют
+        KeyPair previous = generateKeyPair();
+        JwtService previousService = new JwtService();
+        ReflectionTestUtils.setField(previousService, "signingKey", encode(previous));
+        ReflectionTestUtils.setField(previousService, "accessTokenExpiration", 900000L);
+        String previousToken = previousService.generateAccessToken(testUser);
+        ReflectionTestUtils.setField(jwtService, "keys", null);
+        ReflectionTestUtils.setField(jwtService, "verifier", null);
+        ReflectionTestUtils.setField(jwtService, "additionalPublicKeys",
+                Base64.getEncoder().encodeToString(previous.getPublic().getEncoded()));
+
+        // When
+        List<JwkDto> keys = jwtService.jwks().getKeys();
+
+        // Then
+        assertEquals(2, keys.size());
+        assertEquals(keyId, keys.get(0).getKid());
+        assertEquals("RS256", keys.get(1).getAlg());
+        assertEquals(testUser.getId(), jwtService.verify(previousToken).userId());
+        assertNotNull(new JwtVerifier(KeyProvider.of(publishedKeys())).verify(previousToken, System.currentTimeMillis()));
+    }
+
+    @Test
+    void testGenerate_fastWriter_shouldProduceTokensVerifiedByJjwt() {
+        // Given — email с символами, которые нужно экранировать в JSON
+        String email = "o\"reilly\\test@example.com";
+
+        // When
+        String accessToken = jwtService.generateAccessToken(testUser.getId(), email);
+        String refreshToken = jwtService.generateRefreshToken(testUser.getId(), email);
+
+        // Then
+        Claims access = jwtService.validateAndExtractClaims(accessToken);
+        assertEquals(testUser.getId().toString(), access.get("userId", String.class));
+        assertEquals(email, access.get("email", String.class));
+        assertEquals(email, access.getSubject());
+        assertEquals(900, (access.getExpiration().getTime() - access.getIssuedAt().getTime()) / 1000);
+        Claims refresh = jwtService.validateAndExtractClaims(refreshToken);
+        assertFalse(refresh.containsKey("email"));
+        assertEquals(email, refresh.getSubject());
+        assertEquals(email, jwtService.verify(accessToken).email());
+        assertNotNull(access.getId());
+        assertNotEquals(access.getId(), refresh.getId());
+        assertEquals(access.getId(), jwtService.verify(accessToken).tokenId());
+    }
+
+    @Test
+    void testVerify_shouldReturnIssuedAtMillisOnBothPaths() {
+        // Given
+        long before = System.currentTimeMillis();
+
+        // When — ASCII email через FastJwtWriter, остальные через jjwt
+        JwtService.TokenClaims fast = jwtService.verify(jwtService.generateAccessToken(testUser.getId(), "user@example.com"));
+        JwtService.TokenClaims jjwt = jwtService.verify(jwtService.generateAccessToken(testUser.getId(), "пользователь@пример.рф"));
+        long after = System.currentTimeMillis();
+
+        // Then
+        for (JwtService.TokenClaims claims : new JwtService.TokenClaims[]{fast, jjwt}) {
+            assertTrue(claims.issuedAtMillis() >= before && claims.issuedAtMillis() <= after);
+            assertEquals(claims.issuedAtMillis() / 1000, claims.issuedAt());
+        }
+    }
+
+    @Test
+    void testGenerate_nonAsciiEmail_shouldFallBackToJjwt() {
+        // Given
+        String email = "пользователь@пример.рф";
+
+        // When
+        String token = jwtService.generateAccessToken(testUser.getId(), email);
+
+        // Then
+        assertNull(new FastJwtWriter(KEY_PAIR.getPrivate(), keyId)
+                .write(testUser.getId(), email, email, UUID.randomUUID(), 0, 1));
+        assertEquals(email, jwtService.validateAndExtractClaims(token).get("email", String.class));
+        assertEquals(email, jwtService.verify(token).email());
+        assertEquals(jwtService.validateAndExtractClaims(token).getId(), jwtService.verify(token).tokenId());
+    }
+
+    /**
+     * Открытые ключи, восстановленные из ответа JWKS, как их получает клиент
+     */
+    private Map<String, PublicKey> publishedKeys() {
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+            Map<String, PublicKey> keys = new HashMap<>();
+            for (JwkDto jwk : jwtService.jwks().getKeys()) {
+                keys.put(jwk.getKid(), keyFactory.generatePublic(new RSAPublicKeySpec(
+                        new BigInteger(1, decoder.decode(jwk.getN())), new BigInteger(1, decoder.decode(jwk.getE())))));
+            }
+            return keys;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(KeyPair keyPair) {
+        return Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+    }
+
+    private static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
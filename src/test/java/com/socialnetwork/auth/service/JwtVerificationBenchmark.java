@@ -0,0 +1,90 @@
+package com.socialnetwork.auth.service;
+
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение выпуска и проверки access токена: прежний путь через jjwt
+ * и быстрые пути JwtService (FastJwtWriter, JwtVerifier из auth-client). Подпись RS256 ключом 2048 бит.
+ * Не запускается surefire. Запуск после mvn test-compile:
+ * mvn dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/test-classes:target/classes:$(cat cp.txt) com.socialnetwork.auth.service.JwtVerificationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseParallelGC")
+public class JwtVerificationBenchmark {
+
+    private JwtService jwtService;
+    private UUID userId;
+    private String validToken;
+    private String tamperedToken;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService();
+        // Пустой jwt.signing-key: временный ключ RSA 2048
+        ReflectionTestUtils.setField(jwtService, "signingKey", "");
+        ReflectionTestUtils.setField(jwtService, "accessTokenExpiration", 900000L);
+        ReflectionTestUtils.setField(jwtService, "refreshTokenExpiration", 2592000000L);
+
+        userId = UUID.randomUUID();
+        validToken = jwtService.generateAccessToken(userId, "bench@example.com");
+        int at = validToken.length() - 10;
+        tamperedToken = validToken.substring(0, at) + (validToken.charAt(at) == 'A' ? 'B' : 'A') + validToken.substring(at + 1);
+    }
+
+    @Benchmark
+    public Claims jjwtValid() {
+        return jwtService.validateAndExtractClaims(validToken);
+    }
+
+    @Benchmark
+    public JwtService.TokenClaims fastValid() {
+        return jwtService.verify(validToken);
+    }
+
+    @Benchmark
+    public Object jjwtInvalid() {
+        // Прежний validate: отказ выражался исключением
+        try {
+            return jwtService.validateAndExtractClaims(tamperedToken);
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public JwtService.TokenClaims fastInvalid() {
+        return jwtService.verify(tamperedToken);
+    }
+
+    @Benchmark
+    public String jjwtGenerate() {
+        return jwtService.buildAccessToken(userId, "bench@example.com", UUID.randomUUID(), System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public String fastGenerate() {
+        return jwtService.generateAccessToken(userId, "bench@example.com");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,173 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.config.TestRedisConfig;
+import com.socialnetwork.auth.dto.request.AuthenticateRq;
+import com.socialnetwork.auth.dto.response.TokenResponse;
+import com.socialnetwork.auth.entity.User;
+import com.socialnetwork.auth.repository.RefreshTokenRepository;
+import com.socialnetwork.auth.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Параллельные входы при пуле из двух соединений: все потоки одновременно
+ * находятся внутри проверки пароля, и в этот момент пул Hikari пуст.
+ * Если бы login держал транзакцию на время BCrypt, третий поток ждал бы
+ * соединение и до проверки пароля не дошёл бы.
+ */
+@SpringBootTest
+@Import({TestRedisConfig.class, LoginConnectionUsageTest.GatedEncoderConfig.class})
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:login-pool;MODE=PostgreSQL",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.kafka.bootstrap-servers=localhost:9093",
+        "spring.kafka.producer.bootstrap-servers=localhost:9093",
+        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration,org.springframework.boot.autoconfigure.data.redis.RedisRepositoriesAutoConfiguration",
+        "spring.main.allow-bean-definition-overriding=true"
+})
+class LoginConnectionUsageTest {
+
+    private static final int CONCURRENT_LOGINS = 16;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private GatedPasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private CaptchaService captchaService;
+
+    @MockBean
+    private KafkaProducerService kafkaProducerService;
+
+    @MockBean
+    private TokenBlacklistService tokenBlacklistService;
+
+    @AfterEach
+    void tearDown() {
+        passwordEncoder.release();
+        refreshTokenRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testConcurrentLogins_shouldNotHoldConnectionsDuringPasswordCheck() throws Exception {
+        // Given
+        for (int i = 0; i < CONCURRENT_LOGINS; i++) {
+            userRepository.save(User.builder()
+                    .email("user" + i + "@example.com")
+                    .firstName("Test")
+                    .lastName("User")
+                    .password(passwordEncoder.encode("password123"))
+                    .isDeleted(false)
+                    .build());
+        }
+        passwordEncoder.arm(CONCURRENT_LOGINS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_LOGINS);
+        try {
+            // When
+            List<Future<TokenResponse>> results = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_LOGINS; i++) {
+                AuthenticateRq request = new AuthenticateRq();
+                request.setEmail("user" + i + "@example.com");
+                request.setPassword("password123");
+                results.add(executor.submit(() -> authService.login(request, "10.0.0.1", "test-agent")));
+            }
+
+            // Then: все входы одновременно внутри BCrypt, ни одно соединение не занято
+            assertTrue(passwordEncoder.awaitAllInside(), "Not all logins reached the password check");
+            double activeConnections = meterRegistry.get("hikaricp.connections.active").gauge().value();
+            passwordEncoder.release();
+
+            assertEquals(0, activeConnections);
+            for (Future<TokenResponse> result : results) {
+                assertNotNull(result.get(10, TimeUnit.SECONDS).getRefreshToken());
+            }
+            assertEquals(CONCURRENT_LOGINS, refreshTokenRepository.count());
+            assertFalse(passwordEncoder.transactionSeen.contains(true), "Password was checked inside a transaction");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @TestConfiguration
+    static class GatedEncoderConfig {
+
+        @Bean
+        @Primary
+        GatedPasswordEncoder gatedPasswordEncoder() {
+            return new GatedPasswordEncoder();
+        }
+    }
+
+    /**
+     * BCrypt, который задерживает проверку пароля, пока внутри не соберутся все потоки
+     */
+    static class GatedPasswordEncoder extends BCryptPasswordEncoder {
+
+        private final Queue<Boolean> transactionSeen = new ConcurrentLinkedQueue<>();
+        private volatile CountDownLatch inside = new CountDownLatch(0);
+        private volatile CountDownLatch released = new CountDownLatch(0);
+
+        GatedPasswordEncoder() {
+            super(4);
+        }
+
+        void arm(int parties) {
+            transactionSeen.clear();
+            inside = new CountDownLatch(parties);
+            released = new CountDownLatch(1);
+        }
+
+        boolean awaitAllInside() throws InterruptedException {
+            return inside.await(10, TimeUnit.SECONDS);
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            transactionSeen.add(TransactionSynchronizationManager.isActualTransactionActive());
+            inside.countDown();
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.matches(rawPassword, encodedPassword);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.exception.InvalidTokenException;
+import com.socialnetwork.auth.util.RedisKeys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OpaqueTokenServiceTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private SetOperations<String, String> setOperations;
+
+    private final UUID userId = UUID.randomUUID();
+
+    private final long issuedAt = System.currentTimeMillis();
+
+    private OpaqueTokenService opaqueTokenService;
+
+    @BeforeEach
+    void setUp() {
+        opaqueTokenService = new OpaqueTokenService(redisTemplate, 900_000, 1000, 30);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(redisTemplate.opsForSet()).thenReturn(setOperations);
+    }
+
+    @Test
+    void testIssue_shouldReturnCompactTokenAndStoreState() {
+        // When
+        String token = opaqueTokenService.issue(userId, "user@example.com", issuedAt, Long.MAX_VALUE).token();
+
+        // Then
+        assertEquals(22, token.length());
+        assertTrue(token.matches("[A-Za-z0-9_-]+"));
+        assertTrue(OpaqueTokenService.isOpaque(token));
+        verify(valueOperations).set(eq(RedisKeys.opaqueToken(token)), contains(userId.toString()), eq(Duration.ofMillis(900_000)));
+        verify(setOperations).add(RedisKeys.userOpaqueTokens(userId), token);
+    }
+
+    @Test
+    void testIssue_jwtExpiresSooner_shouldCapTokenLifetimeAtJwtExpiry() {
+        // Given: до истечения обмениваемого JWT осталось 10 секунд
+        long notAfter = System.currentTimeMillis() + 10_000;
+
+        // When
+        OpaqueTokenService.IssuedToken issued = opaqueTokenService.issue(userId, "user@example.com", issuedAt, notAfter);
+
+        // Then: ни состояние, ни TTL в Redis, ни expiresIn не выходят за exp JWT
+        assertTrue(issued.expiresIn() <= 10);
+        ArgumentCaptor<Duration> ttl = ArgumentCaptor.forClass(Duration.class);
+        verify(valueOperations).set(eq(RedisKeys.opaqueToken(issued.token())), anyString(), ttl.capture());
+        assertTrue(ttl.getValue().toMillis() <= 10_000);
+        assertTrue(ttl.getValue().toSeconds() >= issued.expiresIn());
+        assertTrue(opaqueTokenService.resolve(issued.token()).orElseThrow().expiresAtMillis() <= notAfter);
+    }
+
+    @Test
+    void testIssue_jwtAlreadyExpired_shouldThrowException() {
+        // When & Then
+        assertThrows(InvalidTokenException.class,
+                () -> opaqueTokenService.issue(userId, "user@example.com", issuedAt, System.currentTimeMillis() - 1));
+        verifyNoInteractions(valueOperations);
+    }
+
+    @Test
+    void testResolve_issuedHere_shouldHitNearCacheWithoutRedis() {
+        // Given
+        String token = opaqueTokenService.issue(userId, "user@example.com", issuedAt, Long.MAX_VALUE).token();
+
+        // When
+        Optional<OpaqueTokenService.OpaqueTokenState> state = opaqueTokenService.resolve(token);
+
+        // Then
+        assertEquals("user@example.com", state.orElseThrow().email());
+        verify(valueOperations, never()).get(anyString());
+    }
+
+    @Test
+    void testResolve_issuedElsewhere_shouldLoadFromRedisOnce() {
+        // Given
+        String token = "q7Xj0pX2b9yV3kLmN4oPqA";
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        when(valueOperations.get(RedisKeys.opaqueToken(token))).thenReturn(userId + "|" + issuedAt + "|" + expiresAt + "|user|name@example.com");
+
+        // When
+        opaqueTokenService.resolve(token);
+        Optional<OpaqueTokenService.OpaqueTokenState> state = opaqueTokenService.resolve(token);
+
+        // Then
+        assertEquals(userId, state.orElseThrow().userId());
+        assertEquals(issuedAt, state.get().issuedAtMillis());
+        assertEquals("user|name@example.com", state.get().email());
+        verify(valueOperations, times(1)).get(RedisKeys.opaqueToken(token));
+    }
+
+    @Test
+    void testResolve_expiredOrJwt_shouldBeInvalid() {
+        // Given
+        String token = "q7Xj0pX2b9yV3kLmN4oPqA";
+        when(valueOperations.get(RedisKeys.opaqueToken(token))).thenReturn(userId + "|0|1|user@example.com");
+
+        // When & Then
+        assertTrue(opaqueTokenService.resolve(token).isEmpty());
+        assertTrue(opaqueTokenService.resolve("eyJhbGciOiJIUzI1NiJ9.e30.sig").isEmpty());
+    }
+
+    @Test
+    void testRevokeAll_shouldDropTokensAndNotifyOtherInstances() {
+        // Given
+        String token = opaqueTokenService.issue(userId, "user@example.com", issuedAt, Long.MAX_VALUE).token();
+        when(setOperations.members(RedisKeys.userOpaqueTokens(userId))).thenReturn(Set.of(token));
+
+        // When
+        opaqueTokenService.revokeAll(userId);
+
+        // Then
+        verify(redisTemplate).delete(List.of(RedisKeys.opaqueToken(token)));
+        verify(redisTemplate).convertAndSend(OpaqueTokenService.REVOCATION_CHANNEL, userId.toString());
+        assertTrue(opaqueTokenService.resolve(token).isEmpty());
+    }
+
+    @Test
+    void testOnMessage_shouldEvictUserFromNearCache() {
+        // Given
+        String token = opaqueTokenService.issue(userId, "user@example.com", issuedAt, Long.MAX_VALUE).token();
+
+        // When
+        opaqueTokenService.onMessage(new DefaultMessage(
+                OpaqueTokenService.REVOCATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                userId.toString().getBytes(StandardCharsets.UTF_8)), null);
+
+        // Then: после вытеснения токен ищется в Redis, где его уже нет
+        assertTrue(opaqueTokenService.resolve(token).isEmpty());
+        verify(valueOperations).get(RedisKeys.opaqueToken(token));
+    }
+}
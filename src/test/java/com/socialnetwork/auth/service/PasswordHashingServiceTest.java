@@ -0,0 +1,157 @@
+package com.socialnetwork.auth.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PasswordHashingServiceTest {
+
+    private MeterRegistry meterRegistry;
+    private PasswordHashingService passwordHashingService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (passwordHashingService != null) {
+            passwordHashingService.shutdown();
+        }
+    }
+
+    @Test
+    void testMatches_shouldRecordRealHashMetric() {
+        // Given
+        passwordHashingService = new PasswordHashingService(new BCryptPasswordEncoder(4), meterRegistry, 1, 4);
+        String hash = passwordHashingService.encode("password123");
+
+        // When
+        boolean matches = passwordHashingService.matches("password123", hash);
+
+        // Then
+        assertTrue(matches);
+        assertEquals(1, hashTimerCount("match", "real"));
+        assertEquals(1, hashTimerCount("encode", "real"));
+        assertEquals(0, hashTimerCount("match", "dummy"));
+    }
+
+    @Test
+    void testMatchDummy_shouldRecordDummyHashMetricSeparately() {
+        // Given
+        passwordHashingService = new PasswordHashingService(new BCryptPasswordEncoder(4), meterRegistry, 1, 4);
+
+        // When
+        passwordHashingService.matchDummy("password123");
+
+        // Then
+        assertEquals(1, hashTimerCount("match", "dummy"));
+        assertEquals(0, hashTimerCount("match", "real"));
+    }
+
+    @Test
+    void testMatchDummy_whenPoolIsSaturated_shouldNotQueueMoreWork() throws Exception {
+        // Given: единственный поток пула занят, очередь на одну задачу
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blockingEncoder = mock(PasswordEncoder.class);
+        when(blockingEncoder.encode(anyString())).thenReturn("dummyHash");
+        when(blockingEncoder.matches(anyString(), anyString())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return false;
+        });
+        passwordHashingService = new PasswordHashingService(blockingEncoder, meterRegistry, 1, 1);
+
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread caller = new Thread(() -> passwordHashingService.matchDummy("password123"));
+            caller.start();
+            callers.add(caller);
+        }
+        Thread.sleep(200);
+
+        // When: третий запрос не помещается в пул
+        long started = System.nanoTime();
+        passwordHashingService.matchDummy("password123");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        // Then: отказ не короче обычной заглушки (100 мс без замеров настоящих проверок)
+        assertEquals(1.0, meterRegistry.get("auth.password.hash.dummy.rejected").counter().count());
+        assertTrue(elapsedMillis >= 100, "elapsed " + elapsedMillis);
+        release.countDown();
+        for (Thread caller : callers) {
+            caller.join(5000);
+        }
+        // Заглушка из очереди отменена по истечении срока и не запускалась
+        verify(blockingEncoder, times(1)).matches(anyString(), anyString());
+    }
+
+    @Test
+    void testMatchDummy_queuedBehindBusyPool_shouldReturnAtTargetDuration() throws Exception {
+        // Given: поток пула занят надолго
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blockingEncoder = mock(PasswordEncoder.class);
+        when(blockingEncoder.encode(anyString())).thenReturn("dummyHash");
+        when(blockingEncoder.matches(anyString(), anyString())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return false;
+        });
+        passwordHashingService = new PasswordHashingService(blockingEncoder, meterRegistry, 1, 4);
+        Thread busy = new Thread(() -> passwordHashingService.matchDummy("password123"));
+        busy.start();
+        Thread.sleep(50);
+
+        // When
+        long started = System.nanoTime();
+        passwordHashingService.matchDummy("password123");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        // Then: ожидание в очереди не растягивает ответ
+        assertTrue(elapsedMillis >= 100 && elapsedMillis < 1000, "elapsed " + elapsedMillis);
+        release.countDown();
+        busy.join(5000);
+    }
+
+    @Test
+    void testMatchDummy_shouldPadToAverageRealMatch() {
+        // Given: настоящая проверка длится около 150 мс
+        PasswordEncoder slowEncoder = mock(PasswordEncoder.class);
+        when(slowEncoder.encode(anyString())).thenReturn("hash");
+        when(slowEncoder.matches(anyString(), eq("hash"))).thenAnswer(invocation -> {
+            Thread.sleep(150);
+            return true;
+        });
+        passwordHashingService = new PasswordHashingService(slowEncoder, meterRegistry, 1, 4);
+        passwordHashingService.matches("password123", "hash");
+
+        // When: сама заглушка мгновенная
+        long started = System.nanoTime();
+        passwordHashingService.matchDummy("password123");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        // Then
+        assertTrue(elapsedMillis >= 150, "elapsed " + elapsedMillis);
+    }
+
+    private long hashTimerCount(String operation, String kind) {
+        return meterRegistry.get("auth.password.hash")
+                .tag("operation", operation)
+                .tag("kind", kind)
+                .timer()
+                .count();
+    }
+}
@@ -0,0 +1,116 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.dto.projection.UserAuthView;
+import com.socialnetwork.auth.entity.PasswordResetToken;
+import com.socialnetwork.auth.entity.User;
+import com.socialnetwork.auth.exception.RateLimitExceededException;
+import com.socialnetwork.auth.repository.PasswordResetTokenRepository;
+import com.socialnetwork.auth.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PasswordRecoveryServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PasswordResetTokenRepository passwordResetTokenRepository;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private UnknownEmailCache unknownEmailCache;
+
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    private PasswordRecoveryService passwordRecoveryService;
+
+    @BeforeEach
+    void setUp() {
+        passwordRecoveryService = service(1, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordRecoveryService.shutdown();
+    }
+
+    @Test
+    void testRequestLink_knownEmail_shouldSaveTokenAndSendMailInBackground() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        when(unknownEmailCache.isKnownAbsent("user@example.com")).thenReturn(false);
+        when(userRepository.findActiveAuthViewByEmail("user@example.com"))
+                .thenReturn(Optional.of(new UserAuthView(userId, "user@example.com", false)));
+        when(userRepository.getReferenceById(userId)).thenReturn(User.builder().id(userId).build());
+
+        // When
+        passwordRecoveryService.requestLink("user@example.com");
+
+        // Then
+        verify(emailService, timeout(1000)).sendPasswordResetEmail(eq("user@example.com"), anyString());
+        verify(passwordResetTokenRepository).save(any(PasswordResetToken.class));
+    }
+
+    @Test
+    void testRequestLink_unknownEmail_shouldSendNothingAndRememberAbsence() {
+        // Given
+        when(unknownEmailCache.isKnownAbsent("ghost@example.com")).thenReturn(false);
+        when(userRepository.findActiveAuthViewByEmail("ghost@example.com")).thenReturn(Optional.empty());
+
+        // When
+        passwordRecoveryService.requestLink("ghost@example.com");
+
+        // Then
+        verify(unknownEmailCache, timeout(1000)).markAbsent("ghost@example.com");
+        verifyNoInteractions(passwordResetTokenRepository, emailService);
+    }
+
+    @Test
+    void testRequestLink_queueFull_shouldRejectRegardlessOfEmail() throws Exception {
+        // Given: единственный поток занят, очередь на одну задачу заполнена
+        passwordRecoveryService.shutdown();
+        passwordRecoveryService = service(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        when(unknownEmailCache.isKnownAbsent(anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return true;
+        });
+        passwordRecoveryService.requestLink("first@example.com");
+        started.await();
+        passwordRecoveryService.requestLink("second@example.com");
+
+        // When & Then
+        assertThrows(RateLimitExceededException.class, () -> passwordRecoveryService.requestLink("third@example.com"));
+        release.countDown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private PasswordRecoveryService service(int threads, int queueCapacity) {
+        ReadYourWritesGuard readYourWritesGuard = new ReadYourWritesGuard(mock(RedisTemplate.class), transactionTemplate);
+        return new PasswordRecoveryService(userRepository, passwordResetTokenRepository, emailService,
+                unknownEmailCache, readYourWritesGuard, transactionTemplate, new SimpleMeterRegistry(),
+                threads, queueCapacity);
+    }
+}
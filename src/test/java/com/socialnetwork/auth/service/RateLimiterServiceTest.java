@@ -0,0 +1,130 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.exception.RateLimitExceededException;
+import com.socialnetwork.auth.util.RedisKeys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RateLimiterServiceTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    private RateLimiterService rateLimiterService;
+
+    @BeforeEach
+    void setUp() {
+        rateLimiterService = new RateLimiterService(redisTemplate);
+        ReflectionTestUtils.setField(rateLimiterService, "enabled", true);
+        ReflectionTestUtils.setField(rateLimiterService, "failOpen", true);
+        ReflectionTestUtils.setField(rateLimiterService, "ipCapacity", 20L);
+        ReflectionTestUtils.setField(rateLimiterService, "ipRefillPerMinute", 20L);
+        ReflectionTestUtils.setField(rateLimiterService, "emailCapacity", 5L);
+        ReflectionTestUtils.setField(rateLimiterService, "emailRefillPerMinute", 5L);
+        ReflectionTestUtils.setField(rateLimiterService, "globalCapacity", 500L);
+        ReflectionTestUtils.setField(rateLimiterService, "globalRefillPerMinute", 3000L);
+    }
+
+    @Test
+    void testCheckLimits_allowed_shouldConsumeAllBucketsInOneCall() {
+        // Given: скрипт вернул email-корзину (вторую) как самую исчерпанную
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenReturn(List.of(1L, 2L, 4L, 0L));
+
+        // When
+        Optional<RateLimiterService.RateLimitStatus> status =
+                rateLimiterService.checkLimits("login", "10.0.0.1", "User@Example.com");
+
+        // Then
+        assertEquals(new RateLimiterService.RateLimitStatus(5, 4), status.orElseThrow());
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), eq(List.of(
+                        RedisKeys.ipRateLimit("login", "10.0.0.1"),
+                        RedisKeys.emailRateLimit("login", "user@example.com"),
+                        RedisKeys.globalRateLimit("login"))),
+                eq("20"), eq("20"), eq("5"), eq("5"), eq("500"), eq("3000"));
+    }
+
+    @Test
+    void testCheckLimits_rejected_shouldThrowAndRejectRepeatLocally() {
+        // Given: отказ по IP-корзине
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenReturn(List.of(0L, 1L, 0L, 12_000L));
+
+        // When
+        RateLimitExceededException first = assertThrows(RateLimitExceededException.class,
+                () -> rateLimiterService.checkLimits("login", "10.0.0.1", null));
+        RateLimitExceededException second = assertThrows(RateLimitExceededException.class,
+                () -> rateLimiterService.checkLimits("login", "10.0.0.1", null));
+
+        // Then
+        assertEquals(12, first.getRetryAfterSeconds());
+        assertEquals(20, first.getLimit());
+        assertTrue(second.getRetryAfterSeconds() > 0);
+        // Повторный запрос отклонён локальным фильтром без обращения к Redis
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    @Test
+    void testCheckLimits_rejectedByGlobalBucket_shouldReportGlobalLimit() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenReturn(List.of(0L, 2L, 0L, 500L));
+
+        // When
+        RateLimitExceededException exception = assertThrows(RateLimitExceededException.class,
+                () -> rateLimiterService.checkLimits("captcha", "10.0.0.1", null));
+
+        // Then
+        assertEquals(500, exception.getLimit());
+        assertEquals(1, exception.getRetryAfterSeconds());
+    }
+
+    @Test
+    void testCheckLimits_redisUnavailable_failOpen_shouldAllow() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        // When & Then
+        assertTrue(rateLimiterService.checkLimits("captcha", "10.0.0.1", null).isEmpty());
+    }
+
+    @Test
+    void testCheckLimits_redisUnavailable_failClosed_shouldReject() {
+        // Given
+        ReflectionTestUtils.setField(rateLimiterService, "failOpen", false);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        // When & Then
+        assertThrows(RateLimitExceededException.class,
+                () -> rateLimiterService.checkLimits("captcha", "10.0.0.1", null));
+    }
+
+    @Test
+    void testCheckLimits_disabled_shouldNotCallRedis() {
+        // Given
+        ReflectionTestUtils.setField(rateLimiterService, "enabled", false);
+
+        // When
+        rateLimiterService.checkLimits("login", "10.0.0.1", "user@example.com");
+
+        // Then
+        verifyNoInteractions(redisTemplate);
+    }
+}
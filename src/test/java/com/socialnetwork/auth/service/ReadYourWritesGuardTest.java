@@ -0,0 +1,125 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.util.RedisKeys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReadYourWritesGuardTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ReadYourWritesGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        guard = new ReadYourWritesGuard(redisTemplate, new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(guard, "replicaUrl", "jdbc:postgresql://replica:5432/auth_db");
+        ReflectionTestUtils.setField(guard, "pinSeconds", 10L);
+    }
+
+    @Test
+    void testPin_shouldStoreKeyWithTtl() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        // When
+        guard.pin(userId, "user@example.com");
+
+        // Then
+        verify(valueOperations).set(RedisKeys.replicaPin(userId), "1", Duration.ofSeconds(10));
+        verify(valueOperations).set(RedisKeys.replicaPin("user@example.com"), "1", Duration.ofSeconds(10));
+    }
+
+    @Test
+    void testRead_notPinned_shouldQueryWithoutTransaction() {
+        // Given
+        when(redisTemplate.hasKey(RedisKeys.replicaPin("user@example.com"))).thenReturn(false);
+
+        // When
+        String result = guard.read("user@example.com", () -> "replica");
+
+        // Then
+        assertEquals("replica", result);
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void testRead_pinned_shouldQueryInsideReadWriteTransaction() {
+        // Given
+        when(redisTemplate.hasKey(RedisKeys.replicaPin("user@example.com"))).thenReturn(true);
+
+        // When
+        guard.read("user@example.com", () -> "primary");
+
+        // Then
+        verify(transactionManager).getTransaction(argThat(definition -> !definition.isReadOnly()));
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testRead_redisUnavailable_shouldFallBackToPrimary() {
+        // Given
+        when(redisTemplate.hasKey(any())).thenThrow(new RedisConnectionFailureException("down"));
+
+        // When
+        guard.read("user@example.com", () -> "primary");
+
+        // Then
+        verify(transactionManager).getTransaction(any());
+    }
+
+    @Test
+    void testReadOrRecheck_missingOnReplica_shouldRereadOnPrimary() {
+        // Given
+        int[] calls = {0};
+
+        // When
+        Optional<String> result = guard.readOrRecheck(
+                () -> ++calls[0] == 1 ? Optional.empty() : Optional.of("token"), value -> value);
+
+        // Then
+        assertEquals(Optional.of("token"), result);
+        assertEquals(2, calls[0]);
+        verify(transactionManager).getTransaction(any());
+    }
+
+    @Test
+    void testReplicaNotConfigured_shouldNotTouchRedis() {
+        // Given
+        ReflectionTestUtils.setField(guard, "replicaUrl", "");
+
+        // When
+        guard.pin("user@example.com");
+        Optional<String> result = guard.readOrRecheck(Optional::empty, value -> value);
+
+        // Then
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(redisTemplate, transactionManager);
+    }
+}
@@ -0,0 +1,129 @@
+package com.socialnetwork.auth.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisCommandBatcherTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private RedisOperations<String, String> pipelineOperations;
+
+    private RedisCommandBatcher batcher;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        if (batcher != null) {
+            batcher.stop();
+        }
+    }
+
+    @Test
+    void testExecute_disabled_shouldRunDirectly() {
+        // Given
+        batcher = new RedisCommandBatcher(redisTemplate, new SimpleMeterRegistry(), false, 200, 256, 100, 1000);
+        batcher.start();
+        when(redisTemplate.hasKey("blacklist:token:a")).thenReturn(true);
+
+        // When
+        Boolean exists = batcher.execute(ops -> ops.hasKey("blacklist:token:a"));
+
+        // Then
+        assertTrue(exists);
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testExecute_concurrentCalls_shouldShareOnePipeline() throws Exception {
+        // Given — окно заведомо больше времени на отправку трёх команд
+        batcher = new RedisCommandBatcher(redisTemplate, new SimpleMeterRegistry(), true, 2_000_000, 3, 100, 5000);
+        batcher.start();
+        List<String> pipelinedKeys = new CopyOnWriteArrayList<>();
+        when(pipelineOperations.hasKey(any())).thenAnswer(invocation -> {
+            pipelinedKeys.add(invocation.getArgument(0));
+            return null;
+        });
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<Object>>getArgument(0).execute(pipelineOperations);
+            List<Object> results = new ArrayList<>();
+            pipelinedKeys.forEach(key -> results.add(key.endsWith("b")));
+            return results;
+        });
+
+        // When
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (String key : List.of("a", "b", "c")) {
+            futures.add(executor.submit(() -> batcher.execute(ops -> ops.hasKey("blacklist:token:" + key))));
+        }
+
+        // Then — каждый вызов получил свой результат из общей пачки
+        assertFalse(futures.get(0).get(5, TimeUnit.SECONDS));
+        assertTrue(futures.get(1).get(5, TimeUnit.SECONDS));
+        assertFalse(futures.get(2).get(5, TimeUnit.SECONDS));
+        verify(redisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+        verify(redisTemplate, never()).hasKey(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_pipelineFailure_shouldFailEveryCaller() {
+        // Given
+        batcher = new RedisCommandBatcher(redisTemplate, new SimpleMeterRegistry(), true, 0, 256, 100, 1000);
+        when(redisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+        RedisCommandBatcher.PendingCommand<Boolean> first = new RedisCommandBatcher.PendingCommand<>(ops -> ops.hasKey("a"));
+        RedisCommandBatcher.PendingCommand<Boolean> second = new RedisCommandBatcher.PendingCommand<>(ops -> ops.hasKey("b"));
+
+        // When
+        batcher.flush(List.of(first, second));
+
+        // Then
+        for (RedisCommandBatcher.PendingCommand<Boolean> pending : List.of(first, second)) {
+            ExecutionException error = assertThrows(ExecutionException.class, () -> pending.result().get(1, TimeUnit.SECONDS));
+            assertInstanceOf(RedisConnectionFailureException.class, error.getCause());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_resultCountMismatch_shouldFailWithDataAccessException() {
+        // Given
+        batcher = new RedisCommandBatcher(redisTemplate, new SimpleMeterRegistry(), true, 0, 256, 100, 1000);
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenReturn(List.of(true));
+        RedisCommandBatcher.PendingCommand<Boolean> first = new RedisCommandBatcher.PendingCommand<>(ops -> ops.hasKey("a"));
+        RedisCommandBatcher.PendingCommand<Boolean> second = new RedisCommandBatcher.PendingCommand<>(ops -> ops.hasKey("b"));
+
+        // When
+        batcher.flush(List.of(first, second));
+
+        // Then: ошибка должна попасть в circuit breaker и локальный fallback, а не стать 500
+        for (RedisCommandBatcher.PendingCommand<Boolean> pending : List.of(first, second)) {
+            ExecutionException error = assertThrows(ExecutionException.class, () -> pending.result().get(1, TimeUnit.SECONDS));
+            assertInstanceOf(RedisSystemException.class, error.getCause());
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.dto.projection.RefreshTokenState;
+import com.socialnetwork.auth.util.RedisKeys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenWriteBehindTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final UUID userId = UUID.randomUUID();
+
+    private RefreshTokenWriteBehind writeBehind(boolean enabled, int queueCapacity) {
+        RefreshTokenWriteBehind writeBehind = new RefreshTokenWriteBehind(redisTemplate, jdbcTemplate,
+                new TransactionTemplate(transactionManager), new SimpleMeterRegistry(), enabled, queueCapacity);
+        ReflectionTestUtils.setField(writeBehind, "batchSize", 500);
+        ReflectionTestUtils.setField(writeBehind, "revocationTtlSeconds", 3600L);
+        ReflectionTestUtils.setField(writeBehind, "staleAfterSeconds", 30L);
+        return writeBehind;
+    }
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void testEnqueue_disabled_shouldRejectWithoutRedis() {
+        // When
+        boolean accepted = writeBehind(false, 10).enqueue(userId, "token", LocalDateTime.now().plusDays(30));
+
+        // Then
+        assertFalse(accepted);
+        verifyNoInteractions(redisTemplate, jdbcTemplate);
+    }
+
+    @Test
+    void testEnqueue_shouldStoreInRedisAndFlushAsBatch() {
+        // Given
+        RefreshTokenWriteBehind writeBehind = writeBehind(true, 10);
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList((String) null));
+
+        // When
+        assertTrue(writeBehind.enqueue(userId, "token-1", LocalDateTime.now().plusDays(30)));
+        assertTrue(writeBehind.enqueue(userId, "token-2", LocalDateTime.now().plusDays(30)));
+        writeBehind.flush();
+
+        // Then
+        verify(hashOperations).put(eq(RedisKeys.REFRESH_TOKEN_PENDING), eq("token-1"), anyString());
+        verify(jdbcTemplate).batchUpdate(startsWith("insert into refresh_tokens"), argThat(batch -> batch.size() == 2), eq(2), any());
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("update"), anyCollection(), anyInt(), any());
+        verify(hashOperations).delete(RedisKeys.REFRESH_TOKEN_PENDING, "token-1", "token-2");
+    }
+
+    @Test
+    void testEnqueue_queueFull_shouldFallBackToSynchronousWrite() {
+        // Given
+        RefreshTokenWriteBehind writeBehind = writeBehind(true, 1);
+
+        // When
+        boolean first = writeBehind.enqueue(userId, "token-1", LocalDateTime.now().plusDays(30));
+        boolean second = writeBehind.enqueue(userId, "token-2", LocalDateTime.now().plusDays(30));
+
+        // Then
+        assertTrue(first);
+        assertFalse(second);
+        verify(hashOperations, never()).put(any(), eq("token-2"), any());
+    }
+
+    @Test
+    void testEnqueue_redisUnavailable_shouldFallBackToSynchronousWrite() {
+        // Given
+        doThrow(new RedisConnectionFailureException("down")).when(hashOperations).put(any(), any(), any());
+
+        // When & Then
+        assertFalse(writeBehind(true, 10).enqueue(userId, "token", LocalDateTime.now().plusDays(30)));
+    }
+
+    @Test
+    void testFlush_userRevokedAfterIssue_shouldRevokeWrittenToken() {
+        // Given
+        RefreshTokenWriteBehind writeBehind = writeBehind(true, 10);
+        writeBehind.enqueue(userId, "token", LocalDateTime.now().plusDays(30));
+        when(valueOperations.multiGet(List.of(RedisKeys.userRefreshRevokedAt(userId))))
+                .thenReturn(List.of(LocalDateTime.now().plusSeconds(1).toString()));
+
+        // When
+        writeBehind.flush();
+
+        // Then
+        verify(jdbcTemplate).batchUpdate(startsWith("update refresh_tokens set is_revoked = true"),
+                eq(List.of("token")), eq(1), any());
+    }
+
+    @Test
+    void testFlush_sessionRevokedBeforeWrite_shouldRevokeOnlyThatToken() {
+        // Given — токен сессии отозван, пока ждал записи в БД
+        RefreshTokenWriteBehind writeBehind = writeBehind(true, 10);
+        writeBehind.enqueue(userId, "token-1", LocalDateTime.now().plusDays(30));
+        writeBehind.enqueue(userId, "token-2", LocalDateTime.now().plusDays(30));
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList((String) null));
+        LocalDateTime issuedAt = LocalDateTime.now();
+        String pending = UUID.randomUUID() + "|" + userId + "|" + issuedAt.plusDays(30) + "|" + issuedAt;
+        when(hashOperations.multiGet(RedisKeys.REFRESH_TOKEN_PENDING, List.of("token-1", "token-2")))
+                .thenReturn(List.of(pending, pending + "|revoked"));
+
+        // When
+        writeBehind.flush();
+
+        // Then
+        verify(jdbcTemplate).batchUpdate(startsWith("update refresh_tokens set is_revoked = true"),
+                eq(List.of("token-2")), eq(1), any());
+    }
+
+    @Test
+    void testMarkRevoked_redisUnavailable_shouldNotThrow() {
+        // Given
+        RefreshTokenWriteBehind writeBehind = writeBehind(true, 10);
+        doThrow(new RedisConnectionFailureException("down")).when(valueOperations).set(anyString(), anyString(), any(Duration.class));
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenThrow(new RedisConnectionFailureException("down"));
+
+        // When & Then: вызывающий продолжает отзыв и выполняет UPDATE в БД
+        assertDoesNotThrow(() -> writeBehind.markRevoked(userId));
+        assertDoesNotThrow(() -> writeBehind.markTokenRevoked("token"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRecoverStale_shouldScanHashAndWriteInBatches() {
+        // Given
+        RefreshTokenWriteBehind writeBehind = writeBehind(true, 10);
+        ReflectionTestUtils.setField(writeBehind, "batchSize", 2);
+        LocalDateTime issuedAt = LocalDateTime.now().minusMinutes(5);
+        String stale = UUID.randomUUID() + "|" + userId + "|" + issuedAt.plusDays(30) + "|" + issuedAt;
+        String fresh = UUID.randomUUID() + "|" + userId + "|" + issuedAt.plusDays(30) + "|" + LocalDateTime.now();
+        Cursor<Map.Entry<Object, Object>> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenReturn(true, true, true, true, false);
+        when(cursor.next()).thenReturn(Map.entry("token-1", stale), Map.entry("token-2", fresh),
+                Map.entry("token-3", stale), Map.entry("token-4", stale));
+        when(hashOperations.scan(eq(RedisKeys.REFRESH_TOKEN_PENDING), any(ScanOptions.class))).thenReturn(cursor);
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList((String) null));
+
+        // When
+        writeBehind.recoverStale();
+
+        // Then: три устаревшие записи — пачка из двух и остаток, без HGETALL
+        verify(jdbcTemplate).batchUpdate(startsWith("insert into refresh_tokens"),
+                argThat((List<Object> batch) -> batch.size() == 2), eq(2), any());
+        verify(jdbcTemplate).batchUpdate(startsWith("insert into refresh_tokens"),
+                argThat((List<Object> batch) -> batch.size() == 1), eq(1), any());
+        verify(hashOperations, never()).entries(anyString());
+        verify(cursor).close();
+    }
+
+    @Test
+    void testFindPending_shouldReturnStateAndHonourRevocation() {
+        // Given
+        RefreshTokenWriteBehind writeBehind = writeBehind(true, 10);
+        LocalDateTime issuedAt = LocalDateTime.now();
+        String encoded = UUID.randomUUID() + "|" + userId + "|" + issuedAt.plusDays(30) + "|" + issuedAt;
+        when(hashOperations.get(RedisKeys.REFRESH_TOKEN_PENDING, "token")).thenReturn(encoded);
+        when(valueOperations.get(RedisKeys.userRefreshRevokedAt(userId)))
+                .thenReturn(null, issuedAt.plusSeconds(5).toString());
+
+        // When
+        Optional<RefreshTokenState> active = writeBehind.findPending("token");
+        Optional<RefreshTokenState> revoked = writeBehind.findPending("token");
+
+        // Then
+        assertEquals(userId, active.orElseThrow().userId());
+        assertFalse(active.get().isRevoked());
+        assertTrue(revoked.orElseThrow().isRevoked());
+    }
+}
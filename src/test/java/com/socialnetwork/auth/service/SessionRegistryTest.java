@@ -0,0 +1,134 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.util.RedisKeys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SessionRegistryTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    private final UUID userId = UUID.randomUUID();
+
+    private SessionRegistry sessionRegistry;
+
+    @BeforeEach
+    void setUp() {
+        sessionRegistry = new SessionRegistry(redisTemplate, 2);
+        lenient().when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        lenient().when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRegister_overLimit_shouldReturnEvictedRefreshTokens() {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.now().minusDays(1);
+        String evicted = "old-refresh|" + createdAt + "|" + createdAt.plusDays(30) + "|10.0.0.2|curl/8.0";
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(List.of(evicted));
+
+        // When
+        List<String> tokens = sessionRegistry.register(userId, "refresh", LocalDateTime.now().plusDays(30),
+                "10.0.0.1", "Mozilla/5.0");
+
+        // Then
+        assertEquals(List.of("old-refresh"), tokens);
+        verify(redisTemplate).execute(any(RedisScript.class),
+                eq(List.of(RedisKeys.userSessions(userId), RedisKeys.userSessionInfo(userId))),
+                any(), any(), startsWith("refresh|"), eq("2"), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRegister_redisUnavailable_shouldNotFailLogin() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        // When & Then
+        assertEquals(List.of(), sessionRegistry.register(userId, "refresh", LocalDateTime.now().plusDays(30),
+                "10.0.0.1", "Mozilla/5.0"));
+    }
+
+    @Test
+    void testList_shouldReturnNewestFirstAndSkipExpired() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        when(zSetOperations.reverseRange(RedisKeys.userSessions(userId), 0, -1))
+                .thenReturn(new LinkedHashSet<>(List.of("new", "expired", "gone")));
+        when(hashOperations.multiGet(RedisKeys.userSessionInfo(userId), List.of("new", "expired", "gone")))
+                .thenReturn(Arrays.asList(
+                        "t1|" + now + "|" + now.plusDays(30) + "|10.0.0.1|Agent | with pipe",
+                        "t2|" + now.minusDays(31) + "|" + now.minusDays(1) + "|10.0.0.2|",
+                        null));
+
+        // When
+        List<SessionRegistry.SessionInfo> sessions = sessionRegistry.list(userId);
+
+        // Then
+        assertEquals(1, sessions.size());
+        assertEquals("new", sessions.get(0).sessionId());
+        assertEquals("Agent | with pipe", sessions.get(0).userAgent());
+        assertEquals("10.0.0.1", sessions.get(0).ipAddress());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRemove_shouldDeleteOnlyOwnSessionInOneScriptCall() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        List<String> keys = List.of(RedisKeys.userSessions(userId), RedisKeys.userSessionInfo(userId));
+        when(redisTemplate.execute(any(RedisScript.class), eq(keys), eq("session-1")))
+                .thenReturn("t1|" + now + "|" + now.plusDays(30) + "||");
+        when(redisTemplate.execute(any(RedisScript.class), eq(keys), eq("other"))).thenReturn(null);
+
+        // When
+        Optional<SessionRegistry.SessionInfo> removed = sessionRegistry.remove(userId, "session-1");
+        Optional<SessionRegistry.SessionInfo> unknown = sessionRegistry.remove(userId, "other");
+
+        // Then
+        assertEquals("session-1", removed.orElseThrow().sessionId());
+        assertEquals("t1", removed.get().refreshToken());
+        assertNull(removed.get().userAgent());
+        assertTrue(unknown.isEmpty());
+        verifyNoInteractions(zSetOperations, hashOperations);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRemove_redisUnavailable_shouldReturnEmpty() {
+        // Given
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        // When & Then
+        assertTrue(sessionRegistry.remove(userId, "session-1").isEmpty());
+    }
+}
@@ -0,0 +1,212 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.util.RedisKeys;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenBlacklistServiceTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    private CircuitBreaker circuitBreaker;
+
+    private LocalRevocationStore localRevocationStore;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private TokenBlacklistService tokenBlacklistService;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreaker = CircuitBreaker.of("redis", CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .recordExceptions(DataAccessException.class)
+                .build());
+        RedisCommandBatcher batcher = new RedisCommandBatcher(redisTemplate, new SimpleMeterRegistry(),
+                false, 0, 1, 1, 1000);
+        localRevocationStore = new LocalRevocationStore(1000L, 900000L);
+        meterRegistry = new SimpleMeterRegistry();
+        tokenBlacklistService = new TokenBlacklistService(redisTemplate, batcher, circuitBreaker,
+                localRevocationStore, meterRegistry, 900000L);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+    }
+
+    @Test
+    void testIsTokenBlacklisted_shouldCheckRedis() {
+        // Given
+        when(redisTemplate.hasKey(RedisKeys.blacklistedToken("token"))).thenReturn(true);
+
+        // When & Then
+        assertTrue(tokenBlacklistService.isTokenBlacklisted("token"));
+    }
+
+    @Test
+    void testBlacklistToken_shouldWriteKeyRecentSetAndPublish() {
+        // When
+        tokenBlacklistService.blacklistToken("token", 60000L);
+
+        // Then
+        assertTrue(tokenBlacklistService.isTokenBlacklisted("token"));
+        verify(valueOperations).set(eq(RedisKeys.blacklistedToken("token")), eq("blacklisted"), longThat(ttl -> ttl > 0), any());
+        verify(zSetOperations).add(eq(RedisKeys.BLACKLIST_RECENT), endsWith("|token"), anyDouble());
+        verify(redisTemplate).convertAndSend(eq(LocalRevocationStore.REVOCATION_CHANNEL), endsWith("|token"));
+        verify(redisTemplate, never()).hasKey(anyString());
+    }
+
+    @Test
+    void testIsTokenBlacklisted_redisDown_shouldFallBackAndOpenCircuit() {
+        // Given
+        when(redisTemplate.hasKey(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+
+        // When
+        boolean first = tokenBlacklistService.isTokenBlacklisted("a");
+        boolean second = tokenBlacklistService.isTokenBlacklisted("b");
+        boolean third = tokenBlacklistService.isTokenBlacklisted("c");
+
+        // Then — ошибки не доходят до вызывающего, после порога Redis больше не опрашивается
+        assertFalse(first);
+        assertFalse(second);
+        assertFalse(third);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertTrue(tokenBlacklistService.isDegraded());
+        assertEquals(1.0, meterRegistry.get("auth.redis.degraded").gauge().value());
+        verify(redisTemplate, times(2)).hasKey(anyString());
+    }
+
+    @Test
+    void testOutage_revocationFromOtherInstance_shouldBeHonouredLocally() {
+        // Given — другой экземпляр отозвал токен, сообщение пришло до сбоя Redis
+        String body = LocalRevocationStore.encode("token", System.currentTimeMillis() + 60000L);
+        localRevocationStore.onMessage(new DefaultMessage(
+                LocalRevocationStore.REVOCATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8)), null);
+        circuitBreaker.transitionToOpenState();
+
+        // When & Then
+        assertTrue(tokenBlacklistService.isTokenBlacklisted("token"));
+        assertFalse(tokenBlacklistService.isTokenBlacklisted("other"));
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void testRevokeUser_shouldRejectOnlyTokensIssuedBeforeEpochOnAllInstances() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        long issuedBefore = System.currentTimeMillis() - 1;
+        LocalRevocationStore otherInstance = new LocalRevocationStore(1000L, 900000L);
+
+        // When
+        tokenBlacklistService.revokeUser(userId);
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(LocalRevocationStore.USER_REVOCATION_CHANNEL), message.capture());
+        otherInstance.onMessage(new DefaultMessage(
+                LocalRevocationStore.USER_REVOCATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                message.getValue().getBytes(StandardCharsets.UTF_8)), null);
+
+        // Then
+        verify(zSetOperations).add(eq(RedisKeys.USER_REVOCATIONS_RECENT), eq(userId.toString()), anyDouble());
+        assertTrue(tokenBlacklistService.isUserRevoked(userId, issuedBefore));
+        assertTrue(otherInstance.isUserRevoked(userId, issuedBefore));
+        assertFalse(otherInstance.isUserRevoked(userId, System.currentTimeMillis() + 1));
+        assertFalse(otherInstance.isUserRevoked(UUID.randomUUID(), issuedBefore));
+    }
+
+    @Test
+    void testRevokeUser_thenLoginInSameSecond_newTokenShouldStayValid() throws InterruptedException {
+        // Given
+        JwtService jwtService = new JwtService();
+        // Без jwt.signing-key — временный ключ
+        ReflectionTestUtils.setField(jwtService, "accessTokenExpiration", 900000L);
+        UUID userId = UUID.randomUUID();
+        String before = jwtService.generateAccessToken(userId, "user@example.com");
+        // Отзыв в начале секунды, чтобы новый токен гарантированно попал в ту же секунду
+        while (System.currentTimeMillis() % 1000 > 500) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(2);
+
+        // When — logout и сразу новый вход
+        long revokedAt = tokenBlacklistService.revokeUser(userId);
+        Thread.sleep(2);
+        JwtService.TokenClaims after = jwtService.verify(jwtService.generateAccessToken(userId, "user@example.com"));
+        JwtService.TokenClaims old = jwtService.verify(before);
+
+        // Then
+        assertEquals(revokedAt / 1000, after.issuedAt());
+        assertFalse(tokenBlacklistService.isUserRevoked(userId, after.issuedAtMillis()));
+        assertTrue(tokenBlacklistService.isUserRevoked(userId, old.issuedAtMillis()));
+    }
+
+    @Test
+    void testUserEpochs_beyondMaximumSize_shouldNotBeEvicted() {
+        // Given — отзывов пользователей больше, чем maximum-size локальной копии
+        LocalRevocationStore store = new LocalRevocationStore(10L, 900000L);
+        long revokedAt = System.currentTimeMillis();
+        List<UUID> users = Stream.generate(UUID::randomUUID).limit(1000).toList();
+
+        // When
+        users.forEach(userId -> store.revokeUser(userId, revokedAt));
+
+        // Then
+        assertTrue(users.stream().allMatch(userId -> store.isUserRevoked(userId, revokedAt - 1)));
+    }
+
+    @Test
+    void testSyncWithRedis_afterOutage_shouldWriteLocalRevocationsAndLoadSnapshot() {
+        // Given — отзыв во время сбоя остался только локально
+        doThrow(new RedisConnectionFailureException("down"))
+                .when(valueOperations).set(eq(RedisKeys.blacklistedToken("local")), anyString(), anyLong(), any());
+        tokenBlacklistService.blacklistToken("local", 60000L);
+        assertEquals(1, localRevocationStore.unsyncedCount());
+        reset(valueOperations);
+        long remoteExpiresAt = System.currentTimeMillis() + 60000L;
+        when(zSetOperations.rangeByScoreWithScores(eq(RedisKeys.BLACKLIST_RECENT), anyDouble(), anyDouble()))
+                .thenReturn(Set.of(new DefaultTypedTuple<>(LocalRevocationStore.encode("remote", remoteExpiresAt), 1.0)));
+
+        // When — Redis вернулся
+        tokenBlacklistService.syncWithRedis();
+
+        // Then
+        verify(valueOperations).set(eq(RedisKeys.blacklistedToken("local")), eq("blacklisted"), longThat(ttl -> ttl > 0), any());
+        assertEquals(0, localRevocationStore.unsyncedCount());
+        assertTrue(localRevocationStore.contains("remote"));
+    }
+}
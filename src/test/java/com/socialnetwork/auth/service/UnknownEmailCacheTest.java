@@ -0,0 +1,72 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.util.RedisKeys;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UnknownEmailCacheTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    private final CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("redis");
+
+    private UnknownEmailCache unknownEmailCache;
+
+    @BeforeEach
+    void setUp() {
+        unknownEmailCache = new UnknownEmailCache(redisTemplate, circuitBreaker);
+    }
+
+    @Test
+    void testIsKnownAbsent_shouldReadRedisMarker() {
+        // Given
+        when(redisTemplate.hasKey(RedisKeys.emailUnknown("ghost@example.com"))).thenReturn(true);
+
+        // When & Then
+        assertTrue(unknownEmailCache.isKnownAbsent("ghost@example.com"));
+    }
+
+    @Test
+    void testIsKnownAbsent_redisError_shouldFallThroughToDatabase() {
+        // Given
+        when(redisTemplate.hasKey(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+
+        // When & Then
+        assertFalse(unknownEmailCache.isKnownAbsent("ghost@example.com"));
+        assertEquals(1, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+    }
+
+    @Test
+    void testIsKnownAbsent_breakerOpen_shouldNotWaitForRedis() {
+        // Given
+        circuitBreaker.transitionToOpenState();
+
+        // When & Then
+        assertFalse(unknownEmailCache.isKnownAbsent("ghost@example.com"));
+        unknownEmailCache.markAbsent("ghost@example.com");
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void testEvict_breakerOpen_shouldStillDeleteMarker() {
+        // Given
+        circuitBreaker.transitionToOpenState();
+
+        // When
+        unknownEmailCache.evict("new@example.com");
+
+        // Then: иначе новый пользователь не войдёт до истечения отметки
+        verify(redisTemplate).delete(RedisKeys.emailUnknown("new@example.com"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.socialnetwork.auth.service;
+
+import com.socialnetwork.auth.dto.projection.UserAuthView;
+import com.socialnetwork.auth.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserAuthCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    private UserAuthCache userAuthCache;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UserAuthView view = new UserAuthView(userId, "test@example.com", false);
+
+    @BeforeEach
+    void setUp() {
+        userAuthCache = new UserAuthCache(userRepository, redisTemplate, 100, 600);
+    }
+
+    @Test
+    void testGet_shouldLoadOnceAndServeFromCache() {
+        // Given
+        when(userRepository.findAuthViewById(userId)).thenReturn(Optional.of(view));
+
+        // When
+        Optional<UserAuthView> first = userAuthCache.get(userId);
+        Optional<UserAuthView> second = userAuthCache.get(userId);
+
+        // Then
+        assertEquals(Optional.of(view), first);
+        assertEquals(Optional.of(view), second);
+        verify(userRepository, times(1)).findAuthViewById(userId);
+    }
+
+    @Test
+    void testGet_missingUser_shouldNotBeCached() {
+        // Given
+        when(userRepository.findAuthViewById(userId)).thenReturn(Optional.empty());
+
+        // When
+        assertTrue(userAuthCache.get(userId).isEmpty());
+        assertTrue(userAuthCache.get(userId).isEmpty());
+
+        // Then
+        verify(userRepository, times(2)).findAuthViewById(userId);
+    }
+
+    @Test
+    void testInvalidate_shouldDropEntryAndPublish() {
+        // Given
+        when(userRepository.findAuthViewById(userId)).thenReturn(Optional.of(view));
+        userAuthCache.get(userId);
+
+        // When
+        userAuthCache.invalidate(userId);
+        userAuthCache.get(userId);
+
+        // Then
+        verify(redisTemplate).convertAndSend(UserAuthCache.INVALIDATION_CHANNEL, userId.toString());
+        verify(userRepository, times(2)).findAuthViewById(userId);
+    }
+
+    @Test
+    void testOnMessage_fromOtherReplica_shouldDropEntry() {
+        // Given
+        when(userRepository.findAuthViewById(userId)).thenReturn(Optional.of(view));
+        userAuthCache.get(userId);
+
+        // When
+        userAuthCache.onMessage(new DefaultMessage(
+                UserAuthCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                userId.toString().getBytes(StandardCharsets.UTF_8)), null);
+        userAuthCache.get(userId);
+
+        // Then
+        verify(userRepository, times(2)).findAuthViewById(userId);
+        verifyNoInteractions(redisTemplate);
+    }
+}
@@ -0,0 +1,132 @@
+package com.socialnetwork.auth.util;
+
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка раскладки ключей на карте слотов кластера из трёх мастеров
+ * (0-5460, 5461-10922, 10923-16383 — так слоты делит redis-cli --cluster create).
+ * Слот считается тем же алгоритмом, что у Lettuce и Redis (CRC16 по hash tag).
+ */
+class RedisKeysTest {
+
+    private static final int[] NODE_FIRST_SLOTS = {0, 5461, 10923};
+
+    @Test
+    void testUserKeys_shouldShareSlot() {
+        // Given
+        UUID userId = UUID.randomUUID();
+
+        // When
+        Set<Integer> slots = slots(List.of(
+                RedisKeys.userOpaqueTokens(userId),
+                RedisKeys.userRefreshRevokedAt(userId),
+                RedisKeys.userSessions(userId),
+                RedisKeys.userSessionInfo(userId),
+                RedisKeys.replicaPin(userId)));
+
+        // Then
+        assertEquals(1, slots.size());
+        assertEquals(SlotHash.getSlot(userId.toString()), slots.iterator().next());
+    }
+
+    @Test
+    void testEmailKeys_shouldShareSlotRegardlessOfCase() {
+        // When
+        Set<Integer> slots = slots(List.of(
+                RedisKeys.emailUnknown("User@Example.com"),
+                RedisKeys.emailUnknown(" USER@example.com "),
+                RedisKeys.replicaPin("user@example.com")));
+
+        // Then
+        assertEquals(1, slots.size());
+    }
+
+    @Test
+    void testScriptKeys_shouldShareSlot() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        Map<String, List<String>> scriptKeys = scriptKeys(userId);
+
+        // When & Then: в кластере все KEYS одного скрипта обязаны лежать в одном слоте (иначе CROSSSLOT)
+        scriptKeys.forEach((script, keys) -> assertEquals(1, slots(keys).size(), script + " KEYS span several slots"));
+        assertEquals(RedisKeys.emailRateLimit("login", "user@example.com"), RedisKeys.emailRateLimit("login", " USER@example.com "));
+    }
+
+    @Test
+    void testScriptKeys_shouldCoverEveryScript() throws Exception {
+        // Given
+        Set<String> scripts = new HashSet<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources("classpath:scripts/*.lua")) {
+            scripts.add(resource.getFilename());
+        }
+
+        // When & Then: новый скрипт должен попасть в scriptKeys вместе со своими KEYS
+        assertEquals(scripts, scriptKeys(UUID.randomUUID()).keySet());
+    }
+
+    @Test
+    void testUserKeys_shouldSpreadAcrossNodes() {
+        // When
+        Set<Integer> nodes = new HashSet<>();
+        IntStream.range(0, 1000).forEach(i -> nodes.add(node(RedisKeys.userOpaqueTokens(UUID.randomUUID()))));
+
+        // Then
+        assertEquals(3, nodes.size());
+    }
+
+    @Test
+    void testTokenKeys_shouldNotBeTaggedAndSpreadAcrossNodes() {
+        // When
+        Set<Integer> nodes = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = RedisKeys.blacklistedToken("token-" + i);
+            assertFalse(key.contains("{"));
+            nodes.add(node(key));
+        }
+
+        // Then
+        assertEquals(3, nodes.size());
+    }
+
+    /**
+     * KEYS, с которыми сервисы вызывают каждый скрипт из resources/scripts
+     */
+    private static Map<String, List<String>> scriptKeys(UUID userId) {
+        return Map.of(
+                "rate-limit.lua", List.of(
+                        RedisKeys.ipRateLimit("login", "10.0.0.1"),
+                        RedisKeys.emailRateLimit("login", "User@Example.com"),
+                        RedisKeys.globalRateLimit("login")),
+                "session-register.lua", List.of(RedisKeys.userSessions(userId), RedisKeys.userSessionInfo(userId)),
+                "session-remove.lua", List.of(RedisKeys.userSessions(userId), RedisKeys.userSessionInfo(userId)),
+                "refresh-token-revoke-pending.lua", List.of(RedisKeys.REFRESH_TOKEN_PENDING));
+    }
+
+    private static Set<Integer> slots(List<String> keys) {
+        Set<Integer> slots = new HashSet<>();
+        keys.forEach(key -> slots.add(SlotHash.getSlot(key)));
+        return slots;
+    }
+
+    private static int node(String key) {
+        int slot = SlotHash.getSlot(key);
+        for (int i = NODE_FIRST_SLOTS.length - 1; i >= 0; i--) {
+            if (slot >= NODE_FIRST_SLOTS[i]) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Slot out of range: " + slot);
+    }
+}